@@ -0,0 +1,36 @@
+package org.cache;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+// Runs the selected benchmarks once per thread count (1, 2, 4 ... maxThreads) with the GC
+// profiler attached, writing one JSON report per thread count.
+// Arguments: [benchmark regex] [max threads] [report directory]
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : ".*";
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        File reportDirectory = new File(args.length > 2 ? args[2] : "build/reports/jmh");
+        reportDirectory.mkdirs();
+
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(reportDirectory, "results-" + threads + "-threads.json").getPath())
+                    .build();
+            new Runner(options).run();
+            if (threads >= maxThreads) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.cache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Single get/put calls outside transactions, from read-heavy to write-heavy
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheOperationsBenchmark {
+    private final AtomicLong seeds = new AtomicLong();
+
+    @Param
+    public Engine engine;
+
+    @Param
+    public KeyDistribution distribution;
+
+    @Param({"95", "50", "5"})
+    public int readPercent;
+
+    @Param("100000")
+    public int keySpace;
+
+    private Cache<Integer, Integer> cache;
+
+    @Setup
+    public void setUp() {
+        cache = engine.create();
+        for (int i = 0; i < keySpace; i++) {
+            cache.put(i, i);
+        }
+    }
+
+    // Engines with worker threads, such as SHARDED, would otherwise outlive their trial
+    @TearDown
+    public void tearDown() throws Exception {
+        if (cache instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        Workload workload;
+
+        @Setup
+        public void setUp(CacheOperationsBenchmark benchmark) {
+            workload = new Workload(benchmark.distribution, benchmark.keySpace, benchmark.readPercent,
+                    benchmark.seeds.incrementAndGet());
+        }
+    }
+
+    @Benchmark
+    public Integer operation(ThreadState state) {
+        return state.workload.next(cache);
+    }
+}
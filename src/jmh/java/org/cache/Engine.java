@@ -0,0 +1,61 @@
+package org.cache;
+
+// Cache implementations under benchmark; new engines get an entry here
+public enum Engine {
+    TRANSACTIONAL {
+        @Override
+        Cache<Integer, Integer> create() {
+            return new TransactionalCache<>();
+        }
+    },
+    NESTED {
+        @Override
+        Cache<Integer, Integer> create() {
+            return new NestedTransactionCache<>();
+        }
+    },
+    PERPEXILITY {
+        @Override
+        Cache<Integer, Integer> create() {
+            return new PerpexilityTransaction<>();
+        }
+    },
+    MVCC {
+        @Override
+        Cache<Integer, Integer> create() {
+            return new MvccCache<>();
+        }
+    },
+    SORTED {
+        @Override
+        Cache<Integer, Integer> create() {
+            return new SortedCache<>();
+        }
+    },
+    OPTIMISTIC {
+        @Override
+        Cache<Integer, Integer> create() {
+            return new OptimisticTransactionCache<>();
+        }
+    },
+    STRIPED {
+        @Override
+        Cache<Integer, Integer> create() {
+            return new StripedTransactionCache<>();
+        }
+    },
+    SHARDED {
+        @Override
+        Cache<Integer, Integer> create() {
+            return new ShardedCache<>();
+        }
+    },
+    OFF_HEAP {
+        @Override
+        Cache<Integer, Integer> create() {
+            return new OffHeapCache<>(Serializer.integers(), Serializer.integers());
+        }
+    };
+
+    abstract Cache<Integer, Integer> create();
+}
@@ -0,0 +1,66 @@
+package org.cache;
+
+import java.util.SplittableRandom;
+
+// Key traces are generated up front so the measured loop doesn't pay for random numbers
+public enum KeyDistribution {
+    UNIFORM {
+        @Override
+        int[] trace(int keySpace, int length, long seed) {
+            SplittableRandom random = new SplittableRandom(seed);
+            int[] keys = new int[length];
+            for (int i = 0; i < length; i++) {
+                keys[i] = random.nextInt(keySpace);
+            }
+            return keys;
+        }
+    },
+    // Scrambled Zipfian with skew 0.99 as in YCSB: a few keys take most of the traffic,
+    // and hashing the rank spreads the hot keys over the keyspace
+    ZIPFIAN {
+        @Override
+        int[] trace(int keySpace, int length, long seed) {
+            double theta = 0.99;
+            double zetaN = zeta(keySpace, theta);
+            double zeta2 = zeta(2, theta);
+            double alpha = 1.0 / (1.0 - theta);
+            double eta = (1 - Math.pow(2.0 / keySpace, 1 - theta)) / (1 - zeta2 / zetaN);
+
+            SplittableRandom random = new SplittableRandom(seed);
+            int[] keys = new int[length];
+            for (int i = 0; i < length; i++) {
+                double u = random.nextDouble();
+                double uz = u * zetaN;
+                long rank;
+                if (uz < 1.0) {
+                    rank = 0;
+                } else if (uz < 1.0 + Math.pow(0.5, theta)) {
+                    rank = 1;
+                } else {
+                    rank = (long) (keySpace * Math.pow(eta * u - eta + 1, alpha));
+                }
+                keys[i] = (int) Math.floorMod(scramble(rank), (long) keySpace);
+            }
+            return keys;
+        }
+    };
+
+    abstract int[] trace(int keySpace, int length, long seed);
+
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+
+    private static long scramble(long value) {
+        long hash = 0xcbf29ce484222325L; // FNV-1a over the value's bytes
+        for (int i = 0; i < 8; i++) {
+            hash ^= (value >>> (i * 8)) & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
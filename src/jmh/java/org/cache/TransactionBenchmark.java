@@ -0,0 +1,98 @@
+package org.cache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Whole transactions: begin nestingDepth levels, run transactionSize mixed operations in
+// the innermost one, then commit every level. One invocation is one transaction; commits
+// that lose a conflict count like any other.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionBenchmark {
+    private final AtomicLong seeds = new AtomicLong();
+
+    // Engines with thread-scoped, nestable transactions
+    @Param({"NESTED", "PERPEXILITY", "MVCC", "SORTED", "OPTIMISTIC", "STRIPED", "SHARDED", "OFF_HEAP"})
+    public Engine engine;
+
+    @Param
+    public KeyDistribution distribution;
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    public int transactionSize;
+
+    @Param({"1", "4"})
+    public int nestingDepth;
+
+    @Param("50")
+    public int readPercent;
+
+    @Param("100000")
+    public int keySpace;
+
+    private Cache<Integer, Integer> cache;
+    private Transactional transactions;
+
+    @Setup
+    public void setUp() {
+        cache = engine.create();
+        transactions = (Transactional) cache;
+        for (int i = 0; i < keySpace; i++) {
+            cache.put(i, i);
+        }
+    }
+
+    // Engines with worker threads, such as SHARDED, would otherwise outlive their trial
+    @TearDown
+    public void tearDown() throws Exception {
+        if (cache instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        Workload workload;
+
+        @Setup
+        public void setUp(TransactionBenchmark benchmark) {
+            workload = new Workload(benchmark.distribution, benchmark.keySpace, benchmark.readPercent,
+                    benchmark.seeds.incrementAndGet());
+        }
+    }
+
+    @Benchmark
+    public void transaction(ThreadState state, Blackhole blackhole) {
+        for (int level = 0; level < nestingDepth; level++) {
+            transactions.beginTransaction();
+        }
+        for (int i = 0; i < transactionSize; i++) {
+            blackhole.consume(state.workload.next(cache));
+        }
+        try {
+            for (int level = 0; level < nestingDepth; level++) {
+                transactions.commitTransaction();
+            }
+        } catch (TransactionConflictException e) {
+            blackhole.consume(e);
+        }
+    }
+}
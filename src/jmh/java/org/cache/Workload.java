@@ -0,0 +1,32 @@
+package org.cache;
+
+import java.util.SplittableRandom;
+
+// Per-thread stream of keys and read/write decisions, replayed in a loop
+final class Workload {
+    private static final int LENGTH = 1 << 16;
+
+    private final int[] keys;
+    private final boolean[] reads;
+    private int index;
+
+    Workload(KeyDistribution distribution, int keySpace, int readPercent, long seed) {
+        keys = distribution.trace(keySpace, LENGTH, seed);
+        reads = new boolean[LENGTH];
+        SplittableRandom random = new SplittableRandom(~seed);
+        for (int i = 0; i < LENGTH; i++) {
+            reads[i] = random.nextInt(100) < readPercent;
+        }
+    }
+
+    // Applies the next operation and returns what it read or wrote
+    Integer next(Cache<Integer, Integer> cache) {
+        int i = index++ & (LENGTH - 1);
+        Integer key = keys[i];
+        if (reads[i]) {
+            return cache.get(key);
+        }
+        cache.put(key, key);
+        return key;
+    }
+}
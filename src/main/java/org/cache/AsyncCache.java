@@ -0,0 +1,23 @@
+package org.cache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+// Non-blocking companion to Cache: every call returns at once with a future that completes
+// when the operation has run, or fails with the exception it threw
+interface AsyncCache<K, V> {
+    CompletableFuture<V> get(K key);
+    CompletableFuture<Void> put(K key, V value);
+    CompletableFuture<Void> delete(K key);
+
+    CompletableFuture<Map<K, V>> getAll(Collection<? extends K> keys);
+    CompletableFuture<Void> putAll(Map<? extends K, ? extends V> entries);
+    CompletableFuture<Void> deleteAll(Collection<? extends K> keys);
+
+    // Runs the body as one transaction against the synchronous cache it is handed, then
+    // commits and completes with the body's result. If the body throws, the transaction is
+    // rolled back and the future fails. The body must use the cache from its own thread only.
+    <R> CompletableFuture<R> inTransaction(Function<? super Cache<K, V>, ? extends R> body);
+}
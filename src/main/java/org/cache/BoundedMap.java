@@ -0,0 +1,149 @@
+package org.cache;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Thread-safe store holding at most maximumWeight worth of entries. Reads go straight to
+// the underlying map; writes and evictions are serialized on one lock together with the
+// eviction policy. Access recording is best-effort: a read that finds the lock busy skips
+// it rather than waiting, so readers never queue behind writers.
+class BoundedMap<K, V> extends AbstractMap<K, V> implements PinnableStore<K> {
+    private final Map<K, V> map = new ConcurrentHashMap<>();
+    private final Map<K, Integer> pins = new ConcurrentHashMap<>();
+    private final long maximumWeight;
+    private final Weigher<? super K, ? super V> weigher;
+    private final EvictionPolicy<K> policy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile long weight;
+
+    BoundedMap(long maximumSize, EvictionPolicy<K> policy) {
+        this(maximumSize, Weigher.singleton(), policy);
+    }
+
+    BoundedMap(long maximumWeight, Weigher<? super K, ? super V> weigher, EvictionPolicy<K> policy) {
+        if (maximumWeight < 0) {
+            throw new IllegalArgumentException("Maximum weight must not be negative");
+        }
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        this.policy = policy;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        V value = map.get(key);
+        if (value != null && lock.tryLock()) {
+            try {
+                policy.recordAccess((K) key);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        lock.lock();
+        try {
+            V oldValue = map.put(key, value);
+            if (oldValue == null) {
+                policy.recordInsert(key);
+            } else {
+                policy.recordAccess(key);
+                weight -= weigher.weigh(key, oldValue);
+            }
+            weight += weigher.weigh(key, value);
+            evictIfNeeded(key);
+            return oldValue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        lock.lock();
+        try {
+            V oldValue = map.remove(key);
+            if (oldValue != null) {
+                policy.recordRemoval((K) key);
+                weight -= weigher.weigh((K) key, oldValue);
+            }
+            return oldValue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            for (K key : map.keySet()) {
+                remove(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return Collections.unmodifiableMap(map).entrySet();
+    }
+
+    long weight() {
+        return weight;
+    }
+
+    @Override
+    public void pin(K key) {
+        pins.merge(key, 1, Integer::sum);
+    }
+
+    @Override
+    public void unpin(K key) {
+        pins.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+        // Entries that were kept only because they were pinned can go now
+        if (weight > maximumWeight) {
+            lock.lock();
+            try {
+                evictIfNeeded(null);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Caller holds the lock. Never evicts the entry just written to make room for itself,
+    // and stops early if everything else is pinned.
+    private void evictIfNeeded(K written) {
+        while (weight > maximumWeight) {
+            K victim = policy.evict(key -> !pins.containsKey(key) && !key.equals(written));
+            if (victim == null) {
+                return;
+            }
+            V value = map.remove(victim);
+            if (value != null) {
+                weight -= weigher.weigh(victim, value);
+            }
+        }
+    }
+}
@@ -1,8 +1,83 @@
 package org.cache;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiFunction;
+
 // Generic Cache Interface
 interface Cache<K, V> {
     V get(K key);
     void put(K key, V value);
     void delete(K key);
+
+    // Stores a value that expires once the ttl has elapsed
+    default void put(K key, V value, Duration ttl) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support per-entry expiration");
+    }
+
+    // Whether put with a ttl is supported
+    default boolean supportsExpiration() {
+        return false;
+    }
+
+    // Bulk operations; implementations override these to take their locks once per batch.
+    // Absent keys are left out of the getAll result.
+    default Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> result = new HashMap<>();
+        for (K key : keys) {
+            V value = get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    default void putAll(Map<? extends K, ? extends V> entries) {
+        entries.forEach(this::put);
+    }
+
+    default void deleteAll(Collection<? extends K> keys) {
+        keys.forEach(this::delete);
+    }
+
+    // Atomically replaces the key's value, null meaning absent, with what the function
+    // returns, and returns that. Returning the current value itself writes nothing. Inside a
+    // transaction this is one of its writes; outside one it needs no transaction at all.
+    // Every engine supports it, though TransactionalCache and NestedTransactionCache need a
+    // ConcurrentMap store for it.
+    default V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support atomic updates");
+    }
+
+    // Returns the current value, storing the given one only if there is none
+    default V putIfAbsent(K key, V value) {
+        Object[] current = new Object[1];
+        compute(key, (k, old) -> {
+            current[0] = old;
+            return old != null ? old : value;
+        });
+        @SuppressWarnings("unchecked")
+        V previous = (V) current[0];
+        return previous;
+    }
+
+    // Stores newValue only if the key currently holds a value equal to expected
+    default boolean replace(K key, V expected, V newValue) {
+        boolean[] replaced = new boolean[1];
+        compute(key, (k, old) -> {
+            replaced[0] = old != null && Objects.equals(old, expected);
+            return replaced[0] ? newValue : old;
+        });
+        return replaced[0];
+    }
+
+    // Stores the value if the key is absent, otherwise the function of the old and given
+    // values; a null result deletes the key
+    default V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+        return compute(key, (k, old) -> old == null ? value : remapping.apply(old, value));
+    }
 }
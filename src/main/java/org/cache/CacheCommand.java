@@ -1,8 +1,10 @@
 package org.cache;
 
 import java.util.Map;
+import java.util.function.Consumer;
 
 interface CacheCommand<K, V> {
     void execute(Map<K, V> cache);
     void undo(Map<K, V> cache);
+    void forEachKey(Consumer<? super K> action);
 }
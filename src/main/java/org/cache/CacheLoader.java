@@ -0,0 +1,25 @@
+package org.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+// Reads values from the system of record for a LoadingCache. Returning null means the key
+// has no value, and nothing is cached for it.
+@FunctionalInterface
+interface CacheLoader<K, V> {
+    V load(K key);
+
+    // Loads many keys in one round trip; stores that can batch should override this. Keys
+    // without a value are left out of the result.
+    default Map<K, V> loadAll(Collection<? extends K> keys) {
+        Map<K, V> result = new HashMap<>();
+        for (K key : keys) {
+            V value = load(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,200 @@
+package org.cache;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Counters and histograms for one cache, updated on the hot path through LongAdders so
+// concurrent threads don't contend on a shared counter. Engines take an optional instance
+// and check it for null before every update, so a cache without metrics pays one
+// predictable branch and never reads the clock. Read them with snapshot(), or over JMX
+// after register().
+final class CacheMetrics implements CacheMetricsMBean {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder deletes = new LongAdder();
+    private final LongAdder begins = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder rollbacks = new LongAdder();
+    private final Histogram transactionSizes = new Histogram(); // Writes per outermost commit
+    private final Histogram nestingDepths = new Histogram(); // Depth reached by each begin
+    private final Histogram undoLogLengths = new Histogram(); // Undo records when a transaction ends
+    private final Histogram lockWaits = new Histogram(); // Nanoseconds to acquire the engine lock
+    private volatile ObjectName objectName;
+
+    void recordGet(Object value) {
+        (value != null ? hits : misses).increment();
+    }
+
+    void recordLookups(int found, int missing) {
+        hits.add(found);
+        misses.add(missing);
+    }
+
+    void recordPuts(int count) {
+        puts.add(count);
+    }
+
+    void recordDeletes(int count) {
+        deletes.add(count);
+    }
+
+    void recordBegin(int depth) {
+        begins.increment();
+        nestingDepths.record(depth);
+    }
+
+    void recordCommit() {
+        commits.increment();
+    }
+
+    void recordRollback() {
+        rollbacks.increment();
+    }
+
+    void recordTransactionSize(int writes) {
+        transactionSizes.record(writes);
+    }
+
+    void recordUndoLogLength(int records) {
+        undoLogLengths.record(records);
+    }
+
+    void recordLockWait(long nanos) {
+        lockWaits.record(nanos);
+    }
+
+    // Counters are read one by one, so a snapshot taken under load is only approximately consistent
+    Snapshot snapshot() {
+        return new Snapshot(hits.sum(), misses.sum(), puts.sum(), deletes.sum(), begins.sum(), commits.sum(),
+                rollbacks.sum(), transactionSizes.snapshot(), nestingDepths.snapshot(), undoLogLengths.snapshot(),
+                lockWaits.snapshot());
+    }
+
+    // Registers these metrics with the platform MBean server as org.cache:type=CacheMetrics,name=<name>
+    void register(String name) {
+        try {
+            ObjectName registered = new ObjectName("org.cache:type=CacheMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, registered);
+            objectName = registered;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register metrics as " + name, e);
+        }
+    }
+
+    void unregister() {
+        ObjectName registered = objectName;
+        if (registered == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+            objectName = null;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not unregister " + registered, e);
+        }
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder counter : new LongAdder[]{hits, misses, puts, deletes, begins, commits, rollbacks}) {
+            counter.reset();
+        }
+        transactionSizes.reset();
+        nestingDepths.reset();
+        undoLogLengths.reset();
+        lockWaits.reset();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        return snapshot().hitRatio();
+    }
+
+    @Override
+    public long getPuts() {
+        return puts.sum();
+    }
+
+    @Override
+    public long getDeletes() {
+        return deletes.sum();
+    }
+
+    @Override
+    public long getTransactionsBegun() {
+        return begins.sum();
+    }
+
+    @Override
+    public long getTransactionsCommitted() {
+        return commits.sum();
+    }
+
+    @Override
+    public long getTransactionsRolledBack() {
+        return rollbacks.sum();
+    }
+
+    @Override
+    public double getMeanTransactionSize() {
+        return transactionSizes.snapshot().mean();
+    }
+
+    @Override
+    public long getMaxTransactionSize() {
+        return transactionSizes.snapshot().max();
+    }
+
+    @Override
+    public long getMaxNestingDepth() {
+        return nestingDepths.snapshot().max();
+    }
+
+    @Override
+    public double getMeanUndoLogLength() {
+        return undoLogLengths.snapshot().mean();
+    }
+
+    @Override
+    public long getMaxUndoLogLength() {
+        return undoLogLengths.snapshot().max();
+    }
+
+    @Override
+    public long getLockWaitCount() {
+        return lockWaits.snapshot().count();
+    }
+
+    @Override
+    public long getLockWaitTotalNanos() {
+        return lockWaits.snapshot().sum();
+    }
+
+    @Override
+    public long getLockWaitP99Nanos() {
+        return lockWaits.snapshot().percentile(99);
+    }
+
+    record Snapshot(long hits, long misses, long puts, long deletes, long transactionsBegun,
+                    long transactionsCommitted, long transactionsRolledBack, Histogram.Snapshot transactionSizes,
+                    Histogram.Snapshot nestingDepths, Histogram.Snapshot undoLogLengths,
+                    Histogram.Snapshot lockWaitNanos) {
+        double hitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.cache;
+
+// JMX view of CacheMetrics. Public only because JMX rejects non-public MBean interfaces.
+public interface CacheMetricsMBean {
+    long getHits();
+
+    long getMisses();
+
+    double getHitRatio();
+
+    long getPuts();
+
+    long getDeletes();
+
+    long getTransactionsBegun();
+
+    long getTransactionsCommitted();
+
+    long getTransactionsRolledBack();
+
+    double getMeanTransactionSize();
+
+    long getMaxTransactionSize();
+
+    long getMaxNestingDepth();
+
+    double getMeanUndoLogLength();
+
+    long getMaxUndoLogLength();
+
+    long getLockWaitCount();
+
+    long getLockWaitTotalNanos();
+
+    long getLockWaitP99Nanos();
+
+    void reset();
+}
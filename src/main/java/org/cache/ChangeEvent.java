@@ -0,0 +1,9 @@
+package org.cache;
+
+import java.util.List;
+
+// One committed transaction, or one write made outside a transaction, in commit order.
+// Holds the net write-set: each key appears once, with the value it was left with, and a
+// null value means the key was deleted.
+record ChangeEvent<K, V>(long sequence, List<WriteCommand<K, V>> writes) {
+}
@@ -0,0 +1,178 @@
+package org.cache;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Commit-ordered stream of ChangeEvents over a fixed ring buffer, in the style of the
+// Disruptor. A committer claims the next sequence under the lock that orders its commit,
+// then fills the slot after releasing it. A slot is reused only once every subscriber has
+// consumed it, so a subscriber that stops requesting eventually holds back committers, not
+// readers. Each subscriber drains every event that is both published and requested in one
+// pass on the executor. Sequences with nobody subscribed are never claimed, so an unwatched
+// feed costs one volatile read per commit.
+final class ChangeFeed<K, V> implements Flow.Publisher<ChangeEvent<K, V>>, AutoCloseable {
+    static final long UNCLAIMED = 0; // What claim returns when nobody is subscribed
+    private static final long WAIT_NANOS = 10_000;
+
+    private final Object[] events;
+    private final AtomicLongArray published; // Sequence each slot currently holds
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final Executor executor;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    ChangeFeed() {
+        this(1024, ForkJoinPool.commonPool());
+    }
+
+    // The capacity must be a power of two; subscribers are called on the executor
+    ChangeFeed(int capacity, Executor executor) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.events = new Object[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ChangeEvent<K, V>> subscriber) {
+        Objects.requireNonNull(subscriber);
+        Subscription subscription = new Subscription(subscriber, claimed.get() + 1);
+        if (closed) {
+            subscriber.onSubscribe(subscription);
+            subscriber.onError(new IllegalStateException("Change feed is closed"));
+            return;
+        }
+        subscriptions.add(subscription); // Sees commits claimed from here on
+        subscriber.onSubscribe(subscription);
+    }
+
+    // Reserves the next sequence. Committers call this under the lock that orders their
+    // commits and must then publish the sequence, even if the commit later fails.
+    long claim() {
+        return subscriptions.isEmpty() || closed ? UNCLAIMED : claimed.incrementAndGet();
+    }
+
+    // Fills a claimed slot, waiting while the slowest subscriber is a whole ring behind
+    void publish(long sequence, Collection<? extends WriteCommand<K, V>> writes) {
+        if (sequence == UNCLAIMED) {
+            return;
+        }
+        while (sequence - events.length > minConsumed()) {
+            LockSupport.parkNanos(WAIT_NANOS);
+        }
+        int slot = (int) sequence & mask;
+        events[slot] = new ChangeEvent<>(sequence, netWrites(writes));
+        published.set(slot, sequence); // Volatile write, so subscribers that see it see the event
+        for (Subscription subscription : subscriptions) {
+            subscription.signal();
+        }
+    }
+
+    // Completes every subscriber once it has drained the events already claimed
+    @Override
+    public void close() {
+        closed = true;
+        for (Subscription subscription : subscriptions) {
+            subscription.signal();
+        }
+    }
+
+    // Keeps only the last write to each key, in the order keys were first written
+    private static <K, V> List<WriteCommand<K, V>> netWrites(Collection<? extends WriteCommand<K, V>> writes) {
+        if (writes.size() <= 1) {
+            return List.copyOf(writes);
+        }
+        Map<K, WriteCommand<K, V>> latest = new LinkedHashMap<>();
+        for (WriteCommand<K, V> write : writes) {
+            latest.put(write.key(), write);
+        }
+        return List.copyOf(latest.values());
+    }
+
+    private long minConsumed() {
+        long min = Long.MAX_VALUE;
+        for (Subscription subscription : subscriptions) {
+            min = Math.min(min, subscription.cursor - 1);
+        }
+        return min;
+    }
+
+    private final class Subscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super ChangeEvent<K, V>> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pendingSignals = new AtomicInteger(); // Drains run one at a time
+        private volatile long cursor; // Next sequence to deliver
+        private volatile boolean cancelled;
+
+        Subscription(Flow.Subscriber<? super ChangeEvent<K, V>> subscriber, long cursor) {
+            this.subscriber = subscriber;
+            this.cursor = cursor;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("Demand must be positive: " + n));
+                return;
+            }
+            demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        void signal() {
+            if (pendingSignals.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void drain() {
+            int missed = 1;
+            do {
+                while (!cancelled && demand.get() > 0) {
+                    long sequence = cursor;
+                    int slot = (int) sequence & mask;
+                    if (published.get(slot) != sequence) {
+                        break;
+                    }
+                    ChangeEvent<K, V> event = (ChangeEvent<K, V>) events[slot];
+                    cursor = sequence + 1; // Frees the slot for the committer a ring ahead
+                    demand.decrementAndGet();
+                    try {
+                        subscriber.onNext(event);
+                    } catch (RuntimeException e) {
+                        cancel();
+                        subscriber.onError(e);
+                    }
+                }
+                if (!cancelled && closed && cursor > claimed.get()) {
+                    cancel();
+                    subscriber.onComplete();
+                }
+                missed = pendingSignals.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package org.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+// Point-in-time images of a cache, each covering the write-ahead log up to a sequence.
+// A checkpoint file is [magic][sequence] followed by [key length][key][value length][value]
+// entries and a [-1][entry count] trailer. It is written under a temporary name, fsynced and
+// renamed into place, and the rename is fsynced too, so a file that exists is complete. Loading maps the file instead of
+// reading it through the heap, one window at a time.
+final class Checkpoints<K, V> {
+    private static final int MAGIC = 0x434b5031; // "CKP1"
+    private static final String SUFFIX = ".checkpoint";
+    private static final int WINDOW_BYTES = 1 << 30;
+
+    private final Path directory;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+
+    // Keys and values must be Serializable
+    Checkpoints(Path directory) {
+        this(directory, Serializer.java(), Serializer.java());
+    }
+
+    Checkpoints(Path directory, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this.directory = directory;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create checkpoint directory " + directory, e);
+        }
+    }
+
+    // Writes the entries as the checkpoint for the sequence, then deletes older checkpoints
+    void write(long sequence, Iterable<? extends Map.Entry<K, V>> entries) {
+        Path file = checkpointPath(sequence);
+        Path temporary = directory.resolve(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeLong(sequence);
+            long count = 0;
+            for (Map.Entry<K, V> entry : entries) {
+                byte[] key = keySerializer.serialize(entry.getKey());
+                byte[] value = valueSerializer.serialize(entry.getValue());
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeInt(value.length);
+                out.write(value);
+                count++;
+            }
+            out.writeInt(-1);
+            out.writeLong(count);
+            out.flush();
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write checkpoint " + file, e);
+        }
+        try {
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+            // The log is truncated against this checkpoint next, so the rename must be durable first
+            WriteAheadLog.forceDirectory(directory);
+            for (Path older : list()) {
+                if (sequenceOf(older) < sequence) {
+                    Files.deleteIfExists(older);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot install checkpoint " + file, e);
+        }
+    }
+
+    // Hands every entry of the newest checkpoint to the consumer and returns the sequence it
+    // covers, or 0 if there is none
+    long load(BiConsumer<K, V> consumer) {
+        List<Path> checkpoints = list();
+        if (checkpoints.isEmpty()) {
+            return 0;
+        }
+        Path file = checkpoints.get(checkpoints.size() - 1);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedReader in = new MappedReader(channel);
+            if (in.getInt() != MAGIC) {
+                throw new IllegalStateException("Not a checkpoint file: " + file);
+            }
+            long sequence = in.getLong();
+            long count = 0;
+            for (int keyLength = in.getInt(); keyLength >= 0; keyLength = in.getInt()) {
+                K key = keySerializer.deserialize(in.slice(keyLength));
+                V value = valueSerializer.deserialize(in.slice(in.getInt()));
+                consumer.accept(key, value);
+                count++;
+            }
+            if (in.getLong() != count) {
+                throw new IllegalStateException("Checkpoint " + file + " is missing entries");
+            }
+            return sequence;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load checkpoint " + file, e);
+        }
+    }
+
+    private List<Path> list() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                    .sorted(Comparator.comparingLong(Checkpoints::sequenceOf))
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list checkpoints in " + directory, e);
+        }
+    }
+
+    private Path checkpointPath(long sequence) {
+        return directory.resolve(String.format("%020d", sequence) + SUFFIX);
+    }
+
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    // Sequential reader over a file mapped in windows of up to a gigabyte, since a single
+    // mapping can't exceed 2 GB. A window is remapped whenever the next field runs past it.
+    private static final class MappedReader {
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer window;
+        private long windowStart;
+
+        MappedReader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            remap(0, 0);
+        }
+
+        int getInt() throws IOException {
+            ensure(Integer.BYTES);
+            return window.getInt();
+        }
+
+        long getLong() throws IOException {
+            ensure(Long.BYTES);
+            return window.getLong();
+        }
+
+        ByteBuffer slice(int length) throws IOException {
+            ensure(length);
+            ByteBuffer slice = window.slice(window.position(), length);
+            window.position(window.position() + length);
+            return slice;
+        }
+
+        private void ensure(int length) throws IOException {
+            if (window.remaining() < length) {
+                long position = windowStart + window.position();
+                if (position + length > size) {
+                    throw new IllegalStateException("Checkpoint is truncated");
+                }
+                remap(position, length);
+            }
+        }
+
+        private void remap(long position, int minimum) throws IOException {
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, Math.max(WINDOW_BYTES, minimum)));
+        }
+    }
+}
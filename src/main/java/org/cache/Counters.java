@@ -0,0 +1,14 @@
+package org.cache;
+
+// Caches that hold Long counters under some keys and adjust them by deltas. Deltas commute,
+// so concurrent transactions adjusting one counter neither conflict nor lose each other's
+// updates, and a rollback takes back only its own deltas instead of restoring an old value.
+// An absent counter counts as 0. Counter keys must only ever hold Long values.
+interface Counters<K> {
+    // Adds the delta and returns the counter's value as this thread now sees it
+    long increment(K key, long delta);
+
+    // Adds the delta only if the result stays within [min, max], e.g. stock that must not go
+    // negative, and reports whether it did. Rolling back a successful add is not re-checked.
+    boolean add(K key, long delta, long min, long max);
+}
@@ -2,7 +2,11 @@ package org.cache;
 
 import java.util.Map;
 
-record DeleteCommand<K, V>(K key, V oldValue) implements CacheCommand<K, V> {
+record DeleteCommand<K, V>(K key, V oldValue, long oldExpiry) implements WriteCommand<K, V> {
+    DeleteCommand(K key, V oldValue) {
+        this(key, oldValue, ExpiringMap.NO_EXPIRY);
+    }
+
     @Override
     public void execute(Map<K, V> cache) {
         cache.remove(key);
@@ -11,7 +15,12 @@ record DeleteCommand<K, V>(K key, V oldValue) implements CacheCommand<K, V> {
     @Override
     public void undo(Map<K, V> cache) {
         if (oldValue != null) {
-            cache.put(key, oldValue);
+            ExpiringMap.restore(cache, key, oldValue, oldExpiry);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public V value() {
+        return null;
+    }
+}
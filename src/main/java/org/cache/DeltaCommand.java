@@ -0,0 +1,77 @@
+package org.cache;
+
+import java.util.Map;
+
+// Pending adjustment of a Long counter, resolved against whatever the counter holds when it
+// is applied rather than when it was written. min and max bound the counter's value after
+// the delta; commit checks them again, since other transactions may have moved the counter.
+// Not a record like the other commands: execute remembers whether it inserted the counter,
+// so undo can take the counter away again instead of leaving a 0 behind.
+final class DeltaCommand<K, V> implements WriteCommand<K, V> {
+    private final K key;
+    private final long delta;
+    private final long min;
+    private final long max;
+    private boolean created;
+
+    DeltaCommand(K key, long delta) {
+        this(key, delta, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    DeltaCommand(K key, long delta, long min, long max) {
+        this.key = key;
+        this.delta = delta;
+        this.min = min;
+        this.max = max;
+    }
+
+    @Override
+    public K key() {
+        return key;
+    }
+
+    long delta() {
+        return delta;
+    }
+
+    // This delta followed by a later one to the same key. This delta's bounds held for the
+    // value before the later delta was added, so they move along with it.
+    DeltaCommand<K, V> plus(DeltaCommand<K, V> later) {
+        return new DeltaCommand<>(key, Math.addExact(delta, later.delta),
+                Math.max(shift(min, later.delta), later.min), Math.min(shift(max, later.delta), later.max));
+    }
+
+    // The counter's value after this delta, or null if that would leave the bounds
+    Long applyTo(Object current) {
+        long result = Math.addExact(current != null ? (Long) current : 0L, delta);
+        return result >= min && result <= max ? result : null;
+    }
+
+    @Override
+    public V value() {
+        throw new UnsupportedOperationException("A delta has no value until it is applied");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void execute(Map<K, V> cache) {
+        cache.compute(key, (k, old) -> {
+            created = old == null;
+            return (V) Long.valueOf(Math.addExact(old != null ? (Long) old : 0L, delta));
+        });
+    }
+
+    @Override
+    public void undo(Map<K, V> cache) {
+        UndoLog.undoDelta(cache, key, delta, created);
+    }
+
+    // Saturates instead of overflowing, so an open bound stays open
+    private static long shift(long bound, long by) {
+        long shifted = bound + by;
+        if (((bound ^ shifted) & (by ^ shifted)) < 0) {
+            return by > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+        }
+        return shifted;
+    }
+}
@@ -0,0 +1,27 @@
+package org.cache;
+
+import java.util.function.Predicate;
+
+// Decides which entry a bounded store gives up when it is over capacity. Implementations
+// are not thread-safe; the owning store serializes calls. Keys the policy doesn't track
+// are ignored by recordAccess and recordRemoval.
+interface EvictionPolicy<K> {
+    void recordInsert(K key);
+    void recordAccess(K key);
+    void recordRemoval(K key);
+
+    // Chooses a key the filter allows, stops tracking it and returns it; null if none qualifies
+    K evict(Predicate<? super K> evictable);
+
+    static <K> EvictionPolicy<K> lru() {
+        return new LruPolicy<>();
+    }
+
+    static <K> EvictionPolicy<K> lfu() {
+        return new LfuPolicy<>();
+    }
+
+    static <K> EvictionPolicy<K> tinyLfu(int expectedSize) {
+        return new TinyLfuPolicy<>(expectedSize);
+    }
+}
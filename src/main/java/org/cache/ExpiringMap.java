@@ -0,0 +1,249 @@
+package org.cache;
+
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+// Thread-safe store whose entries expire after a per-entry TTL or a store-wide
+// expire-after-write / expire-after-access policy. Reads check an entry's deadline
+// themselves, so expiry is exact; a timer wheel advanced on every write reclaims the
+// memory of expired entries without scanning; size() and iteration skip the expired
+// entries it hasn't reached yet. With expire-after-access configured every read pushes the
+// entry's deadline out, including entries written with their own TTL.
+class ExpiringMap<K, V> extends AbstractMap<K, V> implements PinnableStore<K> {
+    static final long NO_EXPIRY = Long.MAX_VALUE;
+
+    private final Map<K, V> map;
+    private final Map<K, TimerWheel.Timer<K>> timers = new ConcurrentHashMap<>();
+    private final long expireAfterWriteNanos;
+    private final long expireAfterAccessNanos;
+    private final LongSupplier ticker;
+    private final TimerWheel<K> wheel;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Entries only expire through put(key, value, ttl)
+    ExpiringMap() {
+        this(new ConcurrentHashMap<>(), null, null, System::nanoTime);
+    }
+
+    // Either duration may be null. The delegate must be thread-safe, e.g. a BoundedMap.
+    ExpiringMap(Map<K, V> delegate, Duration expireAfterWrite, Duration expireAfterAccess) {
+        this(delegate, expireAfterWrite, expireAfterAccess, System::nanoTime);
+    }
+
+    ExpiringMap(Map<K, V> delegate, Duration expireAfterWrite, Duration expireAfterAccess, LongSupplier ticker) {
+        this.map = delegate;
+        this.expireAfterWriteNanos = expireAfterWrite != null ? expireAfterWrite.toNanos() : 0;
+        this.expireAfterAccessNanos = expireAfterAccess != null ? expireAfterAccess.toNanos() : 0;
+        this.ticker = ticker;
+        this.wheel = new TimerWheel<>(ticker.getAsLong());
+    }
+
+    // Remaining-lifetime deadline of the key in the map's ticker time, NO_EXPIRY if it never
+    // expires or isn't present
+    static <K> long expiryOf(Map<K, ?> cache, K key) {
+        if (cache instanceof ExpiringMap<K, ?> expiring) {
+            TimerWheel.Timer<K> timer = expiring.timers.get(key);
+            return timer != null ? timer.deadline : NO_EXPIRY;
+        }
+        return NO_EXPIRY;
+    }
+
+    // Puts a value back together with the deadline it had, as undo records do
+    static <K, V> void restore(Map<K, V> cache, K key, V value, long expiry) {
+        if (value == null) {
+            cache.remove(key);
+        } else if (cache instanceof ExpiringMap<K, V> expiring) {
+            expiring.putWithDeadline(key, value, expiry);
+        } else {
+            cache.put(key, value);
+        }
+    }
+
+    @Override
+    public V get(Object key) {
+        V value = map.get(key);
+        if (value == null) {
+            return null;
+        }
+        TimerWheel.Timer<K> timer = timers.get(key);
+        if (timer != null) {
+            long now = ticker.getAsLong();
+            if (timer.deadline - now <= 0) {
+                return null; // Reclaimed by the next write's wheel pass
+            }
+            if (expireAfterAccessNanos > 0) {
+                timer.deadline = now + expireAfterAccessNanos; // The wheel picks this up lazily
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        long ttl = expireAfterWriteNanos > 0 ? expireAfterWriteNanos : expireAfterAccessNanos;
+        return putWithDeadline(key, value, ttl > 0 ? ticker.getAsLong() + ttl : NO_EXPIRY);
+    }
+
+    V put(K key, V value, Duration ttl) {
+        return putWithDeadline(key, value, ticker.getAsLong() + ttl.toNanos());
+    }
+
+    @Override
+    public V remove(Object key) {
+        lock.lock();
+        try {
+            long now = ticker.getAsLong();
+            wheel.advance(now, this::expire);
+            TimerWheel.Timer<K> timer = timers.remove(key);
+            if (timer != null) {
+                wheel.deschedule(timer);
+            }
+            V oldValue = map.remove(key);
+            return timer != null && timer.deadline - now <= 0 ? null : oldValue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Removes every expired entry now instead of waiting for the next write
+    void cleanUp() {
+        lock.lock();
+        try {
+            wheel.advance(ticker.getAsLong(), this::expire);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Leaves out expired entries the wheel hasn't reclaimed yet, so this walks the timers
+    @Override
+    public int size() {
+        long now = ticker.getAsLong();
+        int expired = 0;
+        for (TimerWheel.Timer<K> timer : timers.values()) {
+            if (timer.deadline - now <= 0) {
+                expired++;
+            }
+        }
+        return Math.max(0, map.size() - expired);
+    }
+
+    // Read-only view of the live entries; iterating skips any whose deadline has passed
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new LiveEntries(map.entrySet().iterator(), ticker.getAsLong());
+            }
+
+            @Override
+            public int size() {
+                return ExpiringMap.this.size();
+            }
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void pin(K key) {
+        if (map instanceof PinnableStore<?>) {
+            ((PinnableStore<K>) map).pin(key);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void unpin(K key) {
+        if (map instanceof PinnableStore<?>) {
+            ((PinnableStore<K>) map).unpin(key);
+        }
+    }
+
+    private V putWithDeadline(K key, V value, long deadline) {
+        lock.lock();
+        try {
+            long now = ticker.getAsLong();
+            wheel.advance(now, this::expire);
+            TimerWheel.Timer<K> oldTimer = timers.remove(key);
+            if (oldTimer != null) {
+                wheel.deschedule(oldTimer);
+            }
+            if (deadline != NO_EXPIRY && deadline - now <= 0) {
+                map.remove(key); // Restored after its lifetime already ran out
+                return null;
+            }
+            if (deadline != NO_EXPIRY) {
+                TimerWheel.Timer<K> timer = new TimerWheel.Timer<>(key, deadline);
+                timers.put(key, timer);
+                wheel.schedule(timer);
+            }
+            V oldValue = map.put(key, value);
+            return oldTimer != null && oldTimer.deadline - now <= 0 ? null : oldValue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isExpired(K key, long now) {
+        TimerWheel.Timer<K> timer = timers.get(key);
+        return timer != null && timer.deadline - now <= 0;
+    }
+
+    // Called by the wheel with the lock held
+    private void expire(TimerWheel.Timer<K> timer) {
+        if (timers.remove(timer.key, timer)) {
+            map.remove(timer.key);
+        }
+    }
+
+    private final class LiveEntries implements Iterator<Entry<K, V>> {
+        private final Iterator<Entry<K, V>> entries;
+        private final long now;
+        private Entry<K, V> next;
+
+        LiveEntries(Iterator<Entry<K, V>> entries, long now) {
+            this.entries = entries;
+            this.now = now;
+            this.next = findNext();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Entry<K, V> entry = next;
+            next = findNext();
+            return entry;
+        }
+
+        private Entry<K, V> findNext() {
+            while (entries.hasNext()) {
+                Entry<K, V> entry = entries.next();
+                if (!isExpired(entry.getKey(), now)) {
+                    return new SimpleImmutableEntry<>(entry);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+// Evicts the least frequently used key, breaking ties by least recent use
+class LfuPolicy<K> implements EvictionPolicy<K> {
+    private final Map<K, Long> frequencies = new HashMap<>();
+    private final TreeMap<Long, LinkedHashSet<K>> buckets = new TreeMap<>();
+
+    @Override
+    public void recordInsert(K key) {
+        Long frequency = frequencies.get(key);
+        if (frequency != null) {
+            recordAccess(key);
+            return;
+        }
+        frequencies.put(key, 1L);
+        buckets.computeIfAbsent(1L, f -> new LinkedHashSet<>()).add(key);
+    }
+
+    @Override
+    public void recordAccess(K key) {
+        Long frequency = frequencies.get(key);
+        if (frequency == null) {
+            return;
+        }
+        unlink(key, frequency);
+        frequencies.put(key, frequency + 1);
+        buckets.computeIfAbsent(frequency + 1, f -> new LinkedHashSet<>()).add(key);
+    }
+
+    @Override
+    public void recordRemoval(K key) {
+        Long frequency = frequencies.remove(key);
+        if (frequency != null) {
+            unlink(key, frequency);
+        }
+    }
+
+    @Override
+    public K evict(Predicate<? super K> evictable) {
+        for (Map.Entry<Long, LinkedHashSet<K>> bucket : buckets.entrySet()) {
+            for (Iterator<K> it = bucket.getValue().iterator(); it.hasNext(); ) {
+                K key = it.next();
+                if (evictable.test(key)) {
+                    recordRemoval(key);
+                    return key;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void unlink(K key, long frequency) {
+        LinkedHashSet<K> bucket = buckets.get(frequency);
+        bucket.remove(key);
+        if (bucket.isEmpty()) {
+            buckets.remove(frequency);
+        }
+    }
+}
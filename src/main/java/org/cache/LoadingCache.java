@@ -0,0 +1,330 @@
+package org.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.LongSupplier;
+
+// Read-through wrapper over a transactional cache: a miss loads the value from a
+// CacheLoader instead of returning null. Concurrent misses for a key share one in-flight
+// load, so an expired hot key costs the backing store one read, not one per caller. The
+// caller that started a load installs the result on its own thread, so a load inside a
+// transaction becomes one of its writes and goes away with its rollback. A write to the
+// key while the load is in flight wins; the stale result is handed to waiters but not cached.
+class LoadingCache<K, V> implements Cache<K, V>, Transactional {
+    private final Cache<K, V> cache;
+    private final Transactional transactions;
+    private final CacheLoader<K, V> loader;
+    private final Duration ttl; // Null when loaded values never expire
+    private final long refreshAfterNanos; // 0 when refresh-ahead is off
+    private final Executor refreshExecutor;
+    private final LongSupplier ticker;
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    // When each key was last loaded or written; only kept with refresh-ahead on
+    private final Map<K, Long> writtenAt = new ConcurrentHashMap<>();
+    private volatile int sweepThreshold = 1024;
+
+    <C extends Cache<K, V> & Transactional> LoadingCache(C cache, CacheLoader<K, V> loader) {
+        this(cache, loader, null, null);
+    }
+
+    // Values expire ttl after they are loaded or written, which needs a cache that supports
+    // per-entry TTLs. Once a value is older than refreshAfter, the next read still returns it
+    // but reloads it in the background. Either duration may be null.
+    <C extends Cache<K, V> & Transactional> LoadingCache(C cache, CacheLoader<K, V> loader, Duration ttl,
+                                                         Duration refreshAfter) {
+        this(cache, loader, ttl, refreshAfter, ForkJoinPool.commonPool(), System::nanoTime);
+    }
+
+    <C extends Cache<K, V> & Transactional> LoadingCache(C cache, CacheLoader<K, V> loader, Duration ttl,
+                                                         Duration refreshAfter, Executor refreshExecutor,
+                                                         LongSupplier ticker) {
+        if (ttl != null && refreshAfter != null && refreshAfter.compareTo(ttl) >= 0) {
+            throw new IllegalArgumentException("refreshAfter must be shorter than the ttl");
+        }
+        if (ttl != null && !cache.supportsExpiration()) {
+            throw new IllegalArgumentException(cache.getClass().getSimpleName() + " does not support per-entry expiration");
+        }
+        this.cache = cache;
+        this.transactions = cache;
+        this.loader = loader;
+        this.ttl = ttl;
+        this.refreshAfterNanos = refreshAfter != null ? refreshAfter.toNanos() : 0;
+        this.refreshExecutor = refreshExecutor;
+        this.ticker = ticker;
+    }
+
+    @Override
+    public V get(K key) {
+        V value = cache.get(key);
+        if (value == null) {
+            return load(key);
+        }
+        if (refreshAfterNanos > 0) {
+            refreshIfStale(key);
+        }
+        return value;
+    }
+
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> result = cache.getAll(keys);
+        List<K> started = new ArrayList<>();
+        Map<K, CompletableFuture<V>> joined = new HashMap<>();
+        Map<K, CompletableFuture<V>> loads = new HashMap<>();
+        for (K key : keys) {
+            if (result.containsKey(key)) {
+                if (refreshAfterNanos > 0) {
+                    refreshIfStale(key);
+                }
+                continue;
+            }
+            if (loads.containsKey(key) || joined.containsKey(key)) {
+                continue;
+            }
+            CompletableFuture<V> load = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, load);
+            if (existing != null) {
+                joined.put(key, existing);
+            } else {
+                started.add(key);
+                loads.put(key, load);
+            }
+        }
+        if (!started.isEmpty()) {
+            Map<K, V> loaded;
+            try {
+                loaded = loader.loadAll(started);
+            } catch (RuntimeException | Error e) {
+                loads.forEach((key, load) -> fail(key, load, e));
+                throw e;
+            }
+            try {
+                for (K key : started) {
+                    V value = loaded.get(key);
+                    install(key, value, loads.get(key));
+                    if (value != null) {
+                        result.put(key, value);
+                    }
+                }
+            } catch (RuntimeException | Error e) {
+                // Loads already installed are complete and no longer in flight, so this
+                // only fails the ones still waiting
+                loads.forEach((key, load) -> fail(key, load, e));
+                throw e;
+            }
+        }
+        joined.forEach((key, load) -> {
+            V value = await(load);
+            if (value != null) {
+                result.put(key, value);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        inFlight.remove(key); // A load still running must not overwrite this value
+        if (ttl != null) {
+            cache.put(key, value, ttl);
+        } else {
+            cache.put(key, value);
+        }
+        touch(key);
+    }
+
+    @Override
+    public void put(K key, V value, Duration ttl) {
+        inFlight.remove(key);
+        cache.put(key, value, ttl);
+        touch(key);
+    }
+
+    @Override
+    public boolean supportsExpiration() {
+        return cache.supportsExpiration();
+    }
+
+    @Override
+    public void delete(K key) {
+        inFlight.remove(key);
+        cache.delete(key);
+        writtenAt.remove(key);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        if (ttl != null) {
+            entries.forEach(this::put);
+            return;
+        }
+        entries.keySet().forEach(inFlight::remove);
+        cache.putAll(entries);
+        entries.keySet().forEach(this::touch);
+    }
+
+    @Override
+    public void deleteAll(Collection<? extends K> keys) {
+        keys.forEach(inFlight::remove);
+        cache.deleteAll(keys);
+        keys.forEach(writtenAt::remove);
+    }
+
+    // Works on the cached value only; a missing key is not loaded first
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        inFlight.remove(key);
+        V value = cache.compute(key, remapping);
+        if (value != null) {
+            touch(key);
+        } else {
+            writtenAt.remove(key);
+        }
+        return value;
+    }
+
+    @Override
+    public void beginTransaction() {
+        transactions.beginTransaction();
+    }
+
+    @Override
+    public void commitTransaction() {
+        transactions.commitTransaction();
+    }
+
+    @Override
+    public void rollbackTransaction() {
+        transactions.rollbackTransaction();
+    }
+
+    @Override
+    public int transactionDepth() {
+        return transactions.transactionDepth();
+    }
+
+    @Override
+    public long transactionId() {
+        return transactions.transactionId();
+    }
+
+    @Override
+    public Savepoint savepoint() {
+        return transactions.savepoint();
+    }
+
+    @Override
+    public void rollbackTo(Savepoint savepoint) {
+        transactions.rollbackTo(savepoint);
+    }
+
+    @Override
+    public void release(Savepoint savepoint) {
+        transactions.release(savepoint);
+    }
+
+    // Loads the key on this thread, or waits for the load another thread already started
+    private V load(K key) {
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, load);
+        if (existing != null) {
+            return await(existing);
+        }
+        V value;
+        try {
+            value = loader.load(key);
+        } catch (RuntimeException | Error e) {
+            fail(key, load, e);
+            throw e;
+        }
+        install(key, value, load);
+        return value;
+    }
+
+    // Reloads an old value in the background; readers keep getting it until the reload lands
+    private void refreshIfStale(K key) {
+        Long written = writtenAt.get(key);
+        if (written == null || ticker.getAsLong() - written < refreshAfterNanos) {
+            return;
+        }
+        CompletableFuture<V> refresh = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(key, refresh) != null) {
+            return;
+        }
+        refreshExecutor.execute(() -> {
+            try {
+                install(key, loader.load(key), refresh);
+            } catch (RuntimeException | Error e) {
+                fail(key, refresh, e); // The old value stays until it expires
+            }
+        });
+    }
+
+    // Caches the loaded value unless the key was written since the load started. The put
+    // runs inside computeIfPresent, which locks the key's entry in inFlight, so a writer's
+    // inFlight.remove either comes first and the value is dropped, or waits for the put and
+    // then overwrites it.
+    private void install(K key, V value, CompletableFuture<V> load) {
+        boolean[] installed = new boolean[1];
+        try {
+            inFlight.computeIfPresent(key, (k, current) -> {
+                if (current != load) {
+                    return current;
+                }
+                if (value != null) {
+                    if (ttl != null) {
+                        cache.put(key, value, ttl);
+                    } else {
+                        cache.put(key, value);
+                    }
+                    installed[0] = true;
+                }
+                return null;
+            });
+            if (installed[0]) {
+                touch(key);
+            }
+        } catch (RuntimeException | Error e) {
+            fail(key, load, e);
+            throw e;
+        }
+        load.complete(value);
+    }
+
+    private void fail(K key, CompletableFuture<V> load, Throwable failure) {
+        inFlight.remove(key, load);
+        load.completeExceptionally(failure);
+    }
+
+    private void touch(K key) {
+        if (refreshAfterNanos == 0) {
+            return;
+        }
+        long now = ticker.getAsLong();
+        writtenAt.put(key, now);
+        // Keys the store expired or evicted on its own are never deleted here, so whenever
+        // the map doubles, drop the timestamps of keys that are gone
+        if (writtenAt.size() > sweepThreshold) {
+            writtenAt.keySet().removeIf(written -> cache.get(written) == null);
+            sweepThreshold = Math.max(1024, writtenAt.size() * 2);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.cache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Fixed pool of locks that keys hash onto. Callers that need several stripes at once
+// take them in ascending index order, so two of them can never deadlock.
+final class LockStripes {
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    LockStripes(int count) {
+        int size = count <= 1 ? 1 : Integer.highestOneBit(count - 1) << 1; // Round up to a power of two
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    static int spread(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    int size() {
+        return locks.length;
+    }
+
+    int indexFor(Object key) {
+        return spread(key) & mask;
+    }
+
+    ReentrantLock lockFor(Object key) {
+        return locks[indexFor(key)];
+    }
+
+    // Distinct stripe indexes for the keys, in locking order
+    int[] indexesFor(Collection<?> keys) {
+        int[] indexes = new int[keys.size()];
+        int i = 0;
+        for (Object key : keys) {
+            indexes[i++] = indexFor(key);
+        }
+        Arrays.sort(indexes);
+        int distinct = 0;
+        for (int j = 0; j < indexes.length; j++) {
+            if (j == 0 || indexes[j] != indexes[j - 1]) {
+                indexes[distinct++] = indexes[j];
+            }
+        }
+        return Arrays.copyOf(indexes, distinct);
+    }
+
+    void lockAll(int[] indexes) {
+        for (int index : indexes) {
+            locks[index].lock();
+        }
+    }
+
+    void unlockAll(int[] indexes) {
+        for (int i = indexes.length - 1; i >= 0; i--) {
+            locks[indexes[i]].unlock();
+        }
+    }
+}
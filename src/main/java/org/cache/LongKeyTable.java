@@ -0,0 +1,116 @@
+package org.cache;
+
+// Open-addressing hash table of long keys with linear probing and backward-shift deletion.
+// Subclasses keep values in parallel arrays indexed by slot, with one extra slot at the end
+// for key 0, since 0 marks an empty slot. Not thread-safe.
+abstract class LongKeyTable {
+    static final int ABSENT = -1;
+    static final int INITIAL_VALUE_SLOTS = 16 + 1; // Length subclasses start their value arrays at
+
+    private long[] keys = new long[INITIAL_VALUE_SLOTS - 1];
+    private int mask = keys.length - 1;
+    private int size;
+    private boolean hasZeroKey;
+
+    // Moves the value in one slot to another, when deletion shifts a key back
+    abstract void moveValue(int from, int to);
+
+    // Drops the value in a slot that has been emptied, so it no longer holds a reference
+    abstract void clearValue(int slot);
+
+    // Replaces the value arrays with ones of the given length, copying the value of every
+    // old slot i to newSlots[i] where that is not ABSENT
+    abstract void resizeValues(int length, int[] newSlots);
+
+    final int size() {
+        return size + (hasZeroKey ? 1 : 0);
+    }
+
+    final int slotOf(long key) {
+        if (key == 0) {
+            return hasZeroKey ? keys.length : ABSENT;
+        }
+        for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            long candidate = keys[slot];
+            if (candidate == key) {
+                return slot;
+            }
+            if (candidate == 0) {
+                return ABSENT;
+            }
+        }
+    }
+
+    // Slot of the key, inserting it first if absent; check slotOf beforehand to tell apart
+    final int insert(long key) {
+        if (key == 0) {
+            hasZeroKey = true;
+            return keys.length;
+        }
+        for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            long candidate = keys[slot];
+            if (candidate == key) {
+                return slot;
+            }
+            if (candidate == 0) {
+                if ((size + 1) * 4L > keys.length * 3L) {
+                    grow();
+                    return insert(key);
+                }
+                keys[slot] = key;
+                size++;
+                return slot;
+            }
+        }
+    }
+
+    final void removeAt(int slot) {
+        if (slot == keys.length) {
+            hasZeroKey = false;
+            clearValue(slot);
+            return;
+        }
+        int hole = slot;
+        for (int next = (hole + 1) & mask; ; next = (next + 1) & mask) {
+            long key = keys[next];
+            if (key == 0) {
+                break;
+            }
+            if (((next - (mix(key) & mask)) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = key;
+                moveValue(next, hole);
+                hole = next;
+            }
+        }
+        keys[hole] = 0;
+        clearValue(hole);
+        size--;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        keys = new long[oldKeys.length * 2];
+        mask = keys.length - 1;
+        int[] newSlots = new int[oldKeys.length + 1];
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key == 0) {
+                newSlots[i] = ABSENT;
+                continue;
+            }
+            int slot = mix(key) & mask;
+            while (keys[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            newSlots[i] = slot;
+        }
+        newSlots[oldKeys.length] = hasZeroKey ? keys.length : ABSENT;
+        resizeValues(keys.length + 1, newSlots);
+    }
+
+    private static int mix(long key) {
+        long hash = key * 0x9e3779b97f4a7c15L; // Fibonacci hashing spreads sequential IDs
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
@@ -0,0 +1,359 @@
+package org.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+
+// Eager-write transactional cache specialized for long keys and long values, e.g. ID to
+// counter or ID to ID maps. Entries live in parallel primitive arrays and each thread's
+// undo log is a set of parallel arrays too, so reads, writes, transactions and rollbacks
+// allocate nothing once the arrays have grown. The boxed Cache methods are there for
+// drop-in use and pay for boxing like any other engine.
+class LongLongTransactionalCache implements Cache<Long, Long>, Transactional {
+    private final long absentValue;
+    private final Table table = new Table();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<UndoLog> undoLogs = ThreadLocal.withInitial(UndoLog::new);
+
+    LongLongTransactionalCache() {
+        this(0);
+    }
+
+    // absentValue is what the primitive get returns for a missing key
+    LongLongTransactionalCache(long absentValue) {
+        this.absentValue = absentValue;
+    }
+
+    long get(long key) {
+        lock.readLock().lock();
+        try {
+            int slot = table.slotOf(key);
+            return slot != LongKeyTable.ABSENT ? table.values[slot] : absentValue;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean containsKey(long key) {
+        lock.readLock().lock();
+        try {
+            return table.slotOf(key) != LongKeyTable.ABSENT;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void put(long key, long value) {
+        UndoLog undoLog = undoLogs.get();
+        lock.writeLock().lock();
+        try {
+            if (undoLog.isActive()) {
+                record(undoLog, key);
+            }
+            int slot = table.insert(key); // May grow the value array, so index it afterwards
+            table.values[slot] = value;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void delete(long key) {
+        UndoLog undoLog = undoLogs.get();
+        lock.writeLock().lock();
+        try {
+            int slot = table.slotOf(key);
+            if (slot == LongKeyTable.ABSENT) {
+                return;
+            }
+            if (undoLog.isActive()) {
+                undoLog.add(key, table.values[slot], true);
+            }
+            table.removeAt(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return table.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Long get(Long key) {
+        lock.readLock().lock();
+        try {
+            int slot = table.slotOf(key);
+            return slot != LongKeyTable.ABSENT ? table.values[slot] : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(Long key, Long value) {
+        put(key.longValue(), value.longValue());
+    }
+
+    @Override
+    public void delete(Long key) {
+        delete(key.longValue());
+    }
+
+    @Override
+    public Long compute(Long key, BiFunction<? super Long, ? super Long, ? extends Long> remapping) {
+        long primitiveKey = key;
+        UndoLog undoLog = undoLogs.get();
+        lock.writeLock().lock();
+        try {
+            int slot = table.slotOf(primitiveKey);
+            Long current = slot != LongKeyTable.ABSENT ? table.values[slot] : null;
+            Long value = remapping.apply(key, current);
+            if (Objects.equals(value, current)) {
+                return value;
+            }
+            if (undoLog.isActive()) {
+                record(undoLog, primitiveKey);
+            }
+            if (value != null) {
+                slot = table.insert(primitiveKey);
+                table.values[slot] = value;
+            } else {
+                table.removeAt(table.slotOf(primitiveKey));
+            }
+            return value;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void beginTransaction() {
+        undoLogs.get().begin(); // Create a new transaction level
+    }
+
+    @Override
+    public void commitTransaction() {
+        UndoLog undoLog = undoLogs.get();
+        if (!undoLog.isActive()) {
+            throw new IllegalStateException("No active transaction to commit");
+        }
+        // A nested level's records simply become part of its parent
+        undoLog.commit();
+    }
+
+    @Override
+    public void rollbackTransaction() {
+        UndoLog undoLog = undoLogs.get();
+        if (!undoLog.isActive()) {
+            throw new IllegalStateException("No active transaction to rollback");
+        }
+
+        // Roll back only the current transaction, newest record first
+        lock.writeLock().lock();
+        try {
+            undo(undoLog, undoLog.levelStart());
+            undoLog.rollback();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int transactionDepth() {
+        return undoLogs.get().depth;
+    }
+
+    @Override
+    public long transactionId() {
+        return undoLogs.get().levelId();
+    }
+
+    @Override
+    public Savepoint savepoint() {
+        UndoLog undoLog = undoLogs.get();
+        if (!undoLog.isActive()) {
+            throw new IllegalStateException("No active transaction to savepoint");
+        }
+        return undoLog.savepoint();
+    }
+
+    @Override
+    public void rollbackTo(Savepoint savepoint) {
+        UndoLog undoLog = undoLogs.get();
+        UndoLog.Mark mark = undoLog.check(savepoint);
+        lock.writeLock().lock();
+        try {
+            undo(undoLog, mark.position);
+            undoLog.rollbackTo(mark);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void release(Savepoint savepoint) {
+        undoLogs.get().release(savepoint);
+    }
+
+    // Restores the records from start on, newest first; caller holds the write lock
+    private void undo(UndoLog undoLog, int start) {
+        for (int i = undoLog.size - 1; i >= start; i--) {
+            long key = undoLog.keys[i];
+            if (undoLog.present[i]) {
+                int slot = table.insert(key);
+                table.values[slot] = undoLog.oldValues[i];
+            } else {
+                int slot = table.slotOf(key);
+                if (slot != LongKeyTable.ABSENT) {
+                    table.removeAt(slot);
+                }
+            }
+        }
+    }
+
+    // Caller holds the write lock
+    private void record(UndoLog undoLog, long key) {
+        int slot = table.slotOf(key);
+        if (slot != LongKeyTable.ABSENT) {
+            undoLog.add(key, table.values[slot], true);
+        } else {
+            undoLog.add(key, 0, false);
+        }
+    }
+
+    private static final class Table extends LongKeyTable {
+        long[] values = new long[INITIAL_VALUE_SLOTS];
+
+        @Override
+        void moveValue(int from, int to) {
+            values[to] = values[from];
+        }
+
+        @Override
+        void clearValue(int slot) {
+        }
+
+        @Override
+        void resizeValues(int length, int[] newSlots) {
+            long[] old = values;
+            values = new long[length];
+            for (int i = 0; i < newSlots.length; i++) {
+                if (newSlots[i] != ABSENT) {
+                    values[newSlots[i]] = old[i];
+                }
+            }
+        }
+    }
+
+    // One thread's undo records for all its open levels, as parallel arrays. Each level
+    // starts where its parent's records end, so committing a nested level just forgets its
+    // start and rolling back truncates the arrays. A savepoint is just an offset into them.
+    private static final class UndoLog {
+        long[] keys = new long[16];
+        long[] oldValues = new long[16];
+        boolean[] present = new boolean[16]; // Whether the key existed before the write
+        int size;
+        int[] levelStarts = new int[4];
+        int depth;
+        long[] levelIds = new long[4];
+        long begins;
+        final List<Mark> savepoints = new ArrayList<>(); // Oldest first
+
+        boolean isActive() {
+            return depth > 0;
+        }
+
+        void begin() {
+            if (depth == levelStarts.length) {
+                levelStarts = Arrays.copyOf(levelStarts, depth * 2);
+                levelIds = Arrays.copyOf(levelIds, depth * 2);
+            }
+            levelIds[depth] = ++begins;
+            levelStarts[depth++] = size;
+        }
+
+        // Identifies the innermost level, 0 with none open; every begin gets a new one
+        long levelId() {
+            return depth > 0 ? levelIds[depth - 1] : 0;
+        }
+
+        int levelStart() {
+            return levelStarts[depth - 1];
+        }
+
+        void add(long key, long oldValue, boolean wasPresent) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                oldValues = Arrays.copyOf(oldValues, size * 2);
+                present = Arrays.copyOf(present, size * 2);
+            }
+            keys[size] = key;
+            oldValues[size] = oldValue;
+            present[size++] = wasPresent;
+        }
+
+        void commit() {
+            depth--;
+            if (depth == 0) {
+                size = 0;
+            }
+            releaseDeeperThan(depth);
+        }
+
+        void rollback() {
+            size = levelStarts[--depth];
+            releaseDeeperThan(depth);
+        }
+
+        Savepoint savepoint() {
+            Mark mark = new Mark(depth, size);
+            savepoints.add(mark);
+            return mark;
+        }
+
+        // Drops the records after the savepoint, which the caller has undone, and closes
+        // the levels begun since
+        void rollbackTo(Mark mark) {
+            size = mark.position;
+            depth = mark.depth;
+            savepoints.subList(savepoints.indexOf(mark) + 1, savepoints.size()).clear();
+        }
+
+        void release(Savepoint savepoint) {
+            Mark mark = check(savepoint);
+            savepoints.subList(savepoints.indexOf(mark), savepoints.size()).clear();
+        }
+
+        Mark check(Savepoint savepoint) {
+            if (!(savepoint instanceof Mark mark) || !savepoints.contains(mark)) {
+                throw new IllegalStateException("Savepoint is no longer active");
+            }
+            return mark;
+        }
+
+        private void releaseDeeperThan(int level) {
+            while (!savepoints.isEmpty() && savepoints.get(savepoints.size() - 1).depth > level) {
+                savepoints.remove(savepoints.size() - 1);
+            }
+        }
+
+        // Savepoints compare by identity, so two taken at the same offset stay distinct
+        static final class Mark implements Savepoint {
+            final int depth;
+            final int position;
+
+            Mark(int depth, int position) {
+                this.depth = depth;
+                this.position = position;
+            }
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package org.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+
+// Eager-write transactional cache specialized for long keys, e.g. ID to byte[] or ID to
+// record maps. Keys live in a primitive open-addressing table and each thread's undo log is
+// a pair of parallel arrays, so the primitive methods never box a key and transactions
+// allocate nothing once the arrays have grown. Values must not be null.
+class LongObjectTransactionalCache<V> implements Cache<Long, V>, Transactional {
+    private final Table<V> table = new Table<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<UndoLog> undoLogs = ThreadLocal.withInitial(UndoLog::new);
+
+    V get(long key) {
+        lock.readLock().lock();
+        try {
+            return table.valueAt(table.slotOf(key));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("Values must not be null");
+        }
+        UndoLog undoLog = undoLogs.get();
+        lock.writeLock().lock();
+        try {
+            if (undoLog.isActive()) {
+                undoLog.add(key, table.valueAt(table.slotOf(key)));
+            }
+            int slot = table.insert(key); // May grow the value array, so index it afterwards
+            table.values[slot] = value;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void delete(long key) {
+        UndoLog undoLog = undoLogs.get();
+        lock.writeLock().lock();
+        try {
+            int slot = table.slotOf(key);
+            if (slot == LongKeyTable.ABSENT) {
+                return;
+            }
+            if (undoLog.isActive()) {
+                undoLog.add(key, table.values[slot]);
+            }
+            table.removeAt(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return table.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public V get(Long key) {
+        return get(key.longValue());
+    }
+
+    @Override
+    public void put(Long key, V value) {
+        put(key.longValue(), value);
+    }
+
+    @Override
+    public void delete(Long key) {
+        delete(key.longValue());
+    }
+
+    @Override
+    public V compute(Long key, BiFunction<? super Long, ? super V, ? extends V> remapping) {
+        long primitiveKey = key;
+        UndoLog undoLog = undoLogs.get();
+        lock.writeLock().lock();
+        try {
+            V current = table.valueAt(table.slotOf(primitiveKey));
+            V value = remapping.apply(key, current);
+            if (value == current) {
+                return value;
+            }
+            if (undoLog.isActive()) {
+                undoLog.add(primitiveKey, current);
+            }
+            if (value != null) {
+                int slot = table.insert(primitiveKey);
+                table.values[slot] = value;
+            } else {
+                table.removeAt(table.slotOf(primitiveKey));
+            }
+            return value;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void beginTransaction() {
+        undoLogs.get().begin(); // Create a new transaction level
+    }
+
+    @Override
+    public void commitTransaction() {
+        UndoLog undoLog = undoLogs.get();
+        if (!undoLog.isActive()) {
+            throw new IllegalStateException("No active transaction to commit");
+        }
+        // A nested level's records simply become part of its parent
+        undoLog.commit();
+    }
+
+    @Override
+    public void rollbackTransaction() {
+        UndoLog undoLog = undoLogs.get();
+        if (!undoLog.isActive()) {
+            throw new IllegalStateException("No active transaction to rollback");
+        }
+
+        // Roll back only the current transaction, newest record first
+        lock.writeLock().lock();
+        try {
+            undo(undoLog, undoLog.levelStart());
+            undoLog.rollback();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int transactionDepth() {
+        return undoLogs.get().depth;
+    }
+
+    @Override
+    public long transactionId() {
+        return undoLogs.get().levelId();
+    }
+
+    @Override
+    public Savepoint savepoint() {
+        UndoLog undoLog = undoLogs.get();
+        if (!undoLog.isActive()) {
+            throw new IllegalStateException("No active transaction to savepoint");
+        }
+        return undoLog.savepoint();
+    }
+
+    @Override
+    public void rollbackTo(Savepoint savepoint) {
+        UndoLog undoLog = undoLogs.get();
+        UndoLog.Mark mark = undoLog.check(savepoint);
+        lock.writeLock().lock();
+        try {
+            undo(undoLog, mark.position);
+            undoLog.rollbackTo(mark);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void release(Savepoint savepoint) {
+        undoLogs.get().release(savepoint);
+    }
+
+    // Restores the records from start on, newest first; caller holds the write lock
+    private void undo(UndoLog undoLog, int start) {
+        for (int i = undoLog.size - 1; i >= start; i--) {
+            long key = undoLog.keys[i];
+            Object oldValue = undoLog.oldValues[i];
+            if (oldValue != null) {
+                int slot = table.insert(key);
+                table.values[slot] = oldValue;
+            } else {
+                int slot = table.slotOf(key);
+                if (slot != LongKeyTable.ABSENT) {
+                    table.removeAt(slot);
+                }
+            }
+        }
+    }
+
+    private static final class Table<V> extends LongKeyTable {
+        Object[] values = new Object[INITIAL_VALUE_SLOTS];
+
+        @SuppressWarnings("unchecked")
+        V valueAt(int slot) {
+            return slot != ABSENT ? (V) values[slot] : null;
+        }
+
+        @Override
+        void moveValue(int from, int to) {
+            values[to] = values[from];
+        }
+
+        @Override
+        void clearValue(int slot) {
+            values[slot] = null;
+        }
+
+        @Override
+        void resizeValues(int length, int[] newSlots) {
+            Object[] old = values;
+            values = new Object[length];
+            for (int i = 0; i < newSlots.length; i++) {
+                if (newSlots[i] != ABSENT) {
+                    values[newSlots[i]] = old[i];
+                }
+            }
+        }
+    }
+
+    // One thread's undo records for all its open levels, as parallel arrays; a null old
+    // value means the key was absent. Each level starts where its parent's records end, so
+    // committing a nested level just forgets its start and rolling back truncates the arrays.
+    // A savepoint is just an offset into them.
+    private static final class UndoLog {
+        long[] keys = new long[16];
+        Object[] oldValues = new Object[16];
+        int size;
+        int[] levelStarts = new int[4];
+        int depth;
+        long[] levelIds = new long[4];
+        long begins;
+        final List<Mark> savepoints = new ArrayList<>(); // Oldest first
+
+        boolean isActive() {
+            return depth > 0;
+        }
+
+        void begin() {
+            if (depth == levelStarts.length) {
+                levelStarts = Arrays.copyOf(levelStarts, depth * 2);
+                levelIds = Arrays.copyOf(levelIds, depth * 2);
+            }
+            levelIds[depth] = ++begins;
+            levelStarts[depth++] = size;
+        }
+
+        // Identifies the innermost level, 0 with none open; every begin gets a new one
+        long levelId() {
+            return depth > 0 ? levelIds[depth - 1] : 0;
+        }
+
+        int levelStart() {
+            return levelStarts[depth - 1];
+        }
+
+        void add(long key, Object oldValue) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                oldValues = Arrays.copyOf(oldValues, size * 2);
+            }
+            keys[size] = key;
+            oldValues[size++] = oldValue;
+        }
+
+        void commit() {
+            depth--;
+            if (depth == 0) {
+                truncate(0);
+            }
+            releaseDeeperThan(depth);
+        }
+
+        void rollback() {
+            truncate(levelStarts[--depth]);
+            releaseDeeperThan(depth);
+        }
+
+        Savepoint savepoint() {
+            Mark mark = new Mark(depth, size);
+            savepoints.add(mark);
+            return mark;
+        }
+
+        // Drops the records after the savepoint, which the caller has undone, and closes
+        // the levels begun since
+        void rollbackTo(Mark mark) {
+            truncate(mark.position);
+            depth = mark.depth;
+            savepoints.subList(savepoints.indexOf(mark) + 1, savepoints.size()).clear();
+        }
+
+        void release(Savepoint savepoint) {
+            Mark mark = check(savepoint);
+            savepoints.subList(savepoints.indexOf(mark), savepoints.size()).clear();
+        }
+
+        Mark check(Savepoint savepoint) {
+            if (!(savepoint instanceof Mark mark) || !savepoints.contains(mark)) {
+                throw new IllegalStateException("Savepoint is no longer active");
+            }
+            return mark;
+        }
+
+        private void releaseDeeperThan(int level) {
+            while (!savepoints.isEmpty() && savepoints.get(savepoints.size() - 1).depth > level) {
+                savepoints.remove(savepoints.size() - 1);
+            }
+        }
+
+        // Clears the dropped old values so the log doesn't keep them reachable
+        private void truncate(int newSize) {
+            Arrays.fill(oldValues, newSize, size, null);
+            size = newSize;
+        }
+
+        // Savepoints compare by identity, so two taken at the same offset stay distinct
+        static final class Mark implements Savepoint {
+            final int depth;
+            final int position;
+
+            Mark(int depth, int position) {
+                this.depth = depth;
+                this.position = position;
+            }
+        }
+    }
+}
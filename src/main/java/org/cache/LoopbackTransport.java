@@ -0,0 +1,30 @@
+package org.cache;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// In-process transport that hands every frame straight to each receiver on the sender's
+// thread, for tests and for followers living in the same JVM. A receiver that throws is
+// disconnected, as a broken connection would be, so it can't fail the sender or starve
+// the other receivers.
+final class LoopbackTransport implements ReplicationTransport {
+    private final List<Consumer<ByteBuffer>> receivers = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void send(ByteBuffer frame) {
+        for (Consumer<ByteBuffer> receiver : receivers) {
+            try {
+                receiver.accept(frame.asReadOnlyBuffer());
+            } catch (RuntimeException e) {
+                receivers.remove(receiver);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<ByteBuffer> receiver) {
+        receivers.add(receiver);
+    }
+}
@@ -0,0 +1,37 @@
+package org.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Predicate;
+
+// Evicts the least recently used key
+class LruPolicy<K> implements EvictionPolicy<K> {
+    private final LinkedHashMap<K, Boolean> order = new LinkedHashMap<>(16, 0.75f, true);
+
+    @Override
+    public void recordInsert(K key) {
+        order.put(key, Boolean.TRUE);
+    }
+
+    @Override
+    public void recordAccess(K key) {
+        order.get(key); // Moves the key to the most recently used end
+    }
+
+    @Override
+    public void recordRemoval(K key) {
+        order.remove(key);
+    }
+
+    @Override
+    public K evict(Predicate<? super K> evictable) {
+        for (Iterator<K> it = order.keySet().iterator(); it.hasNext(); ) {
+            K key = it.next();
+            if (evictable.test(key)) {
+                it.remove();
+                return key;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,438 @@
+package org.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+// Snapshot-isolation cache: every key keeps a chain of committed versions stamped with a
+// global commit timestamp. Readers never lock; writers buffer their changes and validate
+// them at commit time, where the first committer wins.
+class MvccCache<K, V> implements Cache<K, V>, Transactional {
+    private final ConcurrentMap<K, Version<V>> versions; // Newest version first
+    private final AtomicLong commitClock = new AtomicLong();
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final SnapshotRegistry snapshots = new SnapshotRegistry(commitClock);
+    // Keys whose chains keep versions a snapshot older than the horizon held back, trimmed
+    // again once the horizon moves past drainedHorizon. Both change only under the commit lock.
+    private final Set<K> retained = ConcurrentHashMap.newKeySet();
+    private volatile long drainedHorizon;
+    private final ThreadLocal<Context<K, V>> contexts = ThreadLocal.withInitial(Context::new);
+    private final Checkpoints<K, V> checkpoints; // Null unless checkpointed
+    private final WriteAheadLog<K, V> log; // Null unless durable
+
+    MvccCache() {
+        this(null, null);
+    }
+
+    // Durable cache, recovered from the newest checkpoint plus the log records after it.
+    // Every commit is appended under the commit lock, so its log sequence is its commit
+    // timestamp, and returns once it has been fsynced. A commit whose fsync fails stays
+    // installed, so the caller's error means applied but not durable; the log then rejects
+    // every later append, so later commits fail before installing anything. Checkpoints may
+    // be null, but need a log.
+    MvccCache(Checkpoints<K, V> checkpoints, WriteAheadLog<K, V> log) {
+        this(new ConcurrentHashMap<>(), checkpoints, log);
+    }
+
+    // versions holds every key's chain; SortedCache passes a skip list to scan it in order
+    MvccCache(ConcurrentMap<K, Version<V>> versions, Checkpoints<K, V> checkpoints, WriteAheadLog<K, V> log) {
+        if (checkpoints != null && log == null) {
+            // A checkpoint covers a log position, and truncates the log behind it
+            throw new IllegalArgumentException("Checkpoints need a write-ahead log");
+        }
+        this.versions = versions;
+        this.checkpoints = checkpoints;
+        this.log = log;
+        if (log != null) {
+            recover();
+        }
+    }
+
+    private void recover() {
+        long checkpointed = checkpoints != null
+                ? checkpoints.load((key, value) -> versions.put(key, new Version<>(0, value, null)))
+                : 0;
+        if (log.lastSequence() < checkpointed) {
+            throw new IllegalStateException("Write-ahead log ends at " + log.lastSequence()
+                    + " but the checkpoint covers " + checkpointed);
+        }
+        log.replay(checkpointed, (sequence, writes) -> {
+            for (WriteCommand<K, V> command : writes) {
+                if (command.value() == null) {
+                    versions.remove(command.key());
+                } else {
+                    versions.put(command.key(), new Version<>(0, command.value(), null));
+                }
+            }
+        });
+        commitClock.set(log.lastSequence());
+    }
+
+    @Override
+    public V get(K key) {
+        Context<K, V> context = contexts.get();
+        if (context.writes.isActive()) {
+            // Read our own uncommitted writes first, then the transaction's snapshot
+            WriteCommand<K, V> pending = context.writes.lookup(key);
+            return pending != null ? pending.value() : read(key, context.snapshot);
+        }
+        long snapshot = snapshots.acquire();
+        try {
+            return read(key, snapshot);
+        } finally {
+            unpin(snapshot);
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        write(new PutCommand<>(key, value, null));
+    }
+
+    @Override
+    public void delete(K key) {
+        write(new DeleteCommand<>(key, null));
+    }
+
+    private void write(WriteCommand<K, V> command) {
+        Context<K, V> context = contexts.get();
+        if (context.writes.isActive()) {
+            context.writes.record(command);
+            return;
+        }
+        // A blind write outside a transaction can't conflict with anything
+        WriteAheadLog.await(publish(Map.of(command.key(), command), Long.MAX_VALUE));
+    }
+
+    // Inside a transaction the update is one of its buffered writes, read at its snapshot
+    // and validated at commit like any other. Outside one it runs under the commit lock, so
+    // no commit can slip in between reading the latest value and installing the result.
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        Context<K, V> context = contexts.get();
+        if (context.writes.isActive()) {
+            WriteCommand<K, V> pending = context.writes.lookup(key);
+            V current = pending != null ? pending.value() : read(key, context.snapshot);
+            V value = remapping.apply(key, current);
+            if (value != current) {
+                context.writes.record(WriteCommand.of(key, value));
+            }
+            return value;
+        }
+        CompletableFuture<Void> durable = null;
+        V value;
+        commitLock.lock();
+        try {
+            V current = read(key, commitClock.get());
+            value = remapping.apply(key, current);
+            if (value != current) {
+                durable = publish(Map.of(key, WriteCommand.of(key, value)), Long.MAX_VALUE);
+            }
+        } finally {
+            commitLock.unlock();
+        }
+        WriteAheadLog.await(durable);
+        return value;
+    }
+
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        Context<K, V> context = contexts.get();
+        boolean pinned = !context.writes.isActive();
+        long snapshot = pinned ? snapshots.acquire() : context.snapshot;
+        try {
+            Map<K, V> result = new HashMap<>();
+            for (K key : keys) {
+                WriteCommand<K, V> pending = context.writes.lookup(key);
+                V value = pending != null ? pending.value() : read(key, snapshot);
+                if (value != null) {
+                    result.put(key, value);
+                }
+            }
+            return result;
+        } finally {
+            if (pinned) {
+                unpin(snapshot);
+            }
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        Map<K, WriteCommand<K, V>> commands = new LinkedHashMap<>();
+        entries.forEach((key, value) -> commands.put(key, new PutCommand<>(key, value, null)));
+        writeAll(commands);
+    }
+
+    @Override
+    public void deleteAll(Collection<? extends K> keys) {
+        Map<K, WriteCommand<K, V>> commands = new LinkedHashMap<>();
+        for (K key : keys) {
+            commands.put(key, new DeleteCommand<>(key, null));
+        }
+        writeAll(commands);
+    }
+
+    private void writeAll(Map<K, WriteCommand<K, V>> commands) {
+        Context<K, V> context = contexts.get();
+        if (context.writes.isActive()) {
+            commands.values().forEach(context.writes::record);
+        } else if (!commands.isEmpty()) {
+            // Installed under a single commit timestamp
+            WriteAheadLog.await(publish(commands, Long.MAX_VALUE));
+        }
+    }
+
+    @Override
+    public void beginTransaction() {
+        Context<K, V> context = contexts.get();
+        if (!context.writes.isActive()) {
+            context.snapshot = snapshots.acquire();
+        }
+        context.writes.begin(); // Nested levels share the outermost snapshot
+    }
+
+    @Override
+    public void commitTransaction() {
+        Context<K, V> context = contexts.get();
+        if (!context.writes.isActive()) {
+            throw new IllegalStateException("No active transaction to commit");
+        }
+        Map<K, WriteCommand<K, V>> writes = context.writes.commit();
+        if (writes == null) {
+            return;
+        }
+        CompletableFuture<Void> durable = null;
+        try {
+            if (!writes.isEmpty()) {
+                durable = publish(writes, context.snapshot);
+            }
+        } finally {
+            unpin(context.snapshot);
+        }
+        WriteAheadLog.await(durable);
+    }
+
+    @Override
+    public void rollbackTransaction() {
+        Context<K, V> context = contexts.get();
+        if (!context.writes.isActive()) {
+            throw new IllegalStateException("No active transaction to rollback");
+        }
+        context.writes.rollback();
+        if (!context.writes.isActive()) {
+            unpin(context.snapshot);
+        }
+    }
+
+    @Override
+    public int transactionDepth() {
+        return contexts.get().writes.depth();
+    }
+
+    @Override
+    public long transactionId() {
+        return contexts.get().writes.levelId();
+    }
+
+    @Override
+    public Savepoint savepoint() {
+        Context<K, V> context = contexts.get();
+        if (!context.writes.isActive()) {
+            throw new IllegalStateException("No active transaction to savepoint");
+        }
+        return context.writes.savepoint();
+    }
+
+    // The outermost level always outlives its savepoints, so the snapshot stays pinned
+    @Override
+    public void rollbackTo(Savepoint savepoint) {
+        contexts.get().writes.rollbackTo(savepoint);
+    }
+
+    @Override
+    public void release(Savepoint savepoint) {
+        contexts.get().writes.release(savepoint);
+    }
+
+    // Writes a checkpoint of the latest committed state, then drops the log segments it
+    // covers. The checkpoint reads a pinned snapshot, so readers and committers carry on
+    // meanwhile. Owners call this periodically, e.g. from a ScheduledExecutorService.
+    void checkpoint() {
+        if (checkpoints == null) {
+            throw new IllegalStateException("Cache was created without checkpoints");
+        }
+        if (contexts.get().writes.isActive()) {
+            throw new IllegalStateException("Cannot checkpoint inside a transaction");
+        }
+        long snapshot = snapshots.acquire();
+        try {
+            log.roll(); // Also waits until every commit up to the snapshot is on disk
+            checkpoints.write(snapshot, () -> versions.keySet().stream()
+                    .map(key -> {
+                        V value = read(key, snapshot);
+                        return value != null ? Map.entry(key, value) : null;
+                    })
+                    .filter(Objects::nonNull)
+                    .iterator());
+            log.deleteThrough(snapshot);
+        } finally {
+            unpin(snapshot);
+        }
+    }
+
+    // Number of versions retained for the key, including tombstones
+    int versionCount(K key) {
+        int count = 0;
+        for (Version<V> version = versions.get(key); version != null; version = version.previous) {
+            count++;
+        }
+        return count;
+    }
+
+    private V read(K key, long snapshot) {
+        return visible(versions.get(key), snapshot);
+    }
+
+    // Value of the chain as of the snapshot, or null if the key was absent then
+    static <V> V visible(Version<V> head, long snapshot) {
+        for (Version<V> version = head; version != null; version = version.previous) {
+            if (version.timestamp <= snapshot) {
+                return version.value;
+            }
+        }
+        return null;
+    }
+
+    // What a scan opened now reads: inside a transaction, its snapshot and pending writes;
+    // outside one, a snapshot pinned for the scan alone, which the scan closes when done
+    ScanView<K, V> openScan() {
+        Context<K, V> context = contexts.get();
+        if (context.writes.isActive()) {
+            return new ScanView<>(context.snapshot, context.writes.pending(), null);
+        }
+        SnapshotRegistry.Pin pin = snapshots.pin();
+        return new ScanView<>(pin.timestamp(), Map.of(), pin);
+    }
+
+    record ScanView<K, V>(long snapshot, Map<K, WriteCommand<K, V>> pending, SnapshotRegistry.Pin pin) {
+    }
+
+    // Returns the pending fsync of the commit when durable, which callers await after
+    // releasing their locks
+    private CompletableFuture<Void> publish(Map<K, WriteCommand<K, V>> writes, long snapshot) {
+        commitLock.lock();
+        try {
+            for (K key : writes.keySet()) {
+                Version<V> head = versions.get(key);
+                if (head != null && head.timestamp > snapshot) {
+                    throw new TransactionConflictException("Key " + key + " was modified by a concurrent transaction");
+                }
+            }
+            long timestamp = commitClock.get() + 1;
+            CompletableFuture<Void> durable = log != null ? log.append(writes.values()) : null;
+            for (WriteCommand<K, V> command : writes.values()) {
+                Version<V> head = versions.get(command.key());
+                if (head != null || command.value() != null) {
+                    versions.put(command.key(), new Version<>(timestamp, command.value(), head));
+                }
+            }
+            // Readers only see the new versions once the clock moves past them
+            commitClock.set(timestamp);
+            long horizon = Math.min(snapshots.oldestActive(), timestamp);
+            for (K key : writes.keySet()) {
+                if (!trim(key, horizon)) {
+                    retained.add(key);
+                }
+            }
+            drainRetained(horizon);
+            return durable;
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    // Drops the key's versions no snapshot at or after the horizon can reach, and returns
+    // whether its chain is now as short as it will ever get
+    private boolean trim(K key, long horizon) {
+        Version<V> head = versions.get(key);
+        if (head == null) {
+            return true;
+        }
+        Version<V> visible = head;
+        while (visible != null && visible.timestamp > horizon) {
+            visible = visible.previous;
+        }
+        if (visible == null) {
+            // Only newer snapshots see this key; a lone live version is all it can shrink to
+            return head.previous == null && head.value != null;
+        }
+        visible.previous = null;
+        if (visible == head && head.value == null) {
+            versions.remove(key, head);
+        }
+        return visible == head;
+    }
+
+    // Trims the chains older snapshots held back, once the horizon has moved past them.
+    // Caller holds the commit lock.
+    private void drainRetained(long horizon) {
+        if (horizon > drainedHorizon && !retained.isEmpty()) {
+            retained.removeIf(key -> trim(key, horizon));
+        }
+        drainedHorizon = Math.max(drainedHorizon, horizon);
+    }
+
+    // Unpins the calling thread. A snapshot at or below the last horizon may have been
+    // what held versions back, so its release drains them rather than waiting for a commit.
+    private void unpin(long snapshot) {
+        snapshots.release();
+        reclaimAfterRelease(snapshot);
+    }
+
+    // Closes a scan's pinned snapshot, reclaiming what it held back
+    void closeScan(SnapshotRegistry.Pin pin) {
+        long snapshot = pin.timestamp();
+        pin.close();
+        reclaimAfterRelease(snapshot);
+    }
+
+    private void reclaimAfterRelease(long snapshot) {
+        if (snapshot > drainedHorizon || retained.isEmpty()) {
+            return;
+        }
+        commitLock.lock();
+        try {
+            drainRetained(Math.min(snapshots.oldestActive(), commitClock.get()));
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    // One committed value of a key; a null value marks a delete
+    static final class Version<V> {
+        final long timestamp;
+        final V value;
+        volatile Version<V> previous;
+
+        Version(long timestamp, V value, Version<V> previous) {
+            this.timestamp = timestamp;
+            this.value = value;
+            this.previous = previous;
+        }
+    }
+
+    private static final class Context<K, V> {
+        final WriteSet<K, V> writes = new WriteSet<>();
+        long snapshot;
+    }
+}
@@ -1,69 +1,295 @@
 package org.cache;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
 
-class NestedTransactionCache<K, V> implements Cache<K, V> {
-    private final Map<K, V> cache = new ConcurrentHashMap<>();
-    private final ConcurrentLinkedDeque<ConcurrentLinkedDeque<CacheCommand<K, V>>> transactionStack = new ConcurrentLinkedDeque<>();
+class NestedTransactionCache<K, V> implements Cache<K, V>, Transactional, Counters<K> {
+    private final Map<K, V> cache;
+    private final PinnableStore<K> pins; // Set when the store can evict entries on its own
+    private final ExpiringMap<K, V> expiring; // Set when the store supports per-entry TTLs
+    private final CacheMetrics metrics; // Null unless instrumented
+    // Each thread owns its transaction levels, so undo records never leak across threads
+    private final ThreadLocal<UndoLog<K, V>> undoLogs = ThreadLocal.withInitial(UndoLog::new);
+
+    NestedTransactionCache() {
+        this(new ConcurrentHashMap<>());
+    }
+
+    // The store must be thread-safe, e.g. a BoundedMap or an ExpiringMap
+    NestedTransactionCache(Map<K, V> store) {
+        this(store, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    NestedTransactionCache(Map<K, V> store, CacheMetrics metrics) {
+        cache = store;
+        this.metrics = metrics;
+        pins = store instanceof PinnableStore ? (PinnableStore<K>) store : null;
+        expiring = store instanceof ExpiringMap ? (ExpiringMap<K, V>) store : null;
+    }
 
     @Override
     public V get(K key) {
-        return cache.get(key);
+        V value = cache.get(key);
+        if (metrics != null) {
+            metrics.recordGet(value);
+        }
+        return value;
     }
 
     @Override
     public void put(K key, V value) {
-        if (!transactionStack.isEmpty()) {
-            V oldValue = cache.get(key);
-            if (transactionStack.peek() != null) {
-                transactionStack.peek().push(new PutCommand<>(key, value, oldValue));
-            }
+        write(key, value, null);
+    }
+
+    @Override
+    public boolean supportsExpiration() {
+        return expiring != null;
+    }
+
+    @Override
+    public void put(K key, V value, Duration ttl) {
+        if (expiring == null) {
+            throw new UnsupportedOperationException("Per-entry expiration requires an ExpiringMap store");
+        }
+        write(key, value, ttl);
+    }
+
+    private void write(K key, V value, Duration ttl) {
+        if (metrics != null) {
+            metrics.recordPuts(1);
+        }
+        UndoLog<K, V> undoLog = undoLogs.get();
+        pin(undoLog, key);
+        // Undo restores the old entry's remaining lifetime along with its value
+        long oldExpiry = undoLog.isActive() ? ExpiringMap.expiryOf(cache, key) : ExpiringMap.NO_EXPIRY;
+        V oldValue = ttl != null ? expiring.put(key, value, ttl) : cache.put(key, value);
+        if (undoLog.isActive()) {
+            undoLog.recordPut(key, oldValue, oldExpiry);
         }
-        cache.put(key, value);
     }
 
     @Override
     public void delete(K key) {
-        if (!transactionStack.isEmpty()) {
-            V oldValue = cache.get(key);
-            if (transactionStack.peek() != null) {
-                transactionStack.peek().push(new DeleteCommand<>(key, oldValue));
+        if (metrics != null) {
+            metrics.recordDeletes(1);
+        }
+        UndoLog<K, V> undoLog = undoLogs.get();
+        pin(undoLog, key);
+        long oldExpiry = undoLog.isActive() ? ExpiringMap.expiryOf(cache, key) : ExpiringMap.NO_EXPIRY;
+        V oldValue = cache.remove(key);
+        if (undoLog.isActive()) {
+            undoLog.recordDelete(key, oldValue, oldExpiry);
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        if (metrics != null) {
+            metrics.recordPuts(entries.size());
+        }
+        UndoLog<K, V> undoLog = undoLogs.get();
+        if (!undoLog.isActive()) {
+            cache.putAll(entries);
+            return;
+        }
+        for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            K key = entry.getKey();
+            pin(undoLog, key);
+            long oldExpiry = ExpiringMap.expiryOf(cache, key);
+            undoLog.recordPut(key, cache.put(key, entry.getValue()), oldExpiry);
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<? extends K> keys) {
+        if (metrics != null) {
+            metrics.recordDeletes(keys.size());
+        }
+        UndoLog<K, V> undoLog = undoLogs.get();
+        if (!undoLog.isActive()) {
+            keys.forEach(cache::remove);
+            return;
+        }
+        for (K key : keys) {
+            pin(undoLog, key);
+            long oldExpiry = ExpiringMap.expiryOf(cache, key);
+            undoLog.recordDelete(key, cache.remove(key), oldExpiry);
+        }
+    }
+
+    // Runs in the store's bin for the key, so the undo record holds exactly the value the
+    // update replaced. Needs a ConcurrentMap store, the only kind that updates a key
+    // atomically; such a store never evicts or expires, so there is nothing to pin.
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        if (!(cache instanceof ConcurrentMap)) {
+            throw new UnsupportedOperationException("Atomic updates require a ConcurrentMap store");
+        }
+        Object[] replaced = new Object[1];
+        boolean[] changed = new boolean[1];
+        V value = cache.compute(key, (k, old) -> {
+            V computed = remapping.apply(k, old);
+            replaced[0] = old;
+            changed[0] = computed != old;
+            return computed;
+        });
+        if (!changed[0]) {
+            return value;
+        }
+        if (metrics != null) {
+            if (value != null) {
+                metrics.recordPuts(1);
+            } else {
+                metrics.recordDeletes(1);
             }
         }
-        cache.remove(key);
+        UndoLog<K, V> undoLog = undoLogs.get();
+        if (undoLog.isActive()) {
+            @SuppressWarnings("unchecked")
+            V oldValue = (V) replaced[0];
+            if (value != null) {
+                undoLog.recordPut(key, oldValue, ExpiringMap.NO_EXPIRY);
+            } else {
+                undoLog.recordDelete(key, oldValue, ExpiringMap.NO_EXPIRY);
+            }
+        }
+        return value;
     }
 
+    @Override
+    public long increment(K key, long delta) {
+        return adjust(key, delta, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override
+    public boolean add(K key, long delta, long min, long max) {
+        return adjust(key, delta, min, max) != null;
+    }
+
+    // Adds the delta in the store's bin for the key, so concurrent increments of a hot
+    // counter contend only on that bin and none is lost. The undo record holds the delta
+    // rather than the old value, so rolling back leaves other threads' increments in place.
+    // Returns the new value, or null if it would have left [min, max].
+    private Long adjust(K key, long delta, long min, long max) {
+        if (!(cache instanceof ConcurrentMap)) {
+            throw new UnsupportedOperationException("Atomic updates require a ConcurrentMap store");
+        }
+        long[] result = new long[1];
+        boolean[] created = new boolean[1];
+        boolean[] applied = new boolean[1];
+        cache.compute(key, (k, old) -> {
+            long value = Math.addExact(old != null ? (Long) old : 0L, delta);
+            if (value < min || value > max) {
+                return old;
+            }
+            result[0] = value;
+            created[0] = old == null;
+            applied[0] = true;
+            return counter(value);
+        });
+        if (!applied[0]) {
+            return null;
+        }
+        if (metrics != null) {
+            metrics.recordPuts(1);
+        }
+        UndoLog<K, V> undoLog = undoLogs.get();
+        if (undoLog.isActive()) {
+            undoLog.recordDelta(key, delta, created[0]);
+        }
+        return result[0];
+    }
+
+    @SuppressWarnings("unchecked")
+    private V counter(long value) {
+        return (V) Long.valueOf(value);
+    }
+
+    @Override
     public void beginTransaction() {
-        transactionStack.push(new ConcurrentLinkedDeque<>()); // Create a new transaction level
+        UndoLog<K, V> undoLog = undoLogs.get();
+        undoLog.begin(); // Create a new transaction level
+        if (metrics != null) {
+            metrics.recordBegin(undoLog.depth());
+        }
     }
 
+    @Override
     public void commitTransaction() {
-        if (transactionStack.isEmpty()) {
+        UndoLog<K, V> undoLog = undoLogs.get();
+        if (!undoLog.isActive()) {
             throw new IllegalStateException("No active transaction to commit");
         }
-        ConcurrentLinkedDeque<CacheCommand<K, V>> completedTransaction = transactionStack.pop();
 
-        // If a parent transaction exists, merge it with the parent
-        if (!transactionStack.isEmpty()) {
-            transactionStack.peek().addAll(completedTransaction);
+        // A nested level's records simply become part of its parent
+        if (undoLog.depth() == 1 && pins != null) {
+            undoLog.forEachKey(pins::unpin);
         }
+        if (metrics != null) {
+            metrics.recordCommit();
+            if (undoLog.depth() == 1) {
+                metrics.recordUndoLogLength(undoLog.size());
+            }
+        }
+        undoLog.commit();
     }
 
+    @Override
     public void rollbackTransaction() {
-        if (transactionStack.isEmpty()) {
+        UndoLog<K, V> undoLog = undoLogs.get();
+        if (!undoLog.isActive()) {
             throw new IllegalStateException("No active transaction to rollback");
         }
 
-        // If any transaction fails, rollback all active transactions
-        while (!transactionStack.isEmpty()) {
-            ConcurrentLinkedDeque<CacheCommand<K, V>> currentTransaction = transactionStack.pop();
-            while (!currentTransaction.isEmpty()) {
-                currentTransaction.pop().undo(cache);
-            }
+        if (metrics != null) {
+            metrics.recordRollback();
+            metrics.recordUndoLogLength(undoLog.size());
+        }
+        // If any transaction fails, rollback all active transactions of this thread
+        while (undoLog.isActive()) {
+            undoLog.rollback(cache, pins != null ? pins::unpin : null);
         }
     }
 
+    @Override
+    public int transactionDepth() {
+        return undoLogs.get().depth();
+    }
+
+    @Override
+    public long transactionId() {
+        return undoLogs.get().levelId();
+    }
 
+    @Override
+    public Savepoint savepoint() {
+        UndoLog<K, V> undoLog = undoLogs.get();
+        if (!undoLog.isActive()) {
+            throw new IllegalStateException("No active transaction to savepoint");
+        }
+        return undoLog.savepoint();
+    }
+
+    // Unlike rollbackTransaction, this keeps every write made before the savepoint
+    @Override
+    public void rollbackTo(Savepoint savepoint) {
+        undoLogs.get().rollbackTo(savepoint, cache, pins != null ? pins::unpin : null);
+    }
+
+    @Override
+    public void release(Savepoint savepoint) {
+        undoLogs.get().release(savepoint);
+    }
+
+    // Keys with a pending undo record must survive until the transaction ends
+    private void pin(UndoLog<K, V> undoLog, K key) {
+        if (undoLog.isActive() && pins != null) {
+            pins.pin(key);
+        }
+    }
 }
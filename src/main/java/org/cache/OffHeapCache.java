@@ -0,0 +1,578 @@
+package org.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+
+// Eager-write transactional cache that keeps keys, values and its hash index in direct
+// memory, so a large cache adds almost nothing for the garbage collector to trace. Entries
+// are serialized into slab-allocated chunks laid out as [references][key length]
+// [value length][key][value], and found through an open-addressing index of
+// [chunk address][key hash] slots with linear probing. A direct buffer is limited to 2 GB,
+// so the index is split into pages of slots, each its own buffer. Undo records are pairs of chunk
+// addresses rather than copies of values: a replaced chunk is kept alive until the
+// transaction that replaced it ends. Chunks are reference counted, by the index and by
+// every undo record naming them, so writers on other threads never free a chunk an open
+// transaction may restore.
+class OffHeapCache<K, V> implements Cache<K, V>, Transactional {
+    private static final int HEADER_BYTES = 12;
+    private static final int SLOT_BYTES = 16;
+    private static final int INITIAL_SLOTS = 1024;
+    private static final int INDEX_PAGE_SLOTS = 1 << 20; // 16 MB per index buffer
+    private static final long MAX_SLOTS = 1L << 32; // Every slot is reachable from a 32-bit hash
+
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final SlabAllocator allocator;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<Deque<OffHeapUndo>> transactionStack = ThreadLocal.withInitial(ArrayDeque::new);
+    private final AtomicLong levelIds = new AtomicLong();
+    private final int pageShift;
+    private final int pageMask;
+    private ByteBuffer[] index;
+    private long mask = INITIAL_SLOTS - 1;
+    private long size;
+
+    OffHeapCache(Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(keySerializer, valueSerializer, 1 << 20);
+    }
+
+    // Values larger than a page get a page of their own
+    OffHeapCache(Serializer<K> keySerializer, Serializer<V> valueSerializer, int pageBytes) {
+        this(keySerializer, valueSerializer, pageBytes, INDEX_PAGE_SLOTS);
+    }
+
+    // indexPageSlots is a power of two no larger than a direct buffer can hold; tests shrink
+    // it so the index spans several buffers
+    OffHeapCache(Serializer<K> keySerializer, Serializer<V> valueSerializer, int pageBytes, int indexPageSlots) {
+        if (Integer.bitCount(indexPageSlots) != 1 || indexPageSlots > Integer.MAX_VALUE / SLOT_BYTES) {
+            throw new IllegalArgumentException("indexPageSlots must be a power of two up to " + (1 << 26));
+        }
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.allocator = new SlabAllocator(pageBytes);
+        pageShift = Integer.numberOfTrailingZeros(indexPageSlots);
+        pageMask = indexPageSlots - 1;
+        index = newIndex(INITIAL_SLOTS);
+    }
+
+    @Override
+    public V get(K key) {
+        byte[] keyBytes = keySerializer.serialize(key);
+        int hash = hash(keyBytes);
+        lock.readLock().lock();
+        try {
+            return read(find(keyBytes, hash));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        byte[] keyBytes = keySerializer.serialize(key);
+        byte[] valueBytes = valueSerializer.serialize(value);
+        OffHeapUndo currentTransaction = transactionStack.get().peek();
+        lock.writeLock().lock();
+        try {
+            write(keyBytes, hash(keyBytes), valueBytes, currentTransaction);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(K key) {
+        byte[] keyBytes = keySerializer.serialize(key);
+        OffHeapUndo currentTransaction = transactionStack.get().peek();
+        lock.writeLock().lock();
+        try {
+            write(keyBytes, hash(keyBytes), null, currentTransaction);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Runs under the write lock. The current value is a fresh copy, so returning it
+    // unchanged is the only way to leave the key alone.
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        byte[] keyBytes = keySerializer.serialize(key);
+        int hash = hash(keyBytes);
+        OffHeapUndo currentTransaction = transactionStack.get().peek();
+        lock.writeLock().lock();
+        try {
+            V current = read(find(keyBytes, hash));
+            V value = remapping.apply(key, current);
+            if (value != current) {
+                write(keyBytes, hash, value != null ? valueSerializer.serialize(value) : null, currentTransaction);
+            }
+            return value;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        byte[][] keyBytes = new byte[keys.size()][];
+        int i = 0;
+        for (K key : keys) {
+            keyBytes[i++] = keySerializer.serialize(key);
+        }
+        Map<K, V> result = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            i = 0;
+            for (K key : keys) {
+                V value = read(find(keyBytes[i], hash(keyBytes[i])));
+                i++;
+                if (value != null) {
+                    result.put(key, value);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        byte[][] keyBytes = new byte[entries.size()][];
+        byte[][] valueBytes = new byte[keyBytes.length][];
+        int i = 0;
+        for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            keyBytes[i] = keySerializer.serialize(entry.getKey());
+            valueBytes[i++] = valueSerializer.serialize(entry.getValue());
+        }
+        writeAll(keyBytes, valueBytes);
+    }
+
+    @Override
+    public void deleteAll(Collection<? extends K> keys) {
+        byte[][] keyBytes = new byte[keys.size()][];
+        int i = 0;
+        for (K key : keys) {
+            keyBytes[i++] = keySerializer.serialize(key);
+        }
+        writeAll(keyBytes, null);
+    }
+
+    private void writeAll(byte[][] keyBytes, byte[][] valueBytes) {
+        OffHeapUndo currentTransaction = transactionStack.get().peek();
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < keyBytes.length; i++) {
+                write(keyBytes[i], hash(keyBytes[i]), valueBytes != null ? valueBytes[i] : null, currentTransaction);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void beginTransaction() {
+        transactionStack.get().push(new OffHeapUndo(levelIds.incrementAndGet())); // Create a new transaction level
+    }
+
+    @Override
+    public void commitTransaction() {
+        Deque<OffHeapUndo> stack = transactionStack.get();
+        if (stack.isEmpty()) {
+            throw new IllegalStateException("No active transaction to commit");
+        }
+        OffHeapUndo completedTransaction = stack.pop();
+        completedTransaction.savepoints.clear();
+
+        // If a parent transaction exists, it inherits the undo records and their references
+        OffHeapUndo parent = stack.peek();
+        if (parent != null) {
+            parent.addAll(completedTransaction);
+            return;
+        }
+        if (completedTransaction.size == 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < completedTransaction.size; i++) {
+                release(completedTransaction.addresses[i]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void rollbackTransaction() {
+        Deque<OffHeapUndo> stack = transactionStack.get();
+        if (stack.isEmpty()) {
+            throw new IllegalStateException("No active transaction to rollback");
+        }
+
+        // Roll back only the current transaction, newest write first
+        OffHeapUndo currentTransaction = stack.pop();
+        currentTransaction.savepoints.clear();
+        lock.writeLock().lock();
+        try {
+            undo(currentTransaction, 0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int transactionDepth() {
+        return transactionStack.get().size();
+    }
+
+    @Override
+    public long transactionId() {
+        OffHeapUndo currentTransaction = transactionStack.get().peek();
+        return currentTransaction != null ? currentTransaction.id : 0;
+    }
+
+    @Override
+    public Savepoint savepoint() {
+        OffHeapUndo currentTransaction = transactionStack.get().peek();
+        if (currentTransaction == null) {
+            throw new IllegalStateException("No active transaction to savepoint");
+        }
+        Mark mark = new Mark(currentTransaction, currentTransaction.size);
+        currentTransaction.savepoints.add(mark);
+        return mark;
+    }
+
+    // Rolls back the levels begun since the savepoint, then its own level's pairs after it
+    @Override
+    public void rollbackTo(Savepoint savepoint) {
+        Deque<OffHeapUndo> stack = transactionStack.get();
+        Mark mark = check(stack, savepoint);
+        lock.writeLock().lock();
+        try {
+            while (stack.peek() != mark.level) {
+                OffHeapUndo level = stack.pop();
+                level.savepoints.clear();
+                undo(level, 0);
+            }
+            undo(mark.level, mark.position);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        List<Mark> savepoints = mark.level.savepoints;
+        savepoints.subList(savepoints.indexOf(mark) + 1, savepoints.size()).clear();
+    }
+
+    @Override
+    public void release(Savepoint savepoint) {
+        Deque<OffHeapUndo> stack = transactionStack.get();
+        Mark mark = check(stack, savepoint);
+        for (OffHeapUndo level : stack) { // Innermost first
+            if (level == mark.level) {
+                break;
+            }
+            level.savepoints.clear();
+        }
+        List<Mark> savepoints = mark.level.savepoints;
+        savepoints.subList(savepoints.indexOf(mark), savepoints.size()).clear();
+    }
+
+    private static Mark check(Deque<OffHeapUndo> stack, Savepoint savepoint) {
+        if (!(savepoint instanceof Mark mark) || !mark.level.savepoints.contains(mark)
+                || !stack.contains(mark.level)) {
+            throw new IllegalStateException("Savepoint is no longer active");
+        }
+        return mark;
+    }
+
+    // Direct memory held by entries and the index, in bytes
+    long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            long indexBytes = 0;
+            for (ByteBuffer page : index) {
+                indexBytes += page.capacity();
+            }
+            return allocator.allocatedBytes() + indexBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Caller holds the write lock. A null value deletes the key.
+    private void write(byte[] key, int hash, byte[] value, OffHeapUndo currentTransaction) {
+        long address = value != null ? store(key, value) : SlabAllocator.NULL;
+        long oldAddress = install(key, hash, address);
+        if (currentTransaction == null) {
+            release(oldAddress);
+        } else if (oldAddress != SlabAllocator.NULL || address != SlabAllocator.NULL) {
+            // The index's reference to the old chunk passes to the undo record
+            retain(address);
+            currentTransaction.add(oldAddress, address);
+        }
+    }
+
+    // Caller holds the write lock. Undoes the level's pairs from start on, newest first,
+    // and drops them.
+    private void undo(OffHeapUndo transaction, int start) {
+        for (int i = transaction.size - 2; i >= start; i -= 2) {
+            undo(transaction.addresses[i], transaction.addresses[i + 1]);
+        }
+        transaction.size = start;
+    }
+
+    // Caller holds the write lock. Restores the old chunk unless another writer has
+    // replaced ours since, then drops the record's references.
+    private void undo(long oldAddress, long address) {
+        long live = address != SlabAllocator.NULL ? address : oldAddress;
+        byte[] key = keyOf(live);
+        int hash = hash(key);
+        long slot = find(key, hash);
+        long current = slot >= 0 ? addressAt(slot) : SlabAllocator.NULL;
+        if (current == address) {
+            retain(oldAddress);
+            release(install(key, hash, oldAddress));
+        }
+        release(oldAddress);
+        release(address);
+    }
+
+    // Copies the entry into a new chunk holding one reference, for the index
+    private long store(byte[] key, byte[] value) {
+        long address = allocator.allocate(HEADER_BYTES + key.length + value.length);
+        ByteBuffer page = allocator.page(address);
+        int offset = SlabAllocator.offsetOf(address);
+        page.putInt(offset, 1).putInt(offset + 4, key.length).putInt(offset + 8, value.length);
+        page.put(offset + HEADER_BYTES, key).put(offset + HEADER_BYTES + key.length, value);
+        return address;
+    }
+
+    private V read(long slot) {
+        if (slot < 0) {
+            return null;
+        }
+        long address = addressAt(slot);
+        ByteBuffer page = allocator.page(address);
+        int offset = SlabAllocator.offsetOf(address);
+        int keyLength = page.getInt(offset + 4);
+        return valueSerializer.deserialize(page.slice(offset + HEADER_BYTES + keyLength, page.getInt(offset + 8)));
+    }
+
+    private byte[] keyOf(long address) {
+        ByteBuffer page = allocator.page(address);
+        int offset = SlabAllocator.offsetOf(address);
+        byte[] key = new byte[page.getInt(offset + 4)];
+        page.get(offset + HEADER_BYTES, key);
+        return key;
+    }
+
+    private void retain(long address) {
+        if (address != SlabAllocator.NULL) {
+            ByteBuffer page = allocator.page(address);
+            int offset = SlabAllocator.offsetOf(address);
+            page.putInt(offset, page.getInt(offset) + 1);
+        }
+    }
+
+    private void release(long address) {
+        if (address != SlabAllocator.NULL) {
+            ByteBuffer page = allocator.page(address);
+            int offset = SlabAllocator.offsetOf(address);
+            int references = page.getInt(offset) - 1;
+            page.putInt(offset, references);
+            if (references == 0) {
+                allocator.free(address);
+            }
+        }
+    }
+
+    // Slot holding the key, or -1
+    private long find(byte[] key, int hash) {
+        for (long slot = home(hash); ; slot = (slot + 1) & mask) {
+            long address = addressAt(slot);
+            if (address == SlabAllocator.NULL) {
+                return -1;
+            }
+            if (hashAt(slot) == hash && keyEquals(address, key)) {
+                return slot;
+            }
+        }
+    }
+
+    // Points the key at the chunk, or removes it for NULL, and returns the chunk it pointed
+    // at before. References are the caller's business.
+    private long install(byte[] key, int hash, long address) {
+        long slot = find(key, hash);
+        if (slot >= 0) {
+            long oldAddress = addressAt(slot);
+            if (address == SlabAllocator.NULL) {
+                removeAt(slot);
+                size--;
+            } else {
+                slotPage(slot).putLong(slotOffset(slot), address);
+            }
+            return oldAddress;
+        }
+        if (address != SlabAllocator.NULL) {
+            if ((size + 1) * 4 > (mask + 1) * 3) {
+                resize();
+            }
+            insert(address, hash);
+            size++;
+        }
+        return SlabAllocator.NULL;
+    }
+
+    private void insert(long address, int hash) {
+        long slot = home(hash);
+        while (addressAt(slot) != SlabAllocator.NULL) {
+            slot = (slot + 1) & mask;
+        }
+        setSlot(slot, address, hash);
+    }
+
+    // Backward-shift deletion keeps probe sequences intact without tombstones
+    private void removeAt(long slot) {
+        long hole = slot;
+        for (long next = (hole + 1) & mask; ; next = (next + 1) & mask) {
+            long address = addressAt(next);
+            if (address == SlabAllocator.NULL) {
+                break;
+            }
+            int hash = hashAt(next);
+            if (((next - home(hash)) & mask) >= ((next - hole) & mask)) {
+                setSlot(hole, address, hash);
+                hole = next;
+            }
+        }
+        slotPage(hole).putLong(slotOffset(hole), SlabAllocator.NULL);
+    }
+
+    private void resize() {
+        ByteBuffer[] old = index;
+        long oldSlots = mask + 1;
+        if (oldSlots * 2 > MAX_SLOTS) {
+            throw new IllegalStateException("OffHeapCache index is full at " + size + " entries");
+        }
+        index = newIndex(oldSlots * 2);
+        mask = oldSlots * 2 - 1;
+        int oldPageSlots = old[0].capacity() / SLOT_BYTES;
+        for (ByteBuffer page : old) {
+            for (int i = 0; i < oldPageSlots; i++) {
+                long address = page.getLong(i * SLOT_BYTES);
+                if (address != SlabAllocator.NULL) {
+                    insert(address, page.getInt(i * SLOT_BYTES + 8));
+                }
+            }
+        }
+    }
+
+    // Zeroed index of the given power-of-two number of slots, all NULL
+    private ByteBuffer[] newIndex(long slots) {
+        int pageSlots = (int) Math.min(slots, pageMask + 1L);
+        ByteBuffer[] pages = new ByteBuffer[(int) (slots / pageSlots)];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = ByteBuffer.allocateDirect(pageSlots * SLOT_BYTES);
+        }
+        return pages;
+    }
+
+    private long home(int hash) {
+        return (hash & 0xFFFFFFFFL) & mask;
+    }
+
+    private ByteBuffer slotPage(long slot) {
+        return index[(int) (slot >>> pageShift)];
+    }
+
+    private int slotOffset(long slot) {
+        return (int) (slot & pageMask) * SLOT_BYTES;
+    }
+
+    private long addressAt(long slot) {
+        return slotPage(slot).getLong(slotOffset(slot));
+    }
+
+    private int hashAt(long slot) {
+        return slotPage(slot).getInt(slotOffset(slot) + 8);
+    }
+
+    private void setSlot(long slot, long address, int hash) {
+        int offset = slotOffset(slot);
+        slotPage(slot).putLong(offset, address).putInt(offset + 8, hash);
+    }
+
+    private boolean keyEquals(long address, byte[] key) {
+        ByteBuffer page = allocator.page(address);
+        int offset = SlabAllocator.offsetOf(address);
+        if (page.getInt(offset + 4) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (page.get(offset + HEADER_BYTES + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] key) {
+        int hash = 0x811c9dc5; // FNV-1a
+        for (byte b : key) {
+            hash = (hash ^ b) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    // Undo records of one transaction level as (old chunk, new chunk) address pairs, either
+    // of which may be NULL. Each non-NULL address holds one reference. The shared UndoLog
+    // keeps heap values, so it can't hold these reference-counted chunks.
+    private static final class OffHeapUndo {
+        final long id;
+        long[] addresses = new long[16];
+        int size;
+        final List<Mark> savepoints = new ArrayList<>(); // Taken at this level, oldest first
+
+        OffHeapUndo(long id) {
+            this.id = id;
+        }
+
+        void add(long oldAddress, long address) {
+            if (size + 2 > addresses.length) {
+                addresses = Arrays.copyOf(addresses, addresses.length * 2);
+            }
+            addresses[size++] = oldAddress;
+            addresses[size++] = address;
+        }
+
+        void addAll(OffHeapUndo child) {
+            if (size + child.size > addresses.length) {
+                addresses = Arrays.copyOf(addresses, Math.max(addresses.length * 2, size + child.size));
+            }
+            System.arraycopy(child.addresses, 0, addresses, size, child.size);
+            size += child.size;
+        }
+    }
+
+    // A savepoint is an offset into its level's pairs. Marks compare by identity, so two
+    // taken at the same offset stay distinct.
+    private static final class Mark implements Savepoint {
+        final OffHeapUndo level;
+        final int position;
+
+        Mark(OffHeapUndo level, int position) {
+            this.level = level;
+            this.position = position;
+        }
+    }
+}
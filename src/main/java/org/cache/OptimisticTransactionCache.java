@@ -0,0 +1,235 @@
+package org.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+// Optimistic alternative to PerpexilityTransaction's global lock. Transactions record the
+// version of every key they read and buffer their writes; commit locks only the stripes of
+// the touched keys, checks that nothing it read has changed, and installs the writes.
+class OptimisticTransactionCache<K, V> implements Cache<K, V>, Transactional {
+    private static final long ABSENT = 0;
+
+    private final Map<K, Versioned<V>> cache = new ConcurrentHashMap<>();
+    private final AtomicLong versionClock = new AtomicLong();
+    private final LockStripes stripes;
+    private final ThreadLocal<Context<K, V>> contexts = ThreadLocal.withInitial(Context::new);
+
+    OptimisticTransactionCache() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    OptimisticTransactionCache(int stripeCount) {
+        stripes = new LockStripes(stripeCount);
+    }
+
+    @Override
+    public V get(K key) {
+        Context<K, V> context = contexts.get();
+        if (!context.writes.isActive()) {
+            Versioned<V> current = cache.get(key);
+            return current != null ? current.value() : null;
+        }
+        WriteCommand<K, V> pending = context.writes.lookup(key);
+        if (pending != null) {
+            return pending.value();
+        }
+        Versioned<V> current = cache.get(key);
+        context.readVersions.putIfAbsent(key, current != null ? current.version() : ABSENT);
+        return current != null ? current.value() : null;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        write(new PutCommand<>(key, value, null));
+    }
+
+    @Override
+    public void delete(K key) {
+        write(new DeleteCommand<>(key, null));
+    }
+
+    private void write(WriteCommand<K, V> command) {
+        Context<K, V> context = contexts.get();
+        if (context.writes.isActive()) {
+            context.writes.record(command);
+            return;
+        }
+        ReentrantLock lock = stripes.lockFor(command.key());
+        lock.lock();
+        try {
+            install(command, versionClock.incrementAndGet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Inside a transaction the current value joins the read-set, so a concurrent change to
+    // it fails the commit. Outside one the update runs holding the key's stripe.
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        Context<K, V> context = contexts.get();
+        if (context.writes.isActive()) {
+            V current = get(key);
+            V value = remapping.apply(key, current);
+            if (value != current) {
+                context.writes.record(WriteCommand.of(key, value));
+            }
+            return value;
+        }
+        ReentrantLock lock = stripes.lockFor(key);
+        lock.lock();
+        try {
+            Versioned<V> current = cache.get(key);
+            V old = current != null ? current.value() : null;
+            V value = remapping.apply(key, old);
+            if (value != old) {
+                install(WriteCommand.of(key, value), versionClock.incrementAndGet());
+            }
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        Map<K, WriteCommand<K, V>> commands = new HashMap<>();
+        entries.forEach((key, value) -> commands.put(key, new PutCommand<>(key, value, null)));
+        writeAll(commands);
+    }
+
+    @Override
+    public void deleteAll(Collection<? extends K> keys) {
+        Map<K, WriteCommand<K, V>> commands = new HashMap<>();
+        for (K key : keys) {
+            commands.put(key, new DeleteCommand<>(key, null));
+        }
+        writeAll(commands);
+    }
+
+    private void writeAll(Map<K, WriteCommand<K, V>> commands) {
+        Context<K, V> context = contexts.get();
+        if (context.writes.isActive()) {
+            commands.values().forEach(context.writes::record);
+        } else {
+            // Blind writes: nothing to validate, one pass over the stripes
+            validateAndInstall(Map.of(), commands);
+        }
+    }
+
+    @Override
+    public void beginTransaction() {
+        contexts.get().writes.begin(); // Create a new transaction level
+    }
+
+    @Override
+    public void commitTransaction() {
+        Context<K, V> context = contexts.get();
+        if (!context.writes.isActive()) {
+            throw new IllegalStateException("No active transaction to commit");
+        }
+        Map<K, WriteCommand<K, V>> writes = context.writes.commit();
+        if (writes == null) {
+            return;
+        }
+        try {
+            validateAndInstall(context.readVersions, writes);
+        } finally {
+            context.readVersions.clear();
+        }
+    }
+
+    @Override
+    public void rollbackTransaction() {
+        Context<K, V> context = contexts.get();
+        if (!context.writes.isActive()) {
+            throw new IllegalStateException("No active transaction to rollback");
+        }
+        // Reads made by a rolled back nested level stay in the read-set; that is conservative but safe
+        context.writes.rollback();
+        if (!context.writes.isActive()) {
+            context.readVersions.clear();
+        }
+    }
+
+    @Override
+    public int transactionDepth() {
+        return contexts.get().writes.depth();
+    }
+
+    @Override
+    public long transactionId() {
+        return contexts.get().writes.levelId();
+    }
+
+    @Override
+    public Savepoint savepoint() {
+        Context<K, V> context = contexts.get();
+        if (!context.writes.isActive()) {
+            throw new IllegalStateException("No active transaction to savepoint");
+        }
+        return context.writes.savepoint();
+    }
+
+    // As with a nested rollback, reads made after the savepoint stay in the read-set
+    @Override
+    public void rollbackTo(Savepoint savepoint) {
+        contexts.get().writes.rollbackTo(savepoint);
+    }
+
+    @Override
+    public void release(Savepoint savepoint) {
+        contexts.get().writes.release(savepoint);
+    }
+
+    private void validateAndInstall(Map<K, Long> readVersions, Map<K, WriteCommand<K, V>> writes) {
+        if (readVersions.isEmpty() && writes.isEmpty()) {
+            return;
+        }
+        Set<K> touched = new HashSet<>(readVersions.keySet());
+        touched.addAll(writes.keySet());
+        int[] indexes = stripes.indexesFor(touched);
+        stripes.lockAll(indexes);
+        try {
+            for (Map.Entry<K, Long> read : readVersions.entrySet()) {
+                Versioned<V> current = cache.get(read.getKey());
+                long version = current != null ? current.version() : ABSENT;
+                if (version != read.getValue()) {
+                    throw new TransactionConflictException("Key " + read.getKey() + " was modified by a concurrent transaction");
+                }
+            }
+            if (!writes.isEmpty()) {
+                long version = versionClock.incrementAndGet();
+                for (WriteCommand<K, V> command : writes.values()) {
+                    install(command, version);
+                }
+            }
+        } finally {
+            stripes.unlockAll(indexes);
+        }
+    }
+
+    // Caller holds the key's stripe
+    private void install(WriteCommand<K, V> command, long version) {
+        if (command.value() == null) {
+            cache.remove(command.key());
+        } else {
+            cache.put(command.key(), new Versioned<>(command.value(), version));
+        }
+    }
+
+    private record Versioned<V>(V value, long version) {
+    }
+
+    private static final class Context<K, V> {
+        final WriteSet<K, V> writes = new WriteSet<>();
+        final Map<K, Long> readVersions = new HashMap<>();
+    }
+}
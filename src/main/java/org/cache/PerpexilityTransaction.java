@@ -1,182 +1,453 @@
 package org.cache;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
 
-class PerpexilityTransaction<K, V> implements Cache<K, V> {
-    private final Map<K, V> cache = new ConcurrentHashMap<>();
-    private final ConcurrentLinkedDeque<ConcurrentLinkedDeque<Command<K, V>>> transactionStack = new ConcurrentLinkedDeque<>();
+class PerpexilityTransaction<K, V> implements Cache<K, V>, Transactional, Counters<K> {
+    private final Map<K, V> cache;
+    private final boolean atomicStore; // Whether the store updates a single key atomically
+    // Transactions buffer their writes per thread; the map only ever holds committed data
+    private final ThreadLocal<WriteSet<K, V>> writeSets = ThreadLocal.withInitial(WriteSet::new);
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final WriteAheadLog<K, V> log; // Null unless durable
+    private final CacheMetrics metrics; // Null unless instrumented
+    private final ChangeFeed<K, V> changes = new ChangeFeed<>();
+
+    PerpexilityTransaction() {
+        this(new ConcurrentHashMap<>());
+    }
+
+    // The store must be thread-safe, e.g. a BoundedMap. It never holds uncommitted data,
+    // so evictions can't interfere with rollback.
+    PerpexilityTransaction(Map<K, V> store) {
+        this(store, null);
+    }
+
+    // Durable cache: the store is rebuilt from the log, and every commit and every write
+    // outside a transaction returns only once it has been fsynced. Records are queued under
+    // the write lock, so the log replays in the order writes were applied, but the fsync is
+    // awaited after the lock is released so concurrent committers share it. Other threads
+    // can therefore briefly read a commit that a crash would still lose. If the fsync fails,
+    // the commit stays applied and published to the change feed, and the caller gets the
+    // error: applied but not durable. The log then rejects every later append, so from then
+    // on every write fails before it touches the store.
+    PerpexilityTransaction(Map<K, V> store, WriteAheadLog<K, V> log) {
+        this(store, log, null);
+    }
+
+    // Either of log and metrics may be null
+    PerpexilityTransaction(Map<K, V> store, WriteAheadLog<K, V> log, CacheMetrics metrics) {
+        cache = store;
+        atomicStore = store instanceof ConcurrentMap;
+        this.log = log;
+        this.metrics = metrics;
+        if (log != null) {
+            log.replay(store);
+        }
+    }
 
     @Override
     public V get(K key) {
-        lock.readLock().lock();
-        try {
-            // Check for uncommitted changes in the current transaction
-            if (!transactionStack.isEmpty()) {
-                ConcurrentLinkedDeque<Command<K, V>> currentTransaction = transactionStack.peek();
-                if (currentTransaction != null) {
-                    for (Command<K, V> command : currentTransaction) {
-                        if (command.getKey().equals(key)) {
-                            return command.getCurrentValue();
-                        }
-                    }
-                }
-            }
-            return cache.get(key);
-        } finally {
-            lock.readLock().unlock();
+        // Read our own uncommitted writes first
+        V value = view(key, writeSets.get().lookup(key));
+        if (metrics != null) {
+            metrics.recordGet(value);
         }
+        return value;
     }
 
     @Override
     public void put(K key, V value) {
-        lock.writeLock().lock();
+        // Buffered writes are never undone, so they don't need the old value
+        write(new PutCommand<>(key, value, null));
+    }
+
+    @Override
+    public void delete(K key) {
+        write(new DeleteCommand<>(key, null));
+    }
+
+    private void write(WriteCommand<K, V> command) {
+        if (metrics != null) {
+            recordWrites(List.of(command));
+        }
+        WriteSet<K, V> writeSet = writeSets.get();
+        if (writeSet.isActive()) {
+            writeSet.record(command);
+            return;
+        }
+        CompletableFuture<Void> durable;
+        long sequence;
+        acquire(lock.writeLock());
         try {
-            if (!transactionStack.isEmpty()) {
-                ConcurrentLinkedDeque<Command<K, V>> currentTransaction = transactionStack.peek();
-                if (currentTransaction != null) {
-                    V oldValue = cache.get(key);
-                    currentTransaction.add(new Put<>(key, value, oldValue));
-                }
-            }
-            cache.put(key, value);
+            durable = log(List.of(command));
+            command.execute(cache);
+            sequence = changes.claim();
         } finally {
             lock.writeLock().unlock();
         }
+        awaitAndPublish(durable, sequence, List.of(command));
     }
 
     @Override
-    public void delete(K key) {
-        lock.writeLock().lock();
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        WriteSet<K, V> writeSet = writeSets.get();
+        Map<K, V> result = new HashMap<>();
+        List<K> committed = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            WriteCommand<K, V> pending = writeSet.lookup(key);
+            if (pending == null) {
+                committed.add(key);
+                continue;
+            }
+            V value = view(key, pending);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        if (committed.isEmpty()) {
+            recordGets(keys.size(), result.size());
+            return result;
+        }
+        // One read lock for the whole batch, so it sees a single committed state
+        acquire(lock.readLock());
         try {
-            if (!transactionStack.isEmpty()) {
-                ConcurrentLinkedDeque<Command<K, V>> currentTransaction = transactionStack.peek();
-                if (currentTransaction != null) {
-                    V oldValue = cache.get(key);
-                    currentTransaction.add(new Delete<>(key, oldValue));
+            for (K key : committed) {
+                V value = cache.get(key);
+                if (value != null) {
+                    result.put(key, value);
                 }
             }
-            cache.remove(key);
         } finally {
-            lock.writeLock().unlock();
+            lock.readLock().unlock();
         }
+        recordGets(keys.size(), result.size());
+        return result;
     }
 
-    public void beginTransaction() {
-        lock.writeLock().lock();
-        try {
-            transactionStack.push(new ConcurrentLinkedDeque<>()); // Create a new transaction level
-        } finally {
-            lock.writeLock().unlock();
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        List<WriteCommand<K, V>> commands = new ArrayList<>(entries.size());
+        entries.forEach((key, value) -> commands.add(new PutCommand<>(key, value, null)));
+        writeAll(commands);
+    }
+
+    @Override
+    public void deleteAll(Collection<? extends K> keys) {
+        List<WriteCommand<K, V>> commands = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            commands.add(new DeleteCommand<>(key, null));
         }
+        writeAll(commands);
     }
 
-    public void commitTransaction() {
-        lock.writeLock().lock();
+    private void writeAll(Collection<WriteCommand<K, V>> commands) {
+        if (metrics != null) {
+            recordWrites(commands);
+        }
+        WriteSet<K, V> writeSet = writeSets.get();
+        if (writeSet.isActive()) {
+            commands.forEach(writeSet::record);
+            return;
+        }
+        CompletableFuture<Void> durable;
+        long sequence;
+        acquire(lock.writeLock());
         try {
-            if (transactionStack.isEmpty()) {
-                throw new IllegalStateException("No active transaction to commit");
-            }
-            ConcurrentLinkedDeque<Command<K, V>> completedTransaction = transactionStack.pop();
-
-            // If a parent transaction exists, merge it with the parent
-            if (!transactionStack.isEmpty()) {
-                transactionStack.peek().addAll(completedTransaction);
+            durable = log(commands);
+            for (WriteCommand<K, V> command : commands) {
+                command.execute(cache);
             }
+            sequence = changes.claim();
         } finally {
             lock.writeLock().unlock();
         }
+        awaitAndPublish(durable, sequence, commands);
     }
 
-    public void rollbackTransaction() {
-        lock.writeLock().lock();
-        try {
-            if (transactionStack.isEmpty()) {
-                throw new IllegalStateException("No active transaction to rollback");
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        WriteSet<K, V> writeSet = writeSets.get();
+        if (writeSet.isActive()) {
+            V current = view(key, writeSet.lookup(key));
+            V value = remapping.apply(key, current);
+            if (value != current) {
+                write(WriteCommand.of(key, value));
             }
+            return value;
+        }
 
-            // Roll back only the current transaction
-            ConcurrentLinkedDeque<Command<K, V>> currentTransaction = transactionStack.pop();
-            while (!currentTransaction.isEmpty()) {
-                try {
-                    currentTransaction.pollLast().undo(cache); // Use pollLast to reverse order
-                } catch (Exception e) {
-                    // Log the exception but continue rollback
-                    System.err.println("Error during rollback: " + e.getMessage());
+        // Outside a transaction only the key's bin is locked, under the shared read lock that
+        // keeps commits out, so updates of different keys don't serialize. The record is
+        // logged inside the bin, so the log orders each key's updates as they were applied.
+        // Stores without per-key atomicity fall back to the write lock.
+        Lock target = atomicStore ? lock.readLock() : lock.writeLock();
+        Update<K, V> update = new Update<>();
+        acquire(target);
+        try {
+            update.value = cache.compute(key, (k, old) -> {
+                V value = remapping.apply(k, old);
+                if (value != old) {
+                    update.commands = List.of(WriteCommand.of(k, value));
+                    update.durable = log(update.commands);
+                    update.sequence = changes.claim();
                 }
-            }
+                return value;
+            });
         } finally {
-            lock.writeLock().unlock();
+            target.unlock();
+        }
+        if (update.commands != null) {
+            if (metrics != null) {
+                recordWrites(update.commands);
+            }
+            awaitAndPublish(update.durable, update.sequence, update.commands);
         }
+        return update.value;
     }
-}
 
-// Command interfaces and implementations
-interface Command<K, V> {
-    void undo(Map<K, V> cache);
-    K getKey();
-    V getCurrentValue();
-}
+    @Override
+    public long increment(K key, long delta) {
+        return adjust(key, new DeltaCommand<>(key, delta));
+    }
 
-class Put<K, V> implements Command<K, V> {
-    private final K key;
-    private final V newValue;
-    private final V oldValue;
+    @Override
+    public boolean add(K key, long delta, long min, long max) {
+        return adjust(key, new DeltaCommand<>(key, delta, min, max)) != null;
+    }
 
+    // Outside a transaction this is a compute, so only the counter's bin is locked. Inside
+    // one the delta is buffered as is, folded into any delta already pending for the key,
+    // and only resolved against the committed value at commit. Concurrent transactions
+    // adjusting the same counter therefore don't overwrite each other, and a rollback just
+    // drops the delta. Returns the value this thread now sees, or null if the bounds reject it.
+    private Long adjust(K key, DeltaCommand<K, V> added) {
+        WriteSet<K, V> writeSet = writeSets.get();
+        if (!writeSet.isActive()) {
+            Long[] result = new Long[1];
+            compute(key, (k, old) -> {
+                result[0] = added.applyTo(old);
+                return result[0] != null ? counter(result[0]) : old;
+            });
+            return result[0];
+        }
+        WriteCommand<K, V> pending = writeSet.lookup(key);
+        if (pending == null || pending instanceof DeltaCommand) {
+            DeltaCommand<K, V> total = pending == null ? added : ((DeltaCommand<K, V>) pending).plus(added);
+            Long value = total.applyTo(committed(key));
+            if (value != null) {
+                write(total);
+            }
+            return value;
+        }
+        // The transaction already wrote an absolute value, so the counter is no longer shared
+        Long value = added.applyTo(pending.value());
+        if (value != null) {
+            write(new PutCommand<>(key, counter(value), null));
+        }
+        return value;
+    }
 
-    public Put(K key, V newValue, V oldValue) {
-        this.key = key;
-        this.newValue = newValue;
-        this.oldValue = oldValue;
+    @Override
+    public void beginTransaction() {
+        WriteSet<K, V> writeSet = writeSets.get();
+        writeSet.begin(); // Create a new transaction level
+        if (metrics != null) {
+            metrics.recordBegin(writeSet.depth());
+        }
     }
 
     @Override
-    public void undo(Map<K, V> cache) {
-        if (oldValue != null) {
-            cache.put(key, oldValue);
-        } else {
-            cache.remove(key);
+    public void commitTransaction() {
+        WriteSet<K, V> writeSet = writeSets.get();
+        if (!writeSet.isActive()) {
+            throw new IllegalStateException("No active transaction to commit");
+        }
+
+        // Nested levels fold into their parent; only the outermost commit publishes
+        Map<K, WriteCommand<K, V>> writes = writeSet.commit();
+        if (metrics != null) {
+            metrics.recordCommit();
+            if (writes != null) {
+                metrics.recordTransactionSize(writes.size());
+            }
+        }
+        if (writes == null || writes.isEmpty()) {
+            return;
+        }
+        CompletableFuture<Void> durable;
+        long sequence;
+        Collection<WriteCommand<K, V>> applied;
+        acquire(lock.writeLock());
+        try {
+            applied = resolveDeltas(writes.values());
+            durable = log(applied);
+            for (WriteCommand<K, V> command : applied) {
+                command.execute(cache);
+            }
+            sequence = changes.claim();
+        } finally {
+            lock.writeLock().unlock();
         }
+        awaitAndPublish(durable, sequence, applied);
     }
 
     @Override
-    public K getKey() {
-        return key;
+    public void rollbackTransaction() {
+        WriteSet<K, V> writeSet = writeSets.get();
+        if (!writeSet.isActive()) {
+            throw new IllegalStateException("No active transaction to rollback");
+        }
+
+        // Roll back only the current transaction by discarding its buffered writes
+        writeSet.rollback();
+        if (metrics != null) {
+            metrics.recordRollback();
+        }
     }
 
     @Override
-    public V getCurrentValue() {
-        return newValue;
+    public int transactionDepth() {
+        return writeSets.get().depth();
     }
-}
 
-class Delete<K, V> implements Command<K, V> {
-    private final K key;
-    private final V oldValue;
+    @Override
+    public long transactionId() {
+        return writeSets.get().levelId();
+    }
 
-    public Delete(K key, V oldValue) {
-        this.key = key;
-        this.oldValue = oldValue;
+    // Committed transactions and non-transactional writes, in the order they were applied.
+    // Rolled back transactions never reach the store, so they never appear.
+    ChangeFeed<K, V> changes() {
+        return changes;
     }
 
     @Override
-    public void undo(Map<K, V> cache) {
-        if (oldValue != null) {
-            cache.put(key, oldValue);
+    public Savepoint savepoint() {
+        WriteSet<K, V> writeSet = writeSets.get();
+        if (!writeSet.isActive()) {
+            throw new IllegalStateException("No active transaction to savepoint");
         }
+        return writeSet.savepoint();
     }
 
     @Override
-    public K getKey() {
-        return key;
+    public void rollbackTo(Savepoint savepoint) {
+        // Nothing reached the store yet, so this only drops buffered writes
+        writeSets.get().rollbackTo(savepoint);
     }
 
     @Override
-    public V getCurrentValue() {
-        return null;
+    public void release(Savepoint savepoint) {
+        writeSets.get().release(savepoint);
+    }
+
+    private V committed(K key) {
+        acquire(lock.readLock());
+        try {
+            return cache.get(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Caller holds the write lock. Turns each pending delta into a put of the counter's new
+    // value, before anything is applied, so the log and the change feed only ever see
+    // absolute values and a bounds violation leaves the store untouched.
+    private Collection<WriteCommand<K, V>> resolveDeltas(Collection<WriteCommand<K, V>> writes) {
+        List<WriteCommand<K, V>> resolved = null;
+        int index = 0;
+        for (WriteCommand<K, V> command : writes) {
+            if (command instanceof DeltaCommand<K, V> delta) {
+                if (resolved == null) {
+                    resolved = new ArrayList<>(writes);
+                }
+                Long value = delta.applyTo(cache.get(delta.key()));
+                if (value == null) {
+                    throw new TransactionConflictException("Counter " + delta.key() + " would leave its bounds");
+                }
+                resolved.set(index, new PutCommand<>(delta.key(), counter(value), null));
+            }
+            index++;
+        }
+        return resolved != null ? resolved : writes;
+    }
+
+    // What the transaction sees for a key: its pending write, with a pending delta added to
+    // the committed value, or the committed value if it never wrote the key
+    private V view(K key, WriteCommand<K, V> pending) {
+        if (pending == null) {
+            return committed(key);
+        }
+        if (pending instanceof DeltaCommand<K, V> delta) {
+            V committed = committed(key);
+            return counter(Math.addExact(committed != null ? (Long) committed : 0L, delta.delta()));
+        }
+        return pending.value();
+    }
+
+    @SuppressWarnings("unchecked")
+    private V counter(long value) {
+        return (V) Long.valueOf(value);
+    }
+
+    // Only instrumented caches read the clock around lock acquisition
+    private void acquire(Lock target) {
+        if (metrics == null) {
+            target.lock();
+            return;
+        }
+        long start = System.nanoTime();
+        target.lock();
+        metrics.recordLockWait(System.nanoTime() - start);
+    }
+
+    private void recordGets(int lookups, int found) {
+        if (metrics != null) {
+            metrics.recordLookups(found, lookups - found);
+        }
+    }
+
+    private void recordWrites(Collection<WriteCommand<K, V>> commands) {
+        int deletes = 0;
+        for (WriteCommand<K, V> command : commands) {
+            if (!(command instanceof DeltaCommand) && command.value() == null) {
+                deletes++;
+            }
+        }
+        metrics.recordPuts(commands.size() - deletes);
+        metrics.recordDeletes(deletes);
+    }
+
+    // The claimed sequence is published even if the fsync fails, since the writes are
+    // already applied and subscribers behind it would otherwise wait forever
+    private void awaitAndPublish(CompletableFuture<Void> durable, long sequence, Collection<WriteCommand<K, V>> writes) {
+        try {
+            WriteAheadLog.await(durable);
+        } finally {
+            changes.publish(sequence, writes);
+        }
+    }
+
+    // Caller holds the write lock, or the read lock and the bin of the only key written
+    private CompletableFuture<Void> log(Collection<WriteCommand<K, V>> writes) {
+        return log != null && !writes.isEmpty() ? log.append(writes) : null;
+    }
+
+    // What a non-transactional compute wrote, handed out of the store's bin
+    private static final class Update<K, V> {
+        V value;
+        List<WriteCommand<K, V>> commands; // Null if nothing changed
+        CompletableFuture<Void> durable;
+        long sequence;
     }
 }
@@ -0,0 +1,8 @@
+package org.cache;
+
+// Backing store that may drop entries on its own. Transactional caches pin every key
+// they hold an undo record for, so a rollback never restores into an evicted slot.
+interface PinnableStore<K> {
+    void pin(K key);
+    void unpin(K key);
+}
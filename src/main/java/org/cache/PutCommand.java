@@ -2,7 +2,11 @@ package org.cache;
 
 import java.util.Map;
 
-record PutCommand<K, V>(K key, V value, V oldValue) implements CacheCommand<K, V> {
+record PutCommand<K, V>(K key, V value, V oldValue, long oldExpiry) implements WriteCommand<K, V> {
+    PutCommand(K key, V value, V oldValue) {
+        this(key, value, oldValue, ExpiringMap.NO_EXPIRY);
+    }
+
     @Override
     public void execute(Map<K, V> cache) {
         cache.put(key, value);
@@ -10,10 +14,6 @@ record PutCommand<K, V>(K key, V value, V oldValue) implements CacheCommand<K, V
 
     @Override
     public void undo(Map<K, V> cache) {
-        if (oldValue == null) {
-            cache.remove(key);
-        } else {
-            cache.put(key, oldValue);
-        }
+        ExpiringMap.restore(cache, key, oldValue, oldExpiry);
     }
-}
\ No newline at end of file
+}
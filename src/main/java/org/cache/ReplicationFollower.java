@@ -0,0 +1,102 @@
+package org.cache;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Applies the frames a ReplicationLeader ships to a local cache, which then serves reads.
+// Each shipped transaction is applied as one local transaction, in commit order, so with a
+// buffered engine such as PerpexilityTransaction readers never see half of one. A frame
+// arriving twice is skipped. A frame that is corrupt, fails to apply or arrives after a gap
+// is dropped and its error kept in failure(), never thrown back at the transport; since
+// applying past a missing frame would diverge from the leader, replication then stalls
+// until the missing frame arrives.
+final class ReplicationFollower<K, V> {
+    private final Cache<K, V> cache;
+    private final Transactional transactions;
+    private final WriteSetCodec<K, V> codec;
+    private final ReentrantLock applyLock = new ReentrantLock();
+    private final Histogram lagMillis = new Histogram(); // Leader send to local commit
+    private final Histogram applyNanos = new Histogram();
+    private volatile long appliedSequence; // 0 until the first frame arrives
+    private volatile long appliedTransactions;
+    private volatile long appliedWrites;
+    private volatile RuntimeException failure;
+
+    <C extends Cache<K, V> & Transactional> ReplicationFollower(C cache, Serializer<K> keySerializer,
+                                                                Serializer<V> valueSerializer,
+                                                                ReplicationTransport transport) {
+        this.cache = cache;
+        this.transactions = cache;
+        this.codec = new WriteSetCodec<>(keySerializer, valueSerializer);
+        transport.subscribe(this::receive);
+    }
+
+    private void receive(ByteBuffer frame) {
+        try {
+            applyFrame(frame);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+    }
+
+    private void applyFrame(ByteBuffer frame) {
+        long sentAt = frame.getLong();
+        ByteBuffer payload = WriteSetCodec.payloadOf(frame.slice());
+        if (payload == null) {
+            throw new IllegalStateException("Corrupt replication frame");
+        }
+        long sequence = payload.getLong();
+        List<WriteCommand<K, V>> writes = codec.decode(payload);
+
+        applyLock.lock();
+        try {
+            if (appliedSequence != 0 && sequence <= appliedSequence) {
+                return;
+            }
+            if (appliedSequence != 0 && sequence != appliedSequence + 1) {
+                throw new IllegalStateException("Replication gap: expected " + (appliedSequence + 1) + " but received " + sequence);
+            }
+            long start = System.nanoTime();
+            apply(writes);
+            applyNanos.record(System.nanoTime() - start);
+            lagMillis.record(System.currentTimeMillis() - sentAt);
+            appliedTransactions++;
+            appliedWrites += writes.size();
+            appliedSequence = sequence;
+        } finally {
+            applyLock.unlock();
+        }
+    }
+
+    private void apply(List<WriteCommand<K, V>> writes) {
+        transactions.beginTransaction();
+        try {
+            for (WriteCommand<K, V> write : writes) {
+                if (write.value() != null) {
+                    cache.put(write.key(), write.value());
+                } else {
+                    cache.delete(write.key());
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            transactions.rollbackTransaction();
+            throw e;
+        }
+        transactions.commitTransaction();
+    }
+
+    // Why the latest rejected frame was dropped, or null if none has been
+    RuntimeException failure() {
+        return failure;
+    }
+
+    Stats stats() {
+        return new Stats(appliedSequence, appliedTransactions, appliedWrites, lagMillis.snapshot(), applyNanos.snapshot());
+    }
+
+    // Apply throughput is the change in appliedTransactions or appliedWrites between two snapshots
+    record Stats(long appliedSequence, long appliedTransactions, long appliedWrites, Histogram.Snapshot lagMillis,
+                 Histogram.Snapshot applyNanos) {
+    }
+}
@@ -0,0 +1,79 @@
+package org.cache;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Flow;
+
+// Ships every transaction a PerpexilityTransaction commits to its followers. Each frame is
+// [leader wall-clock millis][WriteSetCodec record of the net write-set], sent in commit
+// order as the change feed delivers it. Followers only see commits made after the leader
+// was created, so they start from the same state, e.g. empty or restored from a checkpoint.
+final class ReplicationLeader<K, V> implements Flow.Subscriber<ChangeEvent<K, V>>, AutoCloseable {
+    private static final int BATCH = 64; // Events requested from the feed at a time
+
+    private final WriteSetCodec<K, V> codec;
+    private final ReplicationTransport transport;
+    private Flow.Subscription subscription;
+    private int outstanding;
+    private volatile long shippedSequence;
+    private volatile long shippedTransactions;
+    private volatile Throwable failure;
+
+    ReplicationLeader(PerpexilityTransaction<K, V> cache, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                      ReplicationTransport transport) {
+        this.codec = new WriteSetCodec<>(keySerializer, valueSerializer);
+        this.transport = transport;
+        cache.changes().subscribe(this);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        outstanding = BATCH;
+        subscription.request(BATCH);
+    }
+
+    // The feed calls this one event at a time
+    @Override
+    public void onNext(ChangeEvent<K, V> event) {
+        ByteBuffer record = codec.encode(event.sequence(), event.writes());
+        ByteBuffer frame = ByteBuffer.allocate(Long.BYTES + record.remaining());
+        frame.putLong(System.currentTimeMillis()).put(record).flip();
+        transport.send(frame);
+        shippedSequence = event.sequence();
+        shippedTransactions++;
+        if (--outstanding == 0) {
+            outstanding = BATCH;
+            subscription.request(BATCH);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        failure = throwable;
+    }
+
+    @Override
+    public void onComplete() {
+    }
+
+    // Sequence of the newest transaction sent; compare with a follower's applied sequence for lag
+    long shippedSequence() {
+        return shippedSequence;
+    }
+
+    long shippedTransactions() {
+        return shippedTransactions;
+    }
+
+    // Why shipping stopped, e.g. a transport failure, or null while it is running
+    Throwable failure() {
+        return failure;
+    }
+
+    @Override
+    public void close() {
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.cache;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+// Carries replication frames from a leader to its followers, e.g. over sockets or a message
+// bus. Frames must reach each receiver whole and in the order they were sent.
+interface ReplicationTransport {
+    void send(ByteBuffer frame);
+
+    void subscribe(Consumer<ByteBuffer> receiver);
+}
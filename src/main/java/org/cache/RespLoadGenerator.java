@@ -0,0 +1,201 @@
+package org.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+// redis-benchmark style load against any RESP server: each client thread keeps one
+// connection and sends its requests in pipelined batches, recording every request's
+// latency as its batch's round trip. SET and GET run as separate phases.
+// Arguments: [host] [port] [clients] [requests per client] [pipeline] [value bytes]
+public class RespLoadGenerator {
+    private static final int KEYSPACE = 10_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 6379;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        int requests = args.length > 3 ? Integer.parseInt(args[3]) : 10_000;
+        int pipeline = args.length > 4 ? Integer.parseInt(args[4]) : 16;
+        int valueBytes = args.length > 5 ? Integer.parseInt(args[5]) : 64;
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        for (String command : List.of("SET", "GET")) {
+            System.out.println(run(address, command, clients, requests, pipeline, valueBytes));
+        }
+    }
+
+    record Result(String command, long requests, long nanos, Histogram.Snapshot latency) {
+        double requestsPerSecond() {
+            return nanos == 0 ? 0 : requests * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d requests in %.2f s, %.0f requests/s, latency p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+                    command, requests, nanos / 1e9, requestsPerSecond(),
+                    latency.percentile(50) / 1e6, latency.percentile(99) / 1e6, latency.max() / 1e6);
+        }
+    }
+
+    // command is SET or GET; keys cycle through a fixed keyspace
+    static Result run(InetSocketAddress address, String command, int clients, int requestsPerClient, int pipeline,
+                      int valueBytes) throws InterruptedException {
+        byte[] value = new byte[valueBytes];
+        Arrays.fill(value, (byte) 'x');
+        Histogram latency = new Histogram();
+        List<Thread> threads = new ArrayList<>(clients);
+        List<RuntimeException> failures = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            Thread thread = new Thread(() -> {
+                try (SocketChannel channel = SocketChannel.open(address)) {
+                    start.await();
+                    new Client(channel, command, value, latency).run(client * requestsPerClient, requestsPerClient, pipeline);
+                } catch (IOException e) {
+                    synchronized (failures) {
+                        failures.add(new UncheckedIOException(e));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }, "resp-load-" + c);
+            threads.add(thread);
+            thread.start();
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - began;
+        if (!failures.isEmpty()) {
+            throw failures.get(0);
+        }
+        return new Result(command, (long) clients * requestsPerClient, elapsed, latency.snapshot());
+    }
+
+    // One connection's request and reply buffers, reused for every batch
+    private static final class Client {
+        private final SocketChannel channel;
+        private final byte[] command;
+        private final boolean set; // Otherwise GET
+        private final byte[] value;
+        private final Histogram latency;
+        private ByteBuffer requests = ByteBuffer.allocate(16 * 1024);
+        private ByteBuffer replies = ByteBuffer.allocate(16 * 1024);
+
+        Client(SocketChannel channel, String command, byte[] value, Histogram latency) {
+            this.channel = channel;
+            this.command = command.getBytes(US_ASCII);
+            set = command.equals("SET");
+            this.value = value;
+            this.latency = latency;
+        }
+
+        void run(int firstRequest, int count, int pipeline) throws IOException {
+            for (int sent = 0; sent < count; ) {
+                int batch = Math.min(pipeline, count - sent);
+                requests.clear();
+                for (int i = 0; i < batch; i++) {
+                    byte[] key = ("key:" + (firstRequest + sent + i) % KEYSPACE).getBytes(US_ASCII);
+                    encode(set ? new byte[][]{command, key, value} : new byte[][]{command, key});
+                }
+                long began = System.nanoTime();
+                requests.flip();
+                while (requests.hasRemaining()) {
+                    channel.write(requests);
+                }
+                awaitReplies(batch);
+                long roundTrip = System.nanoTime() - began;
+                for (int i = 0; i < batch; i++) {
+                    latency.record(roundTrip);
+                }
+                sent += batch;
+            }
+        }
+
+        private void encode(byte[][] args) {
+            int length = 16;
+            for (byte[] arg : args) {
+                length += arg.length + 16;
+            }
+            if (requests.remaining() < length) {
+                requests = ByteBuffer.allocate(Math.max(requests.capacity() * 2, requests.position() + length)).put(requests.flip());
+            }
+            requests.put((byte) '*').put(Integer.toString(args.length).getBytes(US_ASCII)).put((byte) '\r').put((byte) '\n');
+            for (byte[] arg : args) {
+                requests.put((byte) '$').put(Integer.toString(arg.length).getBytes(US_ASCII)).put((byte) '\r').put((byte) '\n');
+                requests.put(arg).put((byte) '\r').put((byte) '\n');
+            }
+        }
+
+        private void awaitReplies(int expected) throws IOException {
+            replies.clear();
+            int received = 0;
+            while (received < expected) {
+                if (!replies.hasRemaining()) {
+                    replies = ByteBuffer.allocate(replies.capacity() * 2).put(replies.flip());
+                }
+                if (channel.read(replies) < 0) {
+                    throw new IOException("Server closed the connection");
+                }
+                replies.flip();
+                while (received < expected && skipReply(replies)) {
+                    received++;
+                }
+                replies.compact();
+            }
+        }
+
+        // Consumes one simple, error, integer or bulk reply, or returns false with the
+        // position unchanged if it hasn't fully arrived
+        private static boolean skipReply(ByteBuffer in) {
+            int start = in.position();
+            if (!in.hasRemaining()) {
+                return false;
+            }
+            byte type = in.get();
+            long number = 0;
+            boolean negative = false;
+            while (true) {
+                if (!in.hasRemaining()) {
+                    in.position(start);
+                    return false;
+                }
+                byte b = in.get();
+                if (b == '\n') {
+                    break;
+                }
+                if (type == '$' && b == '-') {
+                    negative = true;
+                } else if (type == '$' && b >= '0' && b <= '9') {
+                    number = number * 10 + (b - '0');
+                }
+            }
+            if (type == '-') {
+                throw new IllegalStateException("Server replied with an error");
+            }
+            if (type == '$' && !negative) {
+                if (in.remaining() < number + 2) {
+                    in.position(start);
+                    return false;
+                }
+                in.position(in.position() + (int) number + 2);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,502 @@
+package org.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+// Non-blocking server speaking a Redis-compatible subset of RESP, so several JVMs on a host
+// can share one cache as a sidecar: PING, GET, SET [EX|PX], DEL, MGET, MSET, MULTI, EXEC,
+// DISCARD and QUIT. One selector thread serves every connection. It parses every complete
+// command a read delivered, so pipelined requests are answered in order, and encodes their
+// replies into the connection's output buffer, which goes out in a single write. Both
+// buffers live as long as the connection and are reused for every request. A client that
+// stops reading gets no more of its requests read until its replies drain.
+//
+// Cache calls run on the selector thread, where transactions are thread-scoped, so MULTI
+// queues commands per connection and EXEC runs them between beginTransaction and
+// commitTransaction, rolling back if any of them fails.
+public class RespServer implements AutoCloseable {
+    private static final System.Logger LOG = System.getLogger(RespServer.class.getName());
+    private static final int BUFFER_BYTES = 16 * 1024;
+    private static final int MAX_REQUEST_BYTES = 64 << 20; // Largest single command accepted
+    private static final long INCOMPLETE = Long.MIN_VALUE;
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final Cache<String, byte[]> cache;
+    private final Transactional transactions;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread loop;
+    private volatile boolean closed;
+
+    // Port 0 binds an ephemeral port; see address()
+    <C extends Cache<String, byte[]> & Transactional> RespServer(C cache, InetSocketAddress address) throws IOException {
+        this.cache = cache;
+        this.transactions = cache;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        loop = new Thread(this::run, "resp-server");
+        loop.start();
+    }
+
+    // Runs a server backed by a PerpexilityTransaction. Arguments: [port], 6379 by default
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 6379;
+        RespServer server = new RespServer(new PerpexilityTransaction<String, byte[]>(), new InetSocketAddress(port));
+        System.out.println("Listening on " + server.address());
+    }
+
+    InetSocketAddress address() {
+        try {
+            return (InetSocketAddress) server.getLocalAddress();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        selector.wakeup();
+        try {
+            loop.join();
+        } catch (InterruptedException e) {
+            // Close the channels anyway; a loop still running stops at the closed selector
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                selector.select();
+                Iterator<SelectionKey> ready = selector.selectedKeys().iterator();
+                while (ready.hasNext()) {
+                    SelectionKey key = ready.next();
+                    ready.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        acceptOrLog();
+                    } else if (key.attachment() instanceof Connection connection) {
+                        serve(key, connection);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClosedSelectorException e) {
+            // Closed while selecting; nothing left to serve
+        }
+    }
+
+    // A failed accept, e.g. when the process is out of file descriptors, only costs that
+    // connection; the listening socket stays registered, so the next select retries it
+    private void acceptOrLog() {
+        try {
+            accept();
+        } catch (IOException e) {
+            LOG.log(System.Logger.Level.WARNING, "Failed to accept a connection", e);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true); // Replies are already batched per read
+            channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // A failing connection is closed without affecting the others
+    private void serve(SelectionKey key, Connection connection) {
+        try {
+            if (key.isWritable() && !flush(key, connection)) {
+                return;
+            }
+            if (key.isValid() && key.isReadable()) {
+                read(key, connection);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            key.cancel();
+            try {
+                connection.channel.close();
+            } catch (IOException ignored) {
+                // Already failing
+            }
+        }
+    }
+
+    private void read(SelectionKey key, Connection connection) throws IOException {
+        if (connection.channel.read(connection.in) < 0) {
+            throw new IOException("Connection closed by peer");
+        }
+        ByteBuffer in = connection.in.flip();
+        try {
+            for (byte[][] args; !connection.quitting && (args = parse(in)) != null; ) {
+                dispatch(connection, args);
+            }
+        } catch (IllegalArgumentException e) {
+            // Like Redis, reply to a malformed request and hang up, since the stream can't be resynchronized
+            connection.error("ERR Protocol error: " + e.getMessage());
+            connection.quitting = true;
+        }
+        in.compact();
+        if (!in.hasRemaining()) {
+            if (in.capacity() >= MAX_REQUEST_BYTES) {
+                throw new IllegalArgumentException("Request too large");
+            }
+            connection.in = ByteBuffer.allocate(in.capacity() * 2).put(in.flip());
+        }
+        flush(key, connection);
+    }
+
+    // Writes pending replies; returns false, and waits for the socket to drain before
+    // reading further requests, if they didn't all fit
+    private boolean flush(SelectionKey key, Connection connection) throws IOException {
+        ByteBuffer out = connection.out.flip();
+        connection.channel.write(out);
+        boolean drained = !out.hasRemaining();
+        out.compact();
+        if (drained && connection.quitting) {
+            throw new IOException("Connection closed by QUIT");
+        }
+        key.interestOps(drained ? SelectionKey.OP_READ : SelectionKey.OP_WRITE);
+        return drained;
+    }
+
+    private void dispatch(Connection connection, byte[][] args) {
+        String name = new String(args[0], US_ASCII).toUpperCase(Locale.ROOT);
+        if (!isKnown(name)) {
+            connection.reject("ERR unknown command '" + name.toLowerCase(Locale.ROOT) + "'");
+            return;
+        }
+        if (!hasValidArity(name, args.length)) {
+            connection.reject("ERR wrong number of arguments for '" + name.toLowerCase(Locale.ROOT) + "' command");
+            return;
+        }
+        switch (name) {
+            case "MULTI" -> {
+                if (connection.queued != null) {
+                    connection.error("ERR MULTI calls can not be nested");
+                } else {
+                    connection.queued = new ArrayList<>();
+                    connection.dirty = false;
+                    connection.simple("OK");
+                }
+            }
+            case "EXEC" -> exec(connection);
+            case "DISCARD" -> {
+                if (connection.queued == null) {
+                    connection.error("ERR DISCARD without MULTI");
+                } else {
+                    connection.queued = null; // Nothing has reached the cache yet
+                    connection.simple("OK");
+                }
+            }
+            case "QUIT" -> {
+                connection.simple("OK");
+                connection.quitting = true;
+            }
+            default -> {
+                if (connection.queued != null) {
+                    connection.queued.add(args);
+                    connection.simple("QUEUED");
+                    return;
+                }
+                try {
+                    execute(connection, name, args);
+                } catch (RuntimeException e) {
+                    connection.error("ERR " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void exec(Connection connection) {
+        List<byte[][]> queued = connection.queued;
+        if (queued == null) {
+            connection.error("ERR EXEC without MULTI");
+            return;
+        }
+        connection.queued = null;
+        if (connection.dirty) {
+            // Like Redis, a command rejected while queueing discards the whole transaction
+            connection.error("EXECABORT Transaction discarded because of previous errors.");
+            return;
+        }
+        int mark = connection.out.position();
+        transactions.beginTransaction();
+        try {
+            connection.arrayHeader(queued.size());
+            for (byte[][] args : queued) {
+                execute(connection, new String(args[0], US_ASCII).toUpperCase(Locale.ROOT), args);
+            }
+            transactions.commitTransaction();
+        } catch (RuntimeException e) {
+            // Engines that fail a commit have already closed the transaction
+            if (transactions.transactionDepth() > 0) {
+                transactions.rollbackTransaction();
+            }
+            connection.out.position(mark);
+            connection.error("EXECABORT Transaction discarded: " + e.getMessage());
+        }
+    }
+
+    // Commands that touch the cache, with their arity already checked
+    private void execute(Connection connection, String name, byte[][] args) {
+        switch (name) {
+            case "PING" -> {
+                if (args.length == 1) {
+                    connection.simple("PONG");
+                } else {
+                    connection.bulk(args[1]);
+                }
+            }
+            case "GET" -> connection.bulk(cache.get(key(args[1])));
+            case "SET" -> {
+                Duration ttl = args.length == 5 ? ttl(args[3], args[4]) : null;
+                if (ttl != null) {
+                    cache.put(key(args[1]), args[2], ttl);
+                } else {
+                    cache.put(key(args[1]), args[2]);
+                }
+                connection.simple("OK");
+            }
+            case "DEL" -> {
+                List<String> keys = keys(args);
+                int existing = cache.getAll(keys).size();
+                cache.deleteAll(keys);
+                connection.integer(existing);
+            }
+            case "MGET" -> {
+                List<String> keys = keys(args);
+                Map<String, byte[]> found = cache.getAll(keys);
+                connection.arrayHeader(keys.size());
+                for (String key : keys) {
+                    connection.bulk(found.get(key));
+                }
+            }
+            case "MSET" -> {
+                Map<String, byte[]> entries = new LinkedHashMap<>(); // A repeated key keeps its last value
+                for (int i = 1; i < args.length; i += 2) {
+                    entries.put(key(args[i]), args[i + 1]);
+                }
+                cache.putAll(entries);
+                connection.simple("OK");
+            }
+            default -> throw new IllegalStateException("Unhandled command " + name);
+        }
+    }
+
+    private static boolean isKnown(String name) {
+        return switch (name) {
+            case "PING", "GET", "SET", "DEL", "MGET", "MSET", "MULTI", "EXEC", "DISCARD", "QUIT" -> true;
+            default -> false;
+        };
+    }
+
+    // SET takes only the EX or PX option
+    private static boolean hasValidArity(String name, int length) {
+        return switch (name) {
+            case "PING" -> length <= 2;
+            case "GET" -> length == 2;
+            case "SET" -> length == 3 || length == 5;
+            case "DEL", "MGET" -> length >= 2;
+            case "MSET" -> length >= 3 && length % 2 == 1;
+            default -> length == 1;
+        };
+    }
+
+    private static Duration ttl(byte[] option, byte[] amount) {
+        long value;
+        try {
+            value = Long.parseLong(new String(amount, US_ASCII));
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("value is not an integer or out of range");
+        }
+        if (value <= 0) {
+            throw new IllegalStateException("invalid expire time in 'set' command");
+        }
+        return switch (new String(option, US_ASCII).toUpperCase(Locale.ROOT)) {
+            case "EX" -> Duration.ofSeconds(value);
+            case "PX" -> Duration.ofMillis(value);
+            default -> throw new IllegalStateException("syntax error");
+        };
+    }
+
+    private static String key(byte[] bytes) {
+        return new String(bytes, UTF_8);
+    }
+
+    // Every argument after the command name
+    private static List<String> keys(byte[][] args) {
+        List<String> keys = new ArrayList<>(args.length - 1);
+        for (int i = 1; i < args.length; i++) {
+            keys.add(key(args[i]));
+        }
+        return keys;
+    }
+
+    // The next command as an array of bulk strings, or null with the position unchanged if
+    // the buffer doesn't hold all of it yet
+    static byte[][] parse(ByteBuffer in) {
+        int start = in.position();
+        long count = readNumber(in, '*');
+        if (count == INCOMPLETE) {
+            return null;
+        }
+        if (count < 1 || count > 1024 * 1024) {
+            throw new IllegalArgumentException("invalid multibulk length");
+        }
+        byte[][] args = new byte[(int) count][];
+        for (int i = 0; i < count; i++) {
+            long length = readNumber(in, '$');
+            if (length != INCOMPLETE && (length < 0 || length > MAX_REQUEST_BYTES)) {
+                throw new IllegalArgumentException("invalid bulk length");
+            }
+            if (length == INCOMPLETE || in.remaining() < length + 2) {
+                in.position(start);
+                return null;
+            }
+            args[i] = new byte[(int) length];
+            in.get(args[i]);
+            if (in.get() != '\r' || in.get() != '\n') {
+                throw new IllegalArgumentException("expected CRLF after bulk string");
+            }
+        }
+        return args;
+    }
+
+    // Reads a prefixed decimal line such as "*3\r\n", or returns INCOMPLETE
+    private static long readNumber(ByteBuffer in, char prefix) {
+        if (!in.hasRemaining()) {
+            return INCOMPLETE;
+        }
+        int start = in.position();
+        if (in.get() != prefix) {
+            throw new IllegalArgumentException("expected '" + prefix + "'");
+        }
+        long value = 0;
+        boolean negative = false;
+        int digits = 0;
+        while (in.hasRemaining()) {
+            byte b = in.get();
+            if (b == '\r') {
+                if (!in.hasRemaining()) {
+                    break;
+                }
+                if (in.get() != '\n' || digits == 0) {
+                    throw new IllegalArgumentException("invalid length line");
+                }
+                return negative ? -value : value;
+            }
+            if (b == '-' && digits == 0 && !negative) {
+                negative = true;
+            } else if (b >= '0' && b <= '9' && digits < 18) {
+                value = value * 10 + (b - '0');
+                digits++;
+            } else {
+                throw new IllegalArgumentException("invalid length line");
+            }
+        }
+        in.position(start);
+        return INCOMPLETE;
+    }
+
+    // Per-connection state, touched only by the selector thread
+    private static final class Connection {
+        final SocketChannel channel;
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_BYTES); // Grows to fit the largest command seen
+        ByteBuffer out = ByteBuffer.allocate(BUFFER_BYTES); // Replies not yet written
+        List<byte[][]> queued; // Commands since MULTI, null outside one
+        boolean dirty; // A command was rejected since MULTI, so EXEC must abort
+        boolean quitting; // Close once the pending replies are written
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void simple(String message) {
+            line('+', message);
+        }
+
+        void error(String message) {
+            line('-', message);
+        }
+
+        // Error for a command that can't be run; inside MULTI it also dooms the EXEC
+        void reject(String message) {
+            if (queued != null) {
+                dirty = true;
+            }
+            error(message);
+        }
+
+        void integer(long value) {
+            line(':', Long.toString(value));
+        }
+
+        void arrayHeader(int size) {
+            line('*', Integer.toString(size));
+        }
+
+        // A null value is RESP's null bulk string
+        void bulk(byte[] value) {
+            if (value == null) {
+                line('$', "-1");
+                return;
+            }
+            line('$', Integer.toString(value.length));
+            reserve(value.length + CRLF.length);
+            out.put(value).put(CRLF);
+        }
+
+        private void line(char type, String text) {
+            reserve(text.length() + 1 + CRLF.length);
+            out.put((byte) type);
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                out.put(c == '\r' || c == '\n' ? (byte) ' ' : (byte) c); // Keep a line a line
+            }
+            out.put(CRLF);
+        }
+
+        private void reserve(int bytes) {
+            if (out.remaining() < bytes) {
+                out = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes)).put(out.flip());
+            }
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package org.cache;
+
+// Marker inside the calling thread's current transaction, from Transactional.savepoint()
+interface Savepoint {
+}
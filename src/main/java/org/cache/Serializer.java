@@ -0,0 +1,90 @@
+package org.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Converts keys or values to bytes for the write-ahead log and checkpoints
+interface Serializer<T> {
+    byte[] serialize(T value);
+
+    // Reads a value from the buffer's position up to its limit
+    T deserialize(ByteBuffer bytes);
+
+    static Serializer<String> strings() {
+        return new Serializer<>() {
+            @Override
+            public byte[] serialize(String value) {
+                return value.getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public String deserialize(ByteBuffer bytes) {
+                return StandardCharsets.UTF_8.decode(bytes).toString();
+            }
+        };
+    }
+
+    static Serializer<Integer> integers() {
+        return new Serializer<>() {
+            @Override
+            public byte[] serialize(Integer value) {
+                return ByteBuffer.allocate(Integer.BYTES).putInt(value).array();
+            }
+
+            @Override
+            public Integer deserialize(ByteBuffer bytes) {
+                return bytes.getInt();
+            }
+        };
+    }
+
+    static Serializer<Long> longs() {
+        return new Serializer<>() {
+            @Override
+            public byte[] serialize(Long value) {
+                return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+            }
+
+            @Override
+            public Long deserialize(ByteBuffer bytes) {
+                return bytes.getLong();
+            }
+        };
+    }
+
+    // Java serialization, for any Serializable type; much larger than the dedicated formats
+    static <T> Serializer<T> java() {
+        return new Serializer<>() {
+            @Override
+            public byte[] serialize(T value) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                    out.writeObject(value);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot serialize " + value.getClass().getName(), e);
+                }
+                return bytes.toByteArray();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T deserialize(ByteBuffer bytes) {
+                byte[] copy = new byte[bytes.remaining()];
+                bytes.get(copy);
+                try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(copy))) {
+                    return (T) in.readObject();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot deserialize value", e);
+                } catch (ClassNotFoundException e) {
+                    throw new IllegalStateException("Serialized value references an unknown class", e);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,411 @@
+package org.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+// Thread-per-core engine: the keyspace is split into shards that each own a plain HashMap
+// and an undo log, touched only by the shard's own worker thread, so the store needs no
+// synchronization and hot keys never bounce cache lines between cores. Callers hand each
+// operation to the owning worker through its lock-free inbox and wait for the reply.
+// Transactions buffer their writes per calling thread. A commit that touches one shard is
+// applied by its worker in a single step; one that spans shards uses a two-phase commit.
+// Reads of several shards are not a snapshot. Functions passed to compute run on a worker
+// and must not call back into the cache.
+class ShardedCache<K, V> implements Cache<K, V>, Transactional, AutoCloseable {
+    private final Shard<K, V>[] shards;
+    private final ThreadLocal<WriteSet<K, V>> writeSets = ThreadLocal.withInitial(WriteSet::new);
+
+    ShardedCache() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    @SuppressWarnings("unchecked")
+    ShardedCache(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("A sharded cache needs at least one shard");
+        }
+        shards = (Shard<K, V>[]) new Shard<?, ?>[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard<>("cache-shard-" + i);
+        }
+    }
+
+    @Override
+    public V get(K key) {
+        WriteCommand<K, V> pending = writeSets.get().lookup(key);
+        if (pending != null) {
+            return pending.value();
+        }
+        return await(shardFor(key).call(map -> map.get(key)));
+    }
+
+    @Override
+    public void put(K key, V value) {
+        write(new PutCommand<>(key, value, null));
+    }
+
+    @Override
+    public void delete(K key) {
+        write(new DeleteCommand<>(key, null));
+    }
+
+    private void write(WriteCommand<K, V> command) {
+        WriteSet<K, V> writeSet = writeSets.get();
+        if (writeSet.isActive()) {
+            writeSet.record(command);
+            return;
+        }
+        await(shardFor(command.key()).call(map -> {
+            command.execute(map);
+            return null;
+        }));
+    }
+
+    // One message per shard, all in flight at once
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        WriteSet<K, V> writeSet = writeSets.get();
+        Map<K, V> result = new HashMap<>();
+        List<List<K>> byShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(null);
+        }
+        for (K key : keys) {
+            WriteCommand<K, V> pending = writeSet.lookup(key);
+            if (pending != null) {
+                if (pending.value() != null) {
+                    result.put(key, pending.value());
+                }
+                continue;
+            }
+            int index = indexFor(key);
+            if (byShard.get(index) == null) {
+                byShard.set(index, new ArrayList<>());
+            }
+            byShard.get(index).add(key);
+        }
+        List<CompletableFuture<Map<K, V>>> replies = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            List<K> shardKeys = byShard.get(i);
+            if (shardKeys != null) {
+                replies.add(shards[i].call(map -> {
+                    Map<K, V> found = new HashMap<>();
+                    for (K key : shardKeys) {
+                        V value = map.get(key);
+                        if (value != null) {
+                            found.put(key, value);
+                        }
+                    }
+                    return found;
+                }));
+            }
+        }
+        for (CompletableFuture<Map<K, V>> reply : replies) {
+            result.putAll(await(reply));
+        }
+        return result;
+    }
+
+    // Outside a transaction the batch is applied like a commit, so it is atomic
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        List<WriteCommand<K, V>> commands = new ArrayList<>(entries.size());
+        entries.forEach((key, value) -> commands.add(new PutCommand<>(key, value, null)));
+        writeAll(commands);
+    }
+
+    @Override
+    public void deleteAll(Collection<? extends K> keys) {
+        List<WriteCommand<K, V>> commands = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            commands.add(new DeleteCommand<>(key, null));
+        }
+        writeAll(commands);
+    }
+
+    private void writeAll(Collection<WriteCommand<K, V>> commands) {
+        WriteSet<K, V> writeSet = writeSets.get();
+        if (writeSet.isActive()) {
+            commands.forEach(writeSet::record);
+            return;
+        }
+        apply(commands);
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        WriteSet<K, V> writeSet = writeSets.get();
+        if (writeSet.isActive()) {
+            WriteCommand<K, V> pending = writeSet.lookup(key);
+            V current = pending != null ? pending.value() : await(shardFor(key).call(map -> map.get(key)));
+            V value = remapping.apply(key, current);
+            if (value != current) {
+                writeSet.record(value != null ? new PutCommand<>(key, value, null) : new DeleteCommand<>(key, null));
+            }
+            return value;
+        }
+        // The shard's worker is the only writer, so the update is atomic without a lock
+        return await(shardFor(key).call(map -> map.compute(key, remapping)));
+    }
+
+    @Override
+    public void beginTransaction() {
+        writeSets.get().begin(); // Create a new transaction level
+    }
+
+    @Override
+    public void commitTransaction() {
+        WriteSet<K, V> writeSet = writeSets.get();
+        if (!writeSet.isActive()) {
+            throw new IllegalStateException("No active transaction to commit");
+        }
+
+        // Nested levels fold into their parent; only the outermost commit reaches the shards
+        Map<K, WriteCommand<K, V>> writes = writeSet.commit();
+        if (writes != null && !writes.isEmpty()) {
+            apply(writes.values());
+        }
+    }
+
+    @Override
+    public void rollbackTransaction() {
+        WriteSet<K, V> writeSet = writeSets.get();
+        if (!writeSet.isActive()) {
+            throw new IllegalStateException("No active transaction to rollback");
+        }
+
+        // Nothing reached the shards yet, so this only drops buffered writes
+        writeSet.rollback();
+    }
+
+    @Override
+    public int transactionDepth() {
+        return writeSets.get().depth();
+    }
+
+    @Override
+    public long transactionId() {
+        return writeSets.get().levelId();
+    }
+
+    @Override
+    public Savepoint savepoint() {
+        WriteSet<K, V> writeSet = writeSets.get();
+        if (!writeSet.isActive()) {
+            throw new IllegalStateException("No active transaction to savepoint");
+        }
+        return writeSet.savepoint();
+    }
+
+    @Override
+    public void rollbackTo(Savepoint savepoint) {
+        writeSets.get().rollbackTo(savepoint);
+    }
+
+    @Override
+    public void release(Savepoint savepoint) {
+        writeSets.get().release(savepoint);
+    }
+
+    // Runs the operations queued so far, then stops the workers. Later calls fail. If
+    // interrupted while waiting for the workers, returns early with the interrupt flag set.
+    @Override
+    public void close() {
+        for (Shard<K, V> shard : shards) {
+            shard.close();
+        }
+        try {
+            for (Shard<K, V> shard : shards) {
+                shard.worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void apply(Collection<WriteCommand<K, V>> writes) {
+        List<List<WriteCommand<K, V>>> byShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(null);
+        }
+        int touched = 0;
+        int last = 0;
+        for (WriteCommand<K, V> command : writes) {
+            int index = indexFor(command.key());
+            if (byShard.get(index) == null) {
+                byShard.set(index, new ArrayList<>());
+                touched++;
+                last = index;
+            }
+            byShard.get(index).add(command);
+        }
+        if (touched == 1) {
+            List<WriteCommand<K, V>> commands = byShard.get(last);
+            await(shards[last].call(map -> {
+                commands.forEach(command -> command.execute(map));
+                return null;
+            }));
+            return;
+        }
+        twoPhaseCommit(byShard);
+    }
+
+    // Each participant applies its writes under its undo log, then holds its worker until
+    // the decision, so nobody reads the shard in between. Shards are prepared one at a time
+    // in index order, so two commits spanning the same shards can never each hold one that
+    // the other is waiting for. If any participant fails to prepare, those already prepared
+    // roll back.
+    private void twoPhaseCommit(List<List<WriteCommand<K, V>>> byShard) {
+        List<Shard.Prepared> prepared = new ArrayList<>();
+        try {
+            for (int i = 0; i < shards.length; i++) {
+                if (byShard.get(i) != null) {
+                    Shard.Prepared participant = shards[i].prepare(byShard.get(i));
+                    prepared.add(participant);
+                    await(participant.ready());
+                }
+            }
+        } catch (RuntimeException e) {
+            for (Shard.Prepared participant : prepared) {
+                participant.decision().complete(false);
+            }
+            throw e;
+        }
+        for (Shard.Prepared participant : prepared) {
+            participant.decision().complete(true);
+        }
+    }
+
+    private Shard<K, V> shardFor(K key) {
+        return shards[indexFor(key)];
+    }
+
+    private int indexFor(Object key) {
+        return Math.floorMod(LockStripes.spread(key), shards.length);
+    }
+
+    private static <R> R await(CompletableFuture<R> reply) {
+        try {
+            return reply.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    // One worker thread with the only references to its map and undo log. It spins briefly
+    // on an empty inbox before parking, so a busy shard answers without a wake-up.
+    private static final class Shard<K, V> implements Runnable {
+        private static final int SPINS = 256;
+
+        private final Map<K, V> map = new HashMap<>();
+        private final UndoLog<K, V> undoLog = new UndoLog<>();
+        private final Queue<Runnable> inbox = new ConcurrentLinkedQueue<>();
+        final Thread worker;
+        private volatile boolean idle; // Set while the worker is about to park
+        private volatile boolean closed;
+
+        Shard(String name) {
+            worker = new Thread(this, name);
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        <R> CompletableFuture<R> call(Function<Map<K, V>, R> operation) {
+            CompletableFuture<R> reply = new CompletableFuture<>();
+            submit(() -> {
+                try {
+                    reply.complete(operation.apply(map));
+                } catch (Throwable e) {
+                    reply.completeExceptionally(e);
+                }
+            });
+            return reply;
+        }
+
+        // ready completes once the writes are applied; the worker then waits for the decision
+        Prepared prepare(List<WriteCommand<K, V>> writes) {
+            Prepared prepared = new Prepared(new CompletableFuture<>(), new CompletableFuture<>());
+            submit(() -> {
+                undoLog.begin();
+                try {
+                    for (WriteCommand<K, V> command : writes) {
+                        K key = command.key();
+                        if (command.value() != null) {
+                            undoLog.recordPut(key, map.put(key, command.value()), ExpiringMap.NO_EXPIRY);
+                        } else {
+                            undoLog.recordDelete(key, map.remove(key), ExpiringMap.NO_EXPIRY);
+                        }
+                    }
+                } catch (Throwable e) {
+                    undoLog.rollback(map, null);
+                    prepared.ready().completeExceptionally(e);
+                    return;
+                }
+                prepared.ready().complete(null);
+                if (prepared.decision().join()) {
+                    undoLog.commit();
+                } else {
+                    undoLog.rollback(map, null);
+                }
+            });
+            return prepared;
+        }
+
+        // The task is taken back if the worker may already have stopped, so a caller never
+        // waits on a task nobody will run
+        private void submit(Runnable task) {
+            if (closed) {
+                throw new IllegalStateException("Cache is closed");
+            }
+            inbox.offer(task);
+            if (closed && inbox.remove(task)) {
+                throw new IllegalStateException("Cache is closed");
+            }
+            if (idle) {
+                LockSupport.unpark(worker);
+            }
+        }
+
+        void close() {
+            closed = true;
+            LockSupport.unpark(worker);
+        }
+
+        @Override
+        public void run() {
+            int spins = 0;
+            while (true) {
+                Runnable task = inbox.poll();
+                if (task != null) {
+                    task.run();
+                    spins = 0;
+                } else if (closed) {
+                    return;
+                } else if (spins < SPINS) {
+                    spins++;
+                    Thread.onSpinWait();
+                } else {
+                    // A producer that misses the flag has queued its task before the check
+                    idle = true;
+                    if (inbox.isEmpty() && !closed) {
+                        LockSupport.park(this);
+                    }
+                    idle = false;
+                }
+            }
+        }
+
+        record Prepared(CompletableFuture<Void> ready, CompletableFuture<Boolean> decision) {
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+// Hands out chunks of direct memory addressed by a long: page index in the high 32 bits,
+// offset in the low 32. Pages of pageBytes are carved into chunks of one power-of-two size
+// class each, and freed chunks go back to their class's free list, so steady-state churn
+// reuses memory instead of allocating. A request larger than a page gets a page of its own,
+// which is dropped when freed. Address 0 is never handed out. Not thread-safe.
+final class SlabAllocator {
+    static final long NULL = 0;
+
+    private static final int MIN_CHUNK_SHIFT = 4; // 16 bytes
+
+    private final int pageBytes;
+    private final List<ByteBuffer> pages = new ArrayList<>();
+    private int[] pageClasses = new int[16]; // Size class of each page, -1 for an oversized page
+    private final Deque<Integer> releasedPages = new ArrayDeque<>(); // Indexes of freed oversized pages
+    private final ClassState[] classes;
+    private long allocatedBytes;
+
+    SlabAllocator(int pageBytes) {
+        if (Integer.bitCount(pageBytes) != 1 || pageBytes < (1 << MIN_CHUNK_SHIFT)) {
+            throw new IllegalArgumentException("Page size must be a power of two of at least 16 bytes");
+        }
+        this.pageBytes = pageBytes;
+        this.classes = new ClassState[Integer.numberOfTrailingZeros(pageBytes) - MIN_CHUNK_SHIFT + 1];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new ClassState();
+        }
+        pages.add(null); // Page 0 is reserved so that no address is NULL
+    }
+
+    // Returns the address of a chunk of at least the given size
+    long allocate(int bytes) {
+        if (bytes > pageBytes) {
+            allocatedBytes += bytes;
+            return address(addPage(ByteBuffer.allocateDirect(bytes), -1), 0);
+        }
+        int sizeClass = sizeClassOf(bytes);
+        ClassState state = classes[sizeClass];
+        if (state.freeCount > 0) {
+            allocatedBytes += chunkBytes(sizeClass);
+            return state.free[--state.freeCount];
+        }
+        int chunk = chunkBytes(sizeClass);
+        if (state.currentPage == 0 || state.nextOffset + chunk > pageBytes) {
+            state.currentPage = addPage(ByteBuffer.allocateDirect(pageBytes), sizeClass);
+            state.nextOffset = 0;
+        }
+        long address = address(state.currentPage, state.nextOffset);
+        state.nextOffset += chunk;
+        allocatedBytes += chunk;
+        return address;
+    }
+
+    void free(long address) {
+        int page = pageOf(address);
+        int sizeClass = pageClasses[page];
+        if (sizeClass < 0) {
+            allocatedBytes -= pages.get(page).capacity();
+            pages.set(page, null); // The direct memory goes once the buffer is collected
+            releasedPages.push(page);
+            return;
+        }
+        ClassState state = classes[sizeClass];
+        if (state.freeCount == state.free.length) {
+            state.free = Arrays.copyOf(state.free, Math.max(16, state.free.length * 2));
+        }
+        state.free[state.freeCount++] = address;
+        allocatedBytes -= chunkBytes(sizeClass);
+    }
+
+    // Page holding the address; read and write it with absolute accessors at offsetOf(address)
+    ByteBuffer page(long address) {
+        return pages.get(pageOf(address));
+    }
+
+    static int offsetOf(long address) {
+        return (int) address;
+    }
+
+    // Bytes held by live chunks, rounded up to their size classes
+    long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    private int addPage(ByteBuffer page, int sizeClass) {
+        Integer released = releasedPages.poll();
+        int index = released != null ? released : pages.size();
+        if (released != null) {
+            pages.set(index, page);
+        } else {
+            pages.add(page);
+        }
+        if (index == pageClasses.length) {
+            pageClasses = Arrays.copyOf(pageClasses, index * 2);
+        }
+        pageClasses[index] = sizeClass;
+        return index;
+    }
+
+    private static int pageOf(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static long address(int page, int offset) {
+        return ((long) page << 32) | (offset & 0xffffffffL);
+    }
+
+    private static int sizeClassOf(int bytes) {
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(bytes, 1 << MIN_CHUNK_SHIFT) - 1);
+        return shift - MIN_CHUNK_SHIFT;
+    }
+
+    private static int chunkBytes(int sizeClass) {
+        return 1 << (sizeClass + MIN_CHUNK_SHIFT);
+    }
+
+    private static final class ClassState {
+        long[] free = new long[0];
+        int freeCount;
+        int currentPage; // 0 until the class gets its first page
+        int nextOffset;
+    }
+}
@@ -0,0 +1,118 @@
+package org.cache;
+
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Tracks which commit timestamps live readers are pinned to, so old versions are only
+// reclaimed once no snapshot can see them. Each thread publishes its snapshot in its own
+// slot, which keeps pinning free of shared writes. A thread's slot is dropped by the first
+// scan after the thread ends, so short-lived threads don't pile up slots.
+final class SnapshotRegistry {
+    private static final long IDLE = Long.MAX_VALUE;
+
+    private final AtomicLong clock;
+    private final Set<Slot> slots = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<Slot> threadSlots = ThreadLocal.withInitial(this::register);
+
+    SnapshotRegistry(AtomicLong clock) {
+        this.clock = clock;
+    }
+
+    // Pins the calling thread to the latest commit timestamp and returns it
+    long acquire() {
+        Slot slot = threadSlots.get();
+        while (true) {
+            long timestamp = clock.get();
+            slot.timestamp = timestamp;
+            // If a commit was published meanwhile, its reclamation pass may have missed our slot
+            if (clock.get() == timestamp) {
+                return timestamp;
+            }
+        }
+    }
+
+    void release() {
+        threadSlots.get().timestamp = IDLE;
+    }
+
+    // Pins the latest commit timestamp apart from the calling thread's slot, for readers
+    // that outlive a single call, such as a lazily consumed scan. It stays pinned until closed.
+    Pin pin() {
+        Pin pin = new Pin(slots);
+        slots.add(pin);
+        while (true) {
+            long timestamp = clock.get();
+            pin.timestamp = timestamp;
+            if (clock.get() == timestamp) {
+                return pin;
+            }
+        }
+    }
+
+    // Oldest pinned timestamp, or Long.MAX_VALUE when no reader is active
+    long oldestActive() {
+        long oldest = IDLE;
+        for (Slot slot : slots) {
+            if (slot.abandoned()) {
+                slots.remove(slot); // A finished thread reads nothing
+            } else {
+                oldest = Math.min(oldest, slot.timestamp);
+            }
+        }
+        return oldest;
+    }
+
+    // Registered slots, including those of finished threads not yet dropped
+    int size() {
+        return slots.size();
+    }
+
+    private Slot register() {
+        Slot slot = new ThreadSlot(Thread.currentThread());
+        slots.add(slot);
+        return slot;
+    }
+
+    private static class Slot {
+        volatile long timestamp = IDLE;
+
+        boolean abandoned() {
+            return false;
+        }
+    }
+
+    // Holds its thread weakly so the registry doesn't keep finished threads reachable
+    private static final class ThreadSlot extends Slot {
+        private final WeakReference<Thread> owner;
+
+        ThreadSlot(Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+
+        @Override
+        boolean abandoned() {
+            Thread thread = owner.get();
+            return thread == null || !thread.isAlive();
+        }
+    }
+
+    static final class Pin extends Slot implements AutoCloseable {
+        private final Set<Slot> owner;
+
+        private Pin(Set<Slot> owner) {
+            this.owner = owner;
+        }
+
+        long timestamp() {
+            return timestamp;
+        }
+
+        // Idempotent
+        @Override
+        public void close() {
+            owner.remove(this);
+        }
+    }
+}
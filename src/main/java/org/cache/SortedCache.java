@@ -0,0 +1,164 @@
+package org.cache;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Ordered snapshot-isolation cache for range and prefix scans, e.g. leaderboards or time
+// buckets. Version chains live in a concurrent skip list, so a scan streams lazily in key
+// order without copying or sorting the cache, and sees one snapshot throughout: inside a
+// transaction its own, merged with its uncommitted writes as of when the scan was opened,
+// outside one a snapshot pinned for the scan. Writes stay buffered until commit, so a
+// rolled back put or delete never touches the index.
+class SortedCache<K, V> extends MvccCache<K, V> {
+    private final ConcurrentSkipListMap<K, Version<V>> index;
+    private final Comparator<? super K> order;
+
+    SortedCache() {
+        this(null);
+    }
+
+    // A null comparator orders keys naturally
+    SortedCache(Comparator<? super K> comparator) {
+        this(comparator, null, null);
+    }
+
+    // Durable cache, recovered like MvccCache
+    SortedCache(Comparator<? super K> comparator, Checkpoints<K, V> checkpoints, WriteAheadLog<K, V> log) {
+        this(new ConcurrentSkipListMap<>(comparator), checkpoints, log);
+    }
+
+    @SuppressWarnings("unchecked")
+    private SortedCache(ConcurrentSkipListMap<K, Version<V>> index, Checkpoints<K, V> checkpoints,
+                        WriteAheadLog<K, V> log) {
+        super(index, checkpoints, log);
+        this.index = index;
+        order = index.comparator() != null ? index.comparator() : (Comparator<? super K>) Comparator.naturalOrder();
+    }
+
+    // Entries from fromInclusive up to toExclusive in key order; a null bound is open. Close
+    // the stream, e.g. with try-with-resources, if it isn't consumed to the end, so its
+    // snapshot can be released. Inside a transaction, consume it before the transaction ends.
+    Stream<Map.Entry<K, V>> range(K fromInclusive, K toExclusive) {
+        NavigableMap<K, Version<V>> committed;
+        if (fromInclusive == null) {
+            committed = toExclusive == null ? index : index.headMap(toExclusive);
+        } else {
+            committed = toExclusive == null ? index.tailMap(fromInclusive) : index.subMap(fromInclusive, toExclusive);
+        }
+        ScanView<K, V> view = openScan();
+        TreeMap<K, WriteCommand<K, V>> pending = new TreeMap<>(order);
+        view.pending().forEach((key, command) -> {
+            if ((fromInclusive == null || order.compare(key, fromInclusive) >= 0)
+                    && (toExclusive == null || order.compare(key, toExclusive) < 0)) {
+                pending.put(key, command);
+            }
+        });
+        Scan scan = new Scan(committed.entrySet().iterator(), pending.values().iterator(), view);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(scan,
+                        Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false)
+                .onClose(scan::close);
+    }
+
+    // Entries whose key starts with the prefix. Needs naturally ordered String keys.
+    @SuppressWarnings("unchecked")
+    Stream<Map.Entry<K, V>> prefix(String prefix) {
+        if (index.comparator() != null) {
+            throw new UnsupportedOperationException("Prefix scans need naturally ordered String keys");
+        }
+        String end = successor(prefix);
+        return range((K) prefix, (K) end);
+    }
+
+    // Smallest string above every string that starts with the prefix, or null if none is
+    private static String successor(String prefix) {
+        for (int i = prefix.length() - 1; i >= 0; i--) {
+            char c = prefix.charAt(i);
+            if (c != Character.MAX_VALUE) {
+                return prefix.substring(0, i) + (char) (c + 1);
+            }
+        }
+        return null;
+    }
+
+    // Merges the committed entries visible at the snapshot with the transaction's pending
+    // writes, both in key order; a pending write replaces the committed entry it shadows.
+    // Releases the scan's own snapshot once it runs out.
+    private final class Scan implements Iterator<Map.Entry<K, V>> {
+        private final Iterator<Map.Entry<K, Version<V>>> committed;
+        private final Iterator<WriteCommand<K, V>> pending;
+        private final long snapshot;
+        private final SnapshotRegistry.Pin pin; // Null inside a transaction
+        private Map.Entry<K, Version<V>> nextCommitted;
+        private WriteCommand<K, V> nextPending;
+        private Map.Entry<K, V> next;
+
+        Scan(Iterator<Map.Entry<K, Version<V>>> committed, Iterator<WriteCommand<K, V>> pending, ScanView<K, V> view) {
+            this.committed = committed;
+            this.pending = pending;
+            snapshot = view.snapshot();
+            pin = view.pin();
+            nextCommitted = committed.hasNext() ? committed.next() : null;
+            nextPending = pending.hasNext() ? pending.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K, V> entry = next;
+            next = null;
+            return entry;
+        }
+
+        void close() {
+            if (pin != null) {
+                closeScan(pin);
+            }
+        }
+
+        private Map.Entry<K, V> advance() {
+            while (nextCommitted != null || nextPending != null) {
+                int comparison = nextCommitted == null ? 1
+                        : nextPending == null ? -1
+                        : order.compare(nextCommitted.getKey(), nextPending.key());
+                if (comparison < 0) {
+                    K key = nextCommitted.getKey();
+                    V value = visible(nextCommitted.getValue(), snapshot);
+                    nextCommitted = committed.hasNext() ? committed.next() : null;
+                    if (value != null) {
+                        return Map.entry(key, value);
+                    }
+                } else {
+                    WriteCommand<K, V> write = nextPending;
+                    if (comparison == 0) {
+                        nextCommitted = committed.hasNext() ? committed.next() : null;
+                    }
+                    nextPending = pending.hasNext() ? pending.next() : null;
+                    if (write.value() != null) {
+                        return Map.entry(write.key(), write.value());
+                    }
+                }
+            }
+            close();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package org.cache;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+
+// Eager-write transactional cache with the keyspace split into independent segments, each
+// guarded by its own read/write lock. Writes are applied immediately and logged for undo,
+// so a writer only blocks readers of its own segment. Rollback takes the segments its
+// transaction touched in ascending order, which keeps concurrent rollbacks deadlock-free.
+// Segments aren't held between writes, so another thread may overwrite a key this
+// transaction wrote; rollback then leaves that key alone instead of undoing the other write.
+class StripedTransactionCache<K, V> implements Cache<K, V>, Transactional {
+    private final Segment<K, V>[] segments;
+    private final int mask;
+    private final ThreadLocal<UndoLog<K, V>> undoLogs = ThreadLocal.withInitial(UndoLog::new);
+    // Value each key was last given by the thread's open transaction, null for a delete
+    private final ThreadLocal<Map<K, V>> ownWrites = ThreadLocal.withInitial(HashMap::new);
+
+    StripedTransactionCache() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    @SuppressWarnings("unchecked")
+    StripedTransactionCache(int segmentCount) {
+        int size = segmentCount <= 1 ? 1 : Integer.highestOneBit(segmentCount - 1) << 1; // Round up to a power of two
+        segments = (Segment<K, V>[]) new Segment<?, ?>[size];
+        for (int i = 0; i < size; i++) {
+            segments[i] = new Segment<>();
+        }
+        mask = size - 1;
+    }
+
+    @Override
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock.readLock().lock();
+        try {
+            return segment.map.get(key);
+        } finally {
+            segment.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        Segment<K, V> segment = segmentFor(key);
+        UndoLog<K, V> undoLog = undoLogs.get();
+        segment.lock.writeLock().lock();
+        try {
+            V oldValue = segment.map.put(key, value);
+            if (undoLog.isActive()) {
+                record(undoLog, key, oldValue, value);
+            }
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        UndoLog<K, V> undoLog = undoLogs.get();
+        segment.lock.writeLock().lock();
+        try {
+            V oldValue = segment.map.remove(key);
+            if (undoLog.isActive()) {
+                record(undoLog, key, oldValue, null);
+            }
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+    }
+
+    // Runs holding the key's segment, so the undo record holds exactly the value replaced
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        Segment<K, V> segment = segmentFor(key);
+        UndoLog<K, V> undoLog = undoLogs.get();
+        segment.lock.writeLock().lock();
+        try {
+            V oldValue = segment.map.get(key);
+            V value = remapping.apply(key, oldValue);
+            if (value == oldValue) {
+                return value;
+            }
+            if (value != null) {
+                segment.map.put(key, value);
+            } else {
+                segment.map.remove(key);
+            }
+            if (undoLog.isActive()) {
+                record(undoLog, key, oldValue, value);
+            }
+            return value;
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        BitSet touched = segmentsOf(keys);
+        lockAll(touched, false);
+        try {
+            Map<K, V> result = new HashMap<>();
+            for (K key : keys) {
+                V value = segmentFor(key).map.get(key);
+                if (value != null) {
+                    result.put(key, value);
+                }
+            }
+            return result;
+        } finally {
+            unlockAll(touched, false);
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        BitSet touched = segmentsOf(entries.keySet());
+        UndoLog<K, V> undoLog = undoLogs.get();
+        lockAll(touched, true);
+        try {
+            for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+                V oldValue = segmentFor(entry.getKey()).map.put(entry.getKey(), entry.getValue());
+                if (undoLog.isActive()) {
+                    record(undoLog, entry.getKey(), oldValue, entry.getValue());
+                }
+            }
+        } finally {
+            unlockAll(touched, true);
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<? extends K> keys) {
+        BitSet touched = segmentsOf(keys);
+        UndoLog<K, V> undoLog = undoLogs.get();
+        lockAll(touched, true);
+        try {
+            for (K key : keys) {
+                V oldValue = segmentFor(key).map.remove(key);
+                if (undoLog.isActive()) {
+                    record(undoLog, key, oldValue, null);
+                }
+            }
+        } finally {
+            unlockAll(touched, true);
+        }
+    }
+
+    @Override
+    public void beginTransaction() {
+        undoLogs.get().begin(); // Create a new transaction level
+    }
+
+    @Override
+    public void commitTransaction() {
+        UndoLog<K, V> undoLog = undoLogs.get();
+        if (!undoLog.isActive()) {
+            throw new IllegalStateException("No active transaction to commit");
+        }
+        // A nested level's records simply become part of its parent
+        undoLog.commit();
+        if (!undoLog.isActive()) {
+            ownWrites.get().clear();
+        }
+    }
+
+    @Override
+    public void rollbackTransaction() {
+        UndoLog<K, V> undoLog = undoLogs.get();
+        if (!undoLog.isActive()) {
+            throw new IllegalStateException("No active transaction to rollback");
+        }
+
+        // Roll back only the current transaction, holding every segment it touched
+        BitSet touched = new BitSet(segments.length);
+        undoLog.forEachKey(key -> touched.set(indexFor(key)));
+        lockAll(touched, true);
+        try {
+            undoLog.rollback(new SegmentView(ownWrites.get()), null);
+        } finally {
+            unlockAll(touched, true);
+        }
+        if (!undoLog.isActive()) {
+            ownWrites.get().clear();
+        }
+    }
+
+    @Override
+    public int transactionDepth() {
+        return undoLogs.get().depth();
+    }
+
+    @Override
+    public long transactionId() {
+        return undoLogs.get().levelId();
+    }
+
+    @Override
+    public Savepoint savepoint() {
+        UndoLog<K, V> undoLog = undoLogs.get();
+        if (!undoLog.isActive()) {
+            throw new IllegalStateException("No active transaction to savepoint");
+        }
+        return undoLog.savepoint();
+    }
+
+    @Override
+    public void rollbackTo(Savepoint savepoint) {
+        UndoLog<K, V> undoLog = undoLogs.get();
+        BitSet touched = new BitSet(segments.length);
+        undoLog.forEachKeyAfter(savepoint, key -> touched.set(indexFor(key)));
+        lockAll(touched, true);
+        try {
+            undoLog.rollbackTo(savepoint, new SegmentView(ownWrites.get()), null);
+        } finally {
+            unlockAll(touched, true);
+        }
+    }
+
+    @Override
+    public void release(Savepoint savepoint) {
+        undoLogs.get().release(savepoint);
+    }
+
+    // Caller holds the key's segment
+    private void record(UndoLog<K, V> undoLog, K key, V oldValue, V value) {
+        if (value != null) {
+            undoLog.recordPut(key, oldValue, ExpiringMap.NO_EXPIRY);
+        } else {
+            undoLog.recordDelete(key, oldValue, ExpiringMap.NO_EXPIRY);
+        }
+        ownWrites.get().put(key, value);
+    }
+
+    private int indexFor(Object key) {
+        return LockStripes.spread(key) & mask;
+    }
+
+    private Segment<K, V> segmentFor(Object key) {
+        return segments[indexFor(key)];
+    }
+
+    private BitSet segmentsOf(Collection<?> keys) {
+        BitSet touched = new BitSet(segments.length);
+        for (Object key : keys) {
+            touched.set(indexFor(key));
+        }
+        return touched;
+    }
+
+    // Segments are always locked in ascending index order
+    private void lockAll(BitSet touched, boolean exclusive) {
+        for (int i = touched.nextSetBit(0); i >= 0; i = touched.nextSetBit(i + 1)) {
+            (exclusive ? segments[i].lock.writeLock() : segments[i].lock.readLock()).lock();
+        }
+    }
+
+    private void unlockAll(BitSet touched, boolean exclusive) {
+        for (int i = touched.previousSetBit(touched.length() - 1); i >= 0; i = touched.previousSetBit(i - 1)) {
+            (exclusive ? segments[i].lock.writeLock() : segments[i].lock.readLock()).unlock();
+        }
+    }
+
+    // The segments' maps seen as one. Keyed operations go straight to the key's segment;
+    // iteration walks every segment and is only consistent with all of them locked. Given
+    // a transaction's own writes, put and remove undo them: a key another thread has
+    // written since is left as it is.
+    private final class SegmentView extends AbstractMap<K, V> {
+        private final Map<K, V> written; // Null for a plain view
+
+        SegmentView(Map<K, V> written) {
+            this.written = written;
+        }
+
+        @Override
+        public V get(Object key) {
+            return segmentFor(key).map.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return segmentFor(key).map.containsKey(key);
+        }
+
+        @Override
+        public V put(K key, V value) {
+            Map<K, V> map = segmentFor(key).map;
+            if (!isOwn(key, map)) {
+                return map.get(key);
+            }
+            if (written != null) {
+                written.put(key, value);
+            }
+            return map.put(key, value);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V remove(Object key) {
+            Map<K, V> map = segmentFor(key).map;
+            if (!isOwn(key, map)) {
+                return map.get(key);
+            }
+            if (written != null) {
+                written.put((K) key, null);
+            }
+            return map.remove(key);
+        }
+
+        // Whether the key still holds what the transaction last wrote to it
+        private boolean isOwn(Object key, Map<K, V> map) {
+            return written == null || map.get(key) == written.get(key);
+        }
+
+        @Override
+        public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+            return segmentFor(key).map.compute(key, remapping);
+        }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return Arrays.stream(segments).flatMap(segment -> segment.map.entrySet().stream()).iterator();
+                }
+
+                @Override
+                public int size() {
+                    int size = 0;
+                    for (Segment<K, V> segment : segments) {
+                        size += segment.map.size();
+                    }
+                    return size;
+                }
+            };
+        }
+    }
+
+    private static final class Segment<K, V> {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final Map<K, V> map = new HashMap<>();
+    }
+}
@@ -0,0 +1,39 @@
+package org.cache;
+
+// Transaction handle bound to the thread and the transaction level that created it. The
+// level is told apart by its id rather than its depth, so a handle whose level was ended
+// directly can't commit or roll back a later level begun at the same depth.
+final class ThreadTransaction implements Transaction {
+    private final Transactional owner;
+    private final Thread thread = Thread.currentThread();
+    private final long id;
+    private boolean completed;
+
+    ThreadTransaction(Transactional owner, long id) {
+        this.owner = owner;
+        this.id = id;
+    }
+
+    @Override
+    public void commit() {
+        checkActive();
+        completed = true;
+        owner.commitTransaction();
+    }
+
+    @Override
+    public void rollback() {
+        checkActive();
+        completed = true;
+        owner.rollbackTransaction();
+    }
+
+    private void checkActive() {
+        if (Thread.currentThread() != thread) {
+            throw new IllegalStateException("Transaction belongs to another thread");
+        }
+        if (completed || owner.transactionId() != id) {
+            throw new IllegalStateException("Transaction is no longer active");
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.cache;
+
+import java.util.function.Consumer;
+
+// Hierarchical timer wheel. Each level is a ring of buckets whose span grows from about a
+// second to days; a timer sits in the coarsest bucket that still resolves its deadline and
+// cascades to finer levels as time approaches it. Scheduling and cancelling are O(1), and
+// advancing visits only the buckets the clock has moved past. Not thread-safe.
+final class TimerWheel<K> {
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+    private static final long[] SPANS = {
+            1L << 30, // 1.07s
+            1L << 36, // 1.14m
+            1L << 42, // 1.22h
+            1L << 47, // 1.63d
+            4L << 47, // 6.5d
+            4L << 47, // 6.5d, overflow
+    };
+    private static final int[] SHIFT = new int[BUCKETS.length];
+
+    static {
+        for (int i = 0; i < BUCKETS.length; i++) {
+            SHIFT[i] = Long.numberOfTrailingZeros(SPANS[i]);
+        }
+    }
+
+    private final Timer<K>[][] wheel;
+    private long nanos;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(long nanos) {
+        this.nanos = nanos;
+        wheel = (Timer<K>[][]) new Timer<?>[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = (Timer<K>[]) new Timer<?>[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                Timer<K> sentinel = new Timer<>(null, 0); // Head of the bucket's circular list
+                sentinel.previous = sentinel;
+                sentinel.next = sentinel;
+                wheel[i][j] = sentinel;
+            }
+        }
+    }
+
+    void schedule(Timer<K> timer) {
+        Timer<K> sentinel = bucketFor(timer.deadline);
+        timer.next = sentinel;
+        timer.previous = sentinel.previous;
+        sentinel.previous.next = timer;
+        sentinel.previous = timer;
+    }
+
+    void deschedule(Timer<K> timer) {
+        if (timer.next != null) {
+            timer.previous.next = timer.next;
+            timer.next.previous = timer.previous;
+            timer.next = null;
+            timer.previous = null;
+        }
+    }
+
+    // Moves the clock forward, handing every timer whose deadline has passed to the consumer.
+    // Timers whose deadline was pushed out since they were scheduled are rescheduled instead.
+    void advance(long now, Consumer<Timer<K>> expired) {
+        long previous = nanos;
+        nanos = now;
+        for (int i = 0; i < SHIFT.length; i++) {
+            long previousTicks = previous >>> SHIFT[i];
+            long currentTicks = now >>> SHIFT[i];
+            if (currentTicks - previousTicks <= 0) {
+                break;
+            }
+            expire(i, previousTicks, currentTicks - previousTicks, expired);
+        }
+    }
+
+    private void expire(int level, long previousTicks, long delta, Consumer<Timer<K>> expired) {
+        Timer<K>[] buckets = wheel[level];
+        int mask = buckets.length - 1;
+        int steps = (int) Math.min(delta + 1, buckets.length);
+        int start = (int) (previousTicks & mask);
+        for (int i = start; i < start + steps; i++) {
+            Timer<K> sentinel = buckets[i & mask];
+            Timer<K> timer = sentinel.next;
+            sentinel.next = sentinel;
+            sentinel.previous = sentinel;
+            while (timer != sentinel) {
+                Timer<K> next = timer.next;
+                timer.next = null;
+                timer.previous = null;
+                if (timer.deadline - nanos > 0) {
+                    schedule(timer);
+                } else {
+                    expired.accept(timer);
+                }
+                timer = next;
+            }
+        }
+    }
+
+    private Timer<K> bucketFor(long deadline) {
+        long duration = deadline - nanos;
+        for (int i = 0; i < BUCKETS.length - 1; i++) {
+            if (duration < SPANS[i + 1]) {
+                long ticks = deadline >>> SHIFT[i];
+                return wheel[i][(int) (ticks & (BUCKETS[i] - 1))];
+            }
+        }
+        return wheel[BUCKETS.length - 1][0];
+    }
+
+    static final class Timer<K> {
+        final K key;
+        volatile long deadline;
+        Timer<K> previous;
+        Timer<K> next;
+
+        Timer(K key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Predicate;
+
+// W-TinyLFU: new keys enter a small LRU window; when something must go, the window's
+// oldest key competes with the main region's oldest key and the one the frequency sketch
+// has seen less often is evicted. One-hit wonders from a scan never displace hot keys.
+// The main region is a segmented LRU whose protected part holds keys hit since admission.
+class TinyLfuPolicy<K> implements EvictionPolicy<K> {
+    private final FrequencySketch sketch;
+    private final LinkedHashMap<K, Boolean> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Boolean> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Boolean> protectedKeys = new LinkedHashMap<>(16, 0.75f, true);
+    private final int windowMaximum;
+    private final int mainMaximum;
+    private final int protectedMaximum;
+
+    // The expected size should match the store's capacity in entries
+    TinyLfuPolicy(int expectedSize) {
+        sketch = new FrequencySketch(expectedSize);
+        windowMaximum = Math.max(1, expectedSize / 100);
+        mainMaximum = Math.max(1, expectedSize - windowMaximum);
+        protectedMaximum = Math.max(1, mainMaximum * 4 / 5);
+    }
+
+    @Override
+    public void recordInsert(K key) {
+        if (window.containsKey(key) || probation.containsKey(key) || protectedKeys.containsKey(key)) {
+            recordAccess(key);
+            return;
+        }
+        sketch.increment(key);
+        window.put(key, Boolean.TRUE);
+        // While the main region has room, window overflow is admitted without a contest
+        while (window.size() > windowMaximum && probation.size() + protectedKeys.size() < mainMaximum) {
+            K admitted = window.keySet().iterator().next();
+            window.remove(admitted);
+            probation.put(admitted, Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public void recordAccess(K key) {
+        if (window.get(key) != null || protectedKeys.get(key) != null) {
+            sketch.increment(key);
+        } else if (probation.remove(key) != null) {
+            sketch.increment(key);
+            protectedKeys.put(key, Boolean.TRUE);
+            if (protectedKeys.size() > protectedMaximum) {
+                K demoted = protectedKeys.keySet().iterator().next();
+                protectedKeys.remove(demoted);
+                probation.put(demoted, Boolean.TRUE);
+            }
+        }
+    }
+
+    @Override
+    public void recordRemoval(K key) {
+        if (window.remove(key) == null && probation.remove(key) == null) {
+            protectedKeys.remove(key);
+        }
+    }
+
+    @Override
+    public K evict(Predicate<? super K> evictable) {
+        K candidate = window.size() > windowMaximum ? eldest(window, evictable) : null;
+        K victim = eldest(probation, evictable);
+        if (victim == null) {
+            victim = eldest(protectedKeys, evictable);
+        }
+        if (candidate == null && victim == null) {
+            candidate = eldest(window, evictable);
+            if (candidate != null) {
+                window.remove(candidate);
+            }
+            return candidate;
+        }
+        if (candidate == null) {
+            recordRemoval(victim);
+            return victim;
+        }
+        window.remove(candidate);
+        if (victim != null && sketch.frequency(candidate) > sketch.frequency(victim)) {
+            // The candidate is admitted to the main region at the victim's expense
+            recordRemoval(victim);
+            probation.put(candidate, Boolean.TRUE);
+            return victim;
+        }
+        return candidate;
+    }
+
+    private K eldest(LinkedHashMap<K, Boolean> segment, Predicate<? super K> evictable) {
+        for (Iterator<K> it = segment.keySet().iterator(); it.hasNext(); ) {
+            K key = it.next();
+            if (evictable.test(key)) {
+                return key;
+            }
+        }
+        return null;
+    }
+}
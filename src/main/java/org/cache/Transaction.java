@@ -0,0 +1,7 @@
+package org.cache;
+
+// Handle to one level of a transaction started with Transactional.begin()
+interface Transaction {
+    void commit();
+    void rollback();
+}
@@ -0,0 +1,11 @@
+package org.cache;
+
+// Thrown when a commit loses a race with a concurrent transaction; the transaction
+// has been rolled back and can be retried from the start
+class TransactionConflictException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    TransactionConflictException(String message) {
+        super(message);
+    }
+}
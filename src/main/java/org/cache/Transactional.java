@@ -0,0 +1,35 @@
+package org.cache;
+
+// Caches whose transactions are scoped to the calling thread
+interface Transactional {
+    void beginTransaction();
+    void commitTransaction();
+    void rollbackTransaction();
+    int transactionDepth();
+
+    // Identifies the calling thread's innermost transaction level, 0 outside a transaction.
+    // Every begin gets a new one, so a level begun later at the same depth never matches.
+    long transactionId();
+
+    default Transaction begin() {
+        beginTransaction();
+        return new ThreadTransaction(this, transactionId());
+    }
+
+    // Marks the current point of the innermost transaction, so a failed step can be retried
+    // without discarding the work done before it
+    default Savepoint savepoint() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support savepoints");
+    }
+
+    // Undoes only the writes made after the savepoint, closing any nested transactions begun
+    // since. The savepoint stays usable; savepoints taken after it are released.
+    default void rollbackTo(Savepoint savepoint) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support savepoints");
+    }
+
+    // Forgets the savepoint and any taken after it, keeping their writes
+    default void release(Savepoint savepoint) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support savepoints");
+    }
+}
@@ -1,13 +1,29 @@
 package org.cache;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.Map;
-import java.util.Stack;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
 
 class TransactionalCache<K, V> implements Cache<K, V> {
-    private final Map<K, V> cache = new ConcurrentHashMap<>();
-    private final Stack<CacheCommand<K, V>> transactionStack = new Stack<>();
-    private boolean inTransaction = false; // Flag to track active transactions
+    private final Map<K, V> cache;
+    private final PinnableStore<K> pins; // Set when the store can evict entries on its own
+    private final ExpiringMap<K, V> expiring; // Set when the store supports per-entry TTLs
+    private final UndoLog<K, V> undoLog = new UndoLog<>();
+
+    TransactionalCache() {
+        this(new ConcurrentHashMap<>());
+    }
+
+    // The store must be thread-safe, e.g. a BoundedMap or an ExpiringMap
+    @SuppressWarnings("unchecked")
+    TransactionalCache(Map<K, V> store) {
+        cache = store;
+        pins = store instanceof PinnableStore ? (PinnableStore<K>) store : null;
+        expiring = store instanceof ExpiringMap ? (ExpiringMap<K, V>) store : null;
+    }
 
     @Override
     public V get(K key) {
@@ -16,45 +32,121 @@ class TransactionalCache<K, V> implements Cache<K, V> {
 
     @Override
     public void put(K key, V value) {
-        if (inTransaction) {
-            V oldValue = cache.get(key);
-            transactionStack.push(new PutCommand<>(key, value, oldValue));
+        if (undoLog.isActive()) {
+            pin(key);
+            undoLog.recordPut(key, cache.get(key), ExpiringMap.expiryOf(cache, key));
         }
         cache.put(key, value);
     }
 
+    @Override
+    public boolean supportsExpiration() {
+        return expiring != null;
+    }
+
+    @Override
+    public void put(K key, V value, Duration ttl) {
+        if (expiring == null) {
+            throw new UnsupportedOperationException("Per-entry expiration requires an ExpiringMap store");
+        }
+        if (undoLog.isActive()) {
+            pin(key);
+            undoLog.recordPut(key, cache.get(key), ExpiringMap.expiryOf(cache, key));
+        }
+        expiring.put(key, value, ttl);
+    }
+
     @Override
     public void delete(K key) {
-        if (inTransaction) {
-            V oldValue = cache.get(key);
-            transactionStack.push(new DeleteCommand<>(key, oldValue));
+        if (undoLog.isActive()) {
+            pin(key);
+            undoLog.recordDelete(key, cache.get(key), ExpiringMap.expiryOf(cache, key));
         }
         cache.remove(key);
     }
 
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        if (!undoLog.isActive()) {
+            cache.putAll(entries);
+            return;
+        }
+        for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            K key = entry.getKey();
+            pin(key);
+            long oldExpiry = ExpiringMap.expiryOf(cache, key);
+            undoLog.recordPut(key, cache.put(key, entry.getValue()), oldExpiry);
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<? extends K> keys) {
+        if (!undoLog.isActive()) {
+            keys.forEach(cache::remove);
+            return;
+        }
+        for (K key : keys) {
+            pin(key);
+            long oldExpiry = ExpiringMap.expiryOf(cache, key);
+            undoLog.recordDelete(key, cache.remove(key), oldExpiry);
+        }
+    }
+
+    // Runs in the store's bin for the key, so the undo record holds exactly the value the
+    // update replaced. Needs a ConcurrentMap store, the only kind that updates a key
+    // atomically; such a store never evicts or expires, so there is nothing to pin.
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        if (!(cache instanceof ConcurrentMap)) {
+            throw new UnsupportedOperationException("Atomic updates require a ConcurrentMap store");
+        }
+        Object[] replaced = new Object[1];
+        boolean[] changed = new boolean[1];
+        V value = cache.compute(key, (k, old) -> {
+            V computed = remapping.apply(k, old);
+            replaced[0] = old;
+            changed[0] = computed != old;
+            return computed;
+        });
+        if (changed[0] && undoLog.isActive()) {
+            @SuppressWarnings("unchecked")
+            V oldValue = (V) replaced[0];
+            if (value != null) {
+                undoLog.recordPut(key, oldValue, ExpiringMap.NO_EXPIRY);
+            } else {
+                undoLog.recordDelete(key, oldValue, ExpiringMap.NO_EXPIRY);
+            }
+        }
+        return value;
+    }
+
     public void beginTransaction() {
-        if (inTransaction) {
+        if (undoLog.isActive()) {
             throw new IllegalStateException("A transaction is already in progress");
         }
-        inTransaction = true;
-        transactionStack.clear();
+        undoLog.begin();
     }
 
     public void commitTransaction() {
-        if (!inTransaction) {
+        if (!undoLog.isActive()) {
             throw new IllegalStateException("No active transaction to commit");
         }
-        inTransaction = false;
-        transactionStack.clear(); // Clear rollback history since we are committing
+        if (pins != null) {
+            undoLog.forEachKey(pins::unpin);
+        }
+        undoLog.commit(); // Clear rollback history since we are committing
     }
 
     public void rollbackTransaction() {
-        if (!inTransaction) {
+        if (!undoLog.isActive()) {
             throw new IllegalStateException("No active transaction to rollback");
         }
-        while (!transactionStack.isEmpty()) {
-            transactionStack.pop().undo(cache);
+        undoLog.rollback(cache, pins != null ? pins::unpin : null);
+    }
+
+    private void pin(K key) {
+        if (pins != null) {
+            pins.pin(key);
         }
-        inTransaction = false;
     }
 }
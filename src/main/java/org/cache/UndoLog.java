@@ -0,0 +1,233 @@
+package org.cache;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Undo records of one owner's open transaction levels, kept as (opcode, key, old value,
+// old expiry) entries in fixed-size array chunks instead of one command object per write.
+// All levels share the log, each starting where its parent's records end, so committing a
+// nested level is O(1): it just forgets where the level started. Rollback walks the level's
+// suffix newest first, and a savepoint is just an offset into the log, so rolling back to
+// one costs only the writes made after it. Counter deltas are undone by subtracting them
+// from whatever the counter holds by then, so other threads' deltas survive the rollback.
+// Emptied chunks are kept for reuse, up to a few per log. Not thread-safe.
+final class UndoLog<K, V> {
+    private static final int CHUNK_SHIFT = 8;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int SPARE_CHUNKS = 4;
+    private static final byte PUT = 0;
+    private static final byte DELETE = 1;
+    private static final byte DELTA = 2;
+    private static final byte DELTA_CREATED = 3; // The delta inserted the counter
+
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final Deque<Chunk> spares = new ArrayDeque<>();
+    private int size;
+    private int[] levelStarts = new int[4];
+    private int depth;
+    private long[] levelIds = new long[4];
+    private long begins;
+    private final List<Mark> savepoints = new ArrayList<>(); // Oldest first
+
+    void begin() {
+        if (depth == levelStarts.length) {
+            levelStarts = Arrays.copyOf(levelStarts, depth * 2);
+            levelIds = Arrays.copyOf(levelIds, depth * 2);
+        }
+        levelIds[depth] = ++begins;
+        levelStarts[depth++] = size;
+    }
+
+    boolean isActive() {
+        return depth > 0;
+    }
+
+    int depth() {
+        return depth;
+    }
+
+    // Identifies the innermost level, 0 with none open; every begin gets a new one
+    long levelId() {
+        return depth > 0 ? levelIds[depth - 1] : 0;
+    }
+
+    // Records across all open levels
+    int size() {
+        return size;
+    }
+
+    // The write replaced oldValue, or inserted the key if oldValue is null
+    void recordPut(K key, V oldValue, long oldExpiry) {
+        append(PUT, key, oldValue, oldExpiry);
+    }
+
+    void recordDelete(K key, V oldValue, long oldExpiry) {
+        append(DELETE, key, oldValue, oldExpiry);
+    }
+
+    // The delta was added to a Long counter, inserting it if created; the delta takes the
+    // old expiry's slot, since counters never expire
+    void recordDelta(K key, long delta, boolean created) {
+        append(created ? DELTA_CREATED : DELTA, key, null, delta);
+    }
+
+    // Keys written by the innermost level, oldest first
+    @SuppressWarnings("unchecked")
+    void forEachKey(Consumer<? super K> action) {
+        for (int i = levelStarts[depth - 1]; i < size; i++) {
+            action.accept((K) chunk(i).keys[i & (CHUNK_SIZE - 1)]);
+        }
+    }
+
+    // Keys written after the savepoint, oldest first
+    @SuppressWarnings("unchecked")
+    void forEachKeyAfter(Savepoint savepoint, Consumer<? super K> action) {
+        for (int i = check(savepoint).position; i < size; i++) {
+            action.accept((K) chunk(i).keys[i & (CHUNK_SIZE - 1)]);
+        }
+    }
+
+    // Closes the innermost level; its records now belong to the parent, if there is one,
+    // and its savepoints are released
+    void commit() {
+        depth--;
+        if (depth == 0) {
+            truncate(0);
+        }
+        releaseDeeperThan(depth);
+    }
+
+    // Undoes the innermost level's writes newest first, then closes it. afterUndo, if not
+    // null, sees each key once its record has been applied.
+    void rollback(Map<K, V> cache, Consumer<? super K> afterUndo) {
+        undo(levelStarts[--depth], cache, afterUndo);
+        releaseDeeperThan(depth);
+    }
+
+    Savepoint savepoint() {
+        Mark mark = new Mark(depth, size);
+        savepoints.add(mark);
+        return mark;
+    }
+
+    // Undoes the writes made after the savepoint and closes the levels begun since
+    void rollbackTo(Savepoint savepoint, Map<K, V> cache, Consumer<? super K> afterUndo) {
+        Mark mark = check(savepoint);
+        undo(mark.position, cache, afterUndo);
+        depth = mark.depth;
+        savepoints.subList(savepoints.indexOf(mark) + 1, savepoints.size()).clear();
+    }
+
+    void release(Savepoint savepoint) {
+        Mark mark = check(savepoint);
+        savepoints.subList(savepoints.indexOf(mark), savepoints.size()).clear();
+    }
+
+    private Mark check(Savepoint savepoint) {
+        if (!(savepoint instanceof Mark mark) || !savepoints.contains(mark)) {
+            throw new IllegalStateException("Savepoint is no longer active");
+        }
+        return mark;
+    }
+
+    private void releaseDeeperThan(int level) {
+        while (!savepoints.isEmpty() && savepoints.get(savepoints.size() - 1).depth > level) {
+            savepoints.remove(savepoints.size() - 1);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void undo(int start, Map<K, V> cache, Consumer<? super K> afterUndo) {
+        for (int i = size - 1; i >= start; i--) {
+            Chunk chunk = chunk(i);
+            int offset = i & (CHUNK_SIZE - 1);
+            K key = (K) chunk.keys[offset];
+            V oldValue = (V) chunk.oldValues[offset];
+            byte opcode = chunk.opcodes[offset];
+            if (opcode >= DELTA) {
+                undoDelta(cache, key, chunk.oldExpiries[offset], opcode == DELTA_CREATED);
+            } else if (opcode == PUT || oldValue != null) {
+                // Like DeleteCommand, deleting an absent key leaves nothing to restore
+                ExpiringMap.restore(cache, key, oldValue, chunk.oldExpiries[offset]);
+            }
+            if (afterUndo != null) {
+                afterUndo.accept(key);
+            }
+        }
+        truncate(start);
+    }
+
+    // A counter the delta created goes away again if taking the delta back leaves it at 0
+    @SuppressWarnings("unchecked")
+    static <K, V> void undoDelta(Map<K, V> cache, K key, long delta, boolean created) {
+        cache.compute(key, (k, old) -> {
+            long value = Math.subtractExact(old != null ? (Long) old : 0L, delta);
+            return value == 0 && created ? null : (V) Long.valueOf(value);
+        });
+    }
+
+    private void append(byte opcode, K key, V oldValue, long oldExpiry) {
+        int offset = size & (CHUNK_SIZE - 1);
+        if (offset == 0 && size >> CHUNK_SHIFT == chunks.size()) {
+            Chunk spare = spares.poll();
+            chunks.add(spare != null ? spare : new Chunk());
+        }
+        Chunk chunk = chunk(size);
+        chunk.opcodes[offset] = opcode;
+        chunk.keys[offset] = key;
+        chunk.oldValues[offset] = oldValue;
+        chunk.oldExpiries[offset] = oldExpiry;
+        size++;
+    }
+
+    private Chunk chunk(int index) {
+        return chunks.get(index >> CHUNK_SHIFT);
+    }
+
+    // Drops the records from newSize on, clearing their references and recycling emptied chunks
+    private void truncate(int newSize) {
+        int keptChunks = (newSize + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+        for (int i = chunks.size() - 1; i >= keptChunks; i--) {
+            Chunk chunk = chunks.remove(i);
+            chunk.clear(0, Math.min(CHUNK_SIZE, size - (i << CHUNK_SHIFT)));
+            if (spares.size() < SPARE_CHUNKS) {
+                spares.push(chunk);
+            }
+        }
+        if (keptChunks > 0 && newSize < size) {
+            int offset = newSize & (CHUNK_SIZE - 1);
+            if (offset != 0) {
+                chunks.get(keptChunks - 1).clear(offset, Math.min(CHUNK_SIZE, size - ((keptChunks - 1) << CHUNK_SHIFT)));
+            }
+        }
+        size = newSize;
+    }
+
+    // Savepoints compare by identity, so two taken at the same offset stay distinct
+    private static final class Mark implements Savepoint {
+        final int depth;
+        final int position;
+
+        Mark(int depth, int position) {
+            this.depth = depth;
+            this.position = position;
+        }
+    }
+
+    private static final class Chunk {
+        final byte[] opcodes = new byte[CHUNK_SIZE];
+        final Object[] keys = new Object[CHUNK_SIZE];
+        final Object[] oldValues = new Object[CHUNK_SIZE];
+        final long[] oldExpiries = new long[CHUNK_SIZE];
+
+        void clear(int from, int to) {
+            Arrays.fill(keys, from, to, null);
+            Arrays.fill(oldValues, from, to, null);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.cache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// AsyncCache over any thread-scoped transactional cache, running each call on its own
+// virtual thread. Transactions stay thread-scoped: a whole inTransaction body runs on one
+// virtual thread. The engines block only on java.util.concurrent locks and futures, which
+// park a virtual thread and free its carrier, so in-flight calls cost a small heap object
+// each rather than a platform thread.
+final class VirtualThreadAsyncCache<K, V> implements AsyncCache<K, V>, AutoCloseable {
+    private final Cache<K, V> cache;
+    private final Transactional transactions;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+
+    <C extends Cache<K, V> & Transactional> VirtualThreadAsyncCache(C cache) {
+        this(cache, cache, newVirtualThreadExecutor(), true);
+    }
+
+    // Runs calls on the given executor, which the caller keeps ownership of
+    <C extends Cache<K, V> & Transactional> VirtualThreadAsyncCache(C cache, ExecutorService executor) {
+        this(cache, cache, executor, false);
+    }
+
+    private VirtualThreadAsyncCache(Cache<K, V> cache, Transactional transactions, ExecutorService executor,
+                                    boolean ownsExecutor) {
+        this.cache = cache;
+        this.transactions = transactions;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    @Override
+    public CompletableFuture<V> get(K key) {
+        return CompletableFuture.supplyAsync(() -> cache.get(key), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> put(K key, V value) {
+        return CompletableFuture.runAsync(() -> cache.put(key, value), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(K key) {
+        return CompletableFuture.runAsync(() -> cache.delete(key), executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<K, V>> getAll(Collection<? extends K> keys) {
+        return CompletableFuture.supplyAsync(() -> cache.getAll(keys), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> putAll(Map<? extends K, ? extends V> entries) {
+        return CompletableFuture.runAsync(() -> cache.putAll(entries), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAll(Collection<? extends K> keys) {
+        return CompletableFuture.runAsync(() -> cache.deleteAll(keys), executor);
+    }
+
+    @Override
+    public <R> CompletableFuture<R> inTransaction(Function<? super Cache<K, V>, ? extends R> body) {
+        return CompletableFuture.supplyAsync(() -> {
+            Transaction transaction = transactions.begin();
+            R result;
+            try {
+                result = body.apply(cache);
+            } catch (RuntimeException | Error e) {
+                transaction.rollback();
+                throw e;
+            }
+            transaction.commit();
+            return result;
+        }, executor);
+    }
+
+    // Waits for calls already submitted, then stops the executor if this cache created it
+    @Override
+    public void close() {
+        if (!ownsExecutor) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Keep waiting; calls in flight still hold their callers' futures
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Virtual threads arrived in Java 21; on older runtimes calls fall back to a cached pool
+    // of daemon platform threads, which works the same but costs a thread per in-flight call
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "async-cache");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
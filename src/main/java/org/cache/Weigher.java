@@ -0,0 +1,11 @@
+package org.cache;
+
+// Computes the relative size of an entry for weight-bounded stores
+@FunctionalInterface
+interface Weigher<K, V> {
+    int weigh(K key, V value);
+
+    static <K, V> Weigher<K, V> singleton() {
+        return (key, value) -> 1;
+    }
+}
@@ -0,0 +1,355 @@
+package org.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+// Append-only log of committed write-sets. Each record is a WriteSetCodec record holding
+// one commit's puts and deletes under a sequence number, 1, 2, 3 ... in append order.
+// Committers hand their record to a single group-commit thread, which writes every record
+// queued so far and covers the whole batch with one fsync, so concurrent committers share
+// the disk latency. The log is a directory of segment files named after the first sequence
+// they hold; rolling to a new segment lets a checkpoint drop the ones it covers. On open, a
+// torn or corrupt tail left by a crash is cut off. A failed write or fsync cuts off the
+// batch's partial bytes and fails the log for good: after a failed fsync the file's state
+// is unknown, so every later append is rejected rather than written behind a possible gap.
+final class WriteAheadLog<K, V> implements Closeable {
+    private static final int HEADER_BYTES = WriteSetCodec.HEADER_BYTES;
+    private static final String SUFFIX = ".wal";
+    private static final Pending CLOSE = new Pending(0, null, null);
+
+    private final Path directory;
+    private final WriteSetCodec<K, V> codec;
+    private final TreeMap<Long, Path> segments = new TreeMap<>(); // First sequence -> file; guarded by itself
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    // Orders sequences with queue entries; a lock rather than a monitor, so a virtual thread
+    // waiting to append parks instead of pinning its carrier
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Thread groupCommitter;
+    private FileChannel active; // Only the group-commit thread writes once it has started
+    private long lastSequence; // Guarded by appendLock
+    private volatile boolean closed;
+    private volatile UncheckedIOException failure; // Set once a write or fsync has failed
+
+    // Keys and values must be Serializable
+    WriteAheadLog(Path directory) {
+        this(directory, Serializer.java(), Serializer.java());
+    }
+
+    WriteAheadLog(Path directory, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this.directory = directory;
+        this.codec = new WriteSetCodec<>(keySerializer, valueSerializer);
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                        .forEach(file -> segments.put(firstSequenceOf(file), file));
+            }
+            if (segments.isEmpty()) {
+                segments.put(1L, segmentPath(1));
+            }
+            Map.Entry<Long, Path> last = segments.lastEntry();
+            active = FileChannel.open(last.getValue(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            forceDirectory(directory); // The segment may be new
+            lastSequence = last.getKey() - 1;
+            long length = scan(active, (sequence, payload) -> lastSequence = sequence);
+            active.truncate(length);
+            active.position(length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open write-ahead log " + directory, e);
+        }
+        groupCommitter = new Thread(this::runGroupCommits, "wal-group-commit");
+        groupCommitter.setDaemon(true);
+        groupCommitter.start();
+    }
+
+    // Sequence of the newest record appended, or recovered on open
+    long lastSequence() {
+        appendLock.lock();
+        try {
+            return lastSequence;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    void replay(Map<K, V> store) {
+        replay(0, (sequence, writes) -> writes.forEach(command -> command.execute(store)));
+    }
+
+    // Hands every intact record newer than the sequence to the consumer, oldest first
+    void replay(long afterSequence, BiConsumer<Long, List<WriteCommand<K, V>>> consumer) {
+        List<Path> files;
+        synchronized (segments) {
+            Long first = segments.floorKey(afterSequence + 1);
+            files = new ArrayList<>(segments.tailMap(first != null ? first : 0, true).values());
+        }
+        for (Path file : files) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                scan(channel, (sequence, payload) -> {
+                    if (sequence > afterSequence) {
+                        consumer.accept(sequence, codec.decode(payload));
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot replay write-ahead log segment " + file, e);
+            }
+        }
+    }
+
+    // Queues one commit's writes under the next sequence. Records reach the file in the order
+    // append is called, so callers that need the log to match their apply order append under
+    // their own lock. The future completes once the record has been fsynced.
+    CompletableFuture<Void> append(Collection<? extends WriteCommand<K, V>> writes) {
+        appendLock.lock();
+        try {
+            checkOpen();
+            long sequence = ++lastSequence;
+            Pending pending = new Pending(sequence, codec.encode(sequence, writes), new CompletableFuture<>());
+            queue.add(pending);
+            return pending.done;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Starts a new segment for the records after those already appended, and waits for it
+    void roll() {
+        Pending roll;
+        appendLock.lock();
+        try {
+            checkOpen();
+            roll = new Pending(lastSequence + 1, null, new CompletableFuture<>());
+            queue.add(roll);
+        } finally {
+            appendLock.unlock();
+        }
+        roll.done.join();
+    }
+
+    // Deletes the segments that hold no record newer than the sequence; the active one stays
+    void deleteThrough(long sequence) {
+        synchronized (segments) {
+            while (segments.size() > 1) {
+                Map.Entry<Long, Path> oldest = segments.firstEntry();
+                if (segments.higherKey(oldest.getKey()) > sequence + 1) {
+                    return;
+                }
+                try {
+                    Files.deleteIfExists(oldest.getValue());
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot delete write-ahead log segment " + oldest.getValue(), e);
+                }
+                segments.pollFirstEntry();
+            }
+        }
+    }
+
+    // Caller holds appendLock
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log failed earlier and accepts no more writes", failure.getCause());
+        }
+    }
+
+    // Waits for a future returned by append, rethrowing a failed write as is; null is a no-op
+    static void await(CompletableFuture<Void> durable) {
+        if (durable == null) {
+            return;
+        }
+        try {
+            durable.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(CLOSE);
+        } finally {
+            appendLock.unlock();
+        }
+        try {
+            groupCommitter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        active.close();
+    }
+
+    private void runGroupCommits() {
+        List<Pending> batch = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue; // Only close() stops the committer, and never by interrupting it
+            }
+            queue.drainTo(batch);
+            int start = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                Pending pending = batch.get(i);
+                if (pending == CLOSE) {
+                    running = false;
+                } else if (pending.record == null) {
+                    flush(batch.subList(start, i));
+                    rollActive(pending);
+                    start = i + 1;
+                }
+            }
+            flush(batch.subList(start, batch.size()).stream().filter(pending -> pending != CLOSE).toList());
+            batch.clear();
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (failure != null) {
+            batch.forEach(pending -> pending.done.completeExceptionally(failure));
+            return;
+        }
+        long start = -1;
+        try {
+            start = active.position();
+            ByteBuffer[] records = new ByteBuffer[batch.size()];
+            for (int i = 0; i < records.length; i++) {
+                records[i] = batch.get(i).record;
+            }
+            while (records[records.length - 1].hasRemaining()) {
+                active.write(records);
+            }
+            active.force(false);
+            batch.forEach(pending -> pending.done.complete(null));
+        } catch (IOException e) {
+            // Drop the batch's partial bytes so recovery still reaches every earlier record
+            if (start >= 0) {
+                try {
+                    active.truncate(start);
+                    active.position(start);
+                } catch (IOException truncation) {
+                    e.addSuppressed(truncation);
+                }
+            }
+            failure = new UncheckedIOException("Cannot write to write-ahead log", e);
+            batch.forEach(pending -> pending.done.completeExceptionally(failure));
+        }
+    }
+
+    private void rollActive(Pending roll) {
+        if (failure != null) {
+            roll.done.completeExceptionally(failure);
+            return;
+        }
+        try {
+            Path file = segmentPath(roll.sequence);
+            FileChannel next = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                forceDirectory(directory);
+            } catch (IOException e) {
+                next.close();
+                throw e;
+            }
+            active.close();
+            active = next;
+            synchronized (segments) {
+                segments.put(roll.sequence, file);
+            }
+            roll.done.complete(null);
+        } catch (IOException e) {
+            roll.done.completeExceptionally(new UncheckedIOException("Cannot roll write-ahead log", e));
+        }
+    }
+
+    // Makes the directory's entries durable, so a file created or renamed in it survives a
+    // crash along with the data already forced into it
+    static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private Path segmentPath(long firstSequence) {
+        return directory.resolve(String.format("%020d", firstSequence) + SUFFIX);
+    }
+
+    private static long firstSequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    // Visits the intact records of a segment and returns the length they cover
+    private static long scan(FileChannel channel, BiConsumer<Long, ByteBuffer> visitor) throws IOException {
+        long position = 0;
+        long size = channel.size();
+        while (position + HEADER_BYTES <= size) {
+            ByteBuffer payload = readRecord(channel, position, size);
+            if (payload == null) {
+                break;
+            }
+            visitor.accept(payload.getLong(), payload);
+            position += HEADER_BYTES + payload.capacity();
+        }
+        return position;
+    }
+
+    // Payload of the record at the position, or null if it is incomplete or fails its checksum
+    private static ByteBuffer readRecord(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        if (!readFully(channel, header, position)) {
+            return null;
+        }
+        int length = header.getInt(0);
+        int checksum = header.getInt(4);
+        if (length < Long.BYTES || position + HEADER_BYTES + length > size) {
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        if (!readFully(channel, payload, position + HEADER_BYTES) || WriteSetCodec.checksum(payload.array(), 0, length) != checksum) {
+            return null;
+        }
+        return payload.flip();
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // A record to write, or a request to roll to a new segment starting at the sequence
+    private record Pending(long sequence, ByteBuffer record, CompletableFuture<Void> done) {
+    }
+}
@@ -0,0 +1,19 @@
+package org.cache;
+
+import java.util.function.Consumer;
+
+// Command that writes a single key
+interface WriteCommand<K, V> extends CacheCommand<K, V> {
+    K key();
+    V value(); // Value the key holds after execute, null for a delete
+
+    // Command leaving the key holding the value, or absent if it is null
+    static <K, V> WriteCommand<K, V> of(K key, V value) {
+        return value != null ? new PutCommand<>(key, value, null) : new DeleteCommand<>(key, null);
+    }
+
+    @Override
+    default void forEachKey(Consumer<? super K> action) {
+        action.accept(key());
+    }
+}
@@ -0,0 +1,153 @@
+package org.cache;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+// Buffered writes of one thread's transaction: one hashed layer per nesting level,
+// holding only the newest pending command for each key. A savepoint is an extra layer on
+// top of its transaction level, so rolling back to it just drops the layers above it.
+final class WriteSet<K, V> {
+    private final Deque<Layer<K, V>> layers = new ArrayDeque<>();
+    private int depth; // Transaction levels, not counting savepoint layers
+    private long[] levelIds = new long[4];
+    private long begins;
+
+    void begin() {
+        layers.push(new Layer<>(true));
+        if (depth == levelIds.length) {
+            levelIds = Arrays.copyOf(levelIds, depth * 2);
+        }
+        levelIds[depth++] = ++begins;
+    }
+
+    boolean isActive() {
+        return depth > 0;
+    }
+
+    int depth() {
+        return depth;
+    }
+
+    // Identifies the innermost level, 0 with none open; every begin gets a new one
+    long levelId() {
+        return depth > 0 ? levelIds[depth - 1] : 0;
+    }
+
+    // Newest pending command for the key across all levels, or null if the transaction never wrote it
+    WriteCommand<K, V> lookup(K key) {
+        for (Layer<K, V> layer : layers) {
+            WriteCommand<K, V> command = layer.writes.get(key);
+            if (command != null) {
+                return command;
+            }
+        }
+        return null;
+    }
+
+    // Newest pending command for every key the transaction wrote
+    Map<K, WriteCommand<K, V>> pending() {
+        Map<K, WriteCommand<K, V>> pending = new HashMap<>();
+        for (Iterator<Layer<K, V>> below = layers.descendingIterator(); below.hasNext(); ) {
+            pending.putAll(below.next().writes); // Oldest level first, so newer writes win
+        }
+        return pending;
+    }
+
+    void record(WriteCommand<K, V> command) {
+        layers.peek().writes.put(command.key(), command);
+    }
+
+    // Closes the innermost level, releasing its savepoints. Returns its writes if it was
+    // the outermost level, otherwise folds them into the parent and returns null.
+    Map<K, WriteCommand<K, V>> commit() {
+        Layer<K, V> completed = layers.pop();
+        while (!completed.transaction) {
+            completed.active = false;
+            Layer<K, V> below = layers.pop();
+            below.absorb(completed);
+            completed = below;
+        }
+        depth--;
+        Layer<K, V> parent = layers.peek();
+        if (parent == null) {
+            return completed.writes;
+        }
+        parent.absorb(completed);
+        return null;
+    }
+
+    void rollback() {
+        Layer<K, V> discarded;
+        do {
+            discarded = layers.pop();
+            discarded.active = false;
+        } while (!discarded.transaction);
+        depth--;
+    }
+
+    Savepoint savepoint() {
+        Layer<K, V> layer = new Layer<>(false);
+        layers.push(layer);
+        return layer;
+    }
+
+    // Discards the writes made after the savepoint and closes the levels begun since
+    void rollbackTo(Savepoint savepoint) {
+        Layer<K, V> target = check(savepoint);
+        while (layers.peek() != target) {
+            Layer<K, V> discarded = layers.pop();
+            discarded.active = false;
+            if (discarded.transaction) {
+                depth--;
+            }
+        }
+        target.writes = new HashMap<>();
+    }
+
+    // The released layers stay in place until their transaction level closes
+    void release(Savepoint savepoint) {
+        Layer<K, V> target = check(savepoint);
+        for (Layer<K, V> layer : layers) {
+            if (!layer.transaction) {
+                layer.active = false;
+            }
+            if (layer == target) {
+                return;
+            }
+        }
+    }
+
+    private Layer<K, V> check(Savepoint savepoint) {
+        if (!(savepoint instanceof Layer<?, ?> layer) || !layer.active || !layers.contains(layer)) {
+            throw new IllegalStateException("Savepoint is no longer active");
+        }
+        @SuppressWarnings("unchecked")
+        Layer<K, V> target = (Layer<K, V>) layer;
+        return target;
+    }
+
+    private static final class Layer<K, V> implements Savepoint {
+        final boolean transaction; // False for a savepoint layer
+        boolean active = true; // A savepoint layer can still be rolled back to
+        Map<K, WriteCommand<K, V>> writes = new HashMap<>();
+
+        Layer(boolean transaction) {
+            this.transaction = transaction;
+        }
+
+        // Takes in a layer above this one; its writes win. The smaller map is merged into
+        // the larger one.
+        void absorb(Layer<K, V> above) {
+            if (above.writes.size() >= writes.size()) {
+                writes.forEach(above.writes::putIfAbsent);
+                writes = above.writes;
+            } else {
+                writes.putAll(above.writes);
+            }
+        }
+    }
+}
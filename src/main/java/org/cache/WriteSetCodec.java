@@ -0,0 +1,90 @@
+package org.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+// Binary form of one committed write-set, shared by the write-ahead log and replication.
+// A record is [length][crc32c][payload], and the payload is [sequence][count] then per write
+// [key length][key][value length, -1 for a delete][value].
+final class WriteSetCodec<K, V> {
+    static final int HEADER_BYTES = 8;
+
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+
+    WriteSetCodec(Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+    }
+
+    // The whole record, positioned at its start
+    ByteBuffer encode(long sequence, Collection<? extends WriteCommand<K, V>> writes) {
+        List<byte[]> fields = new ArrayList<>(writes.size() * 2);
+        int length = Long.BYTES + Integer.BYTES;
+        for (WriteCommand<K, V> command : writes) {
+            byte[] key = keySerializer.serialize(command.key());
+            byte[] value = command.value() != null ? valueSerializer.serialize(command.value()) : null;
+            fields.add(key);
+            fields.add(value);
+            length += Integer.BYTES * 2 + key.length + (value != null ? value.length : 0);
+        }
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + length);
+        record.position(HEADER_BYTES);
+        record.putLong(sequence).putInt(writes.size());
+        for (byte[] field : fields) {
+            if (field == null) {
+                record.putInt(-1);
+            } else {
+                record.putInt(field.length).put(field);
+            }
+        }
+        record.putInt(0, length).putInt(4, checksum(record.array(), HEADER_BYTES, length));
+        return record.flip();
+    }
+
+    // Expects the payload positioned just past the sequence
+    List<WriteCommand<K, V>> decode(ByteBuffer payload) {
+        int count = payload.getInt();
+        List<WriteCommand<K, V>> commands = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            K key = keySerializer.deserialize(field(payload, payload.getInt()));
+            int valueLength = payload.getInt();
+            if (valueLength < 0) {
+                commands.add(new DeleteCommand<>(key, null));
+            } else {
+                commands.add(new PutCommand<>(key, valueSerializer.deserialize(field(payload, valueLength)), null));
+            }
+        }
+        return commands;
+    }
+
+    // Payload of a whole record held in memory, or null if it is truncated or fails its checksum
+    static ByteBuffer payloadOf(ByteBuffer record) {
+        if (record.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int length = record.getInt(record.position());
+        int checksum = record.getInt(record.position() + 4);
+        if (length < Long.BYTES || record.remaining() - HEADER_BYTES < length) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        record.get(record.position() + HEADER_BYTES, payload);
+        return checksum(payload, 0, length) == checksum ? ByteBuffer.wrap(payload) : null;
+    }
+
+    static int checksum(byte[] bytes, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static ByteBuffer field(ByteBuffer payload, int length) {
+        ByteBuffer field = payload.slice(payload.position(), length);
+        payload.position(payload.position() + length);
+        return field;
+    }
+}
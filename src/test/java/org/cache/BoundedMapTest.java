@@ -0,0 +1,97 @@
+package org.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedMapTest {
+
+    @Test
+    void testLruEvictsLeastRecentlyUsed() {
+        BoundedMap<String, Integer> map = new BoundedMap<>(2, EvictionPolicy.lru());
+        map.put("a", 1);
+        map.put("b", 2);
+        map.get("a");
+        map.put("c", 3);
+
+        assertEquals(2, map.size());
+        assertEquals(1, map.get("a"));
+        assertNull(map.get("b"), "The least recently used entry should be evicted");
+        assertEquals(3, map.get("c"));
+    }
+
+    @Test
+    void testLfuEvictsLeastFrequentlyUsed() {
+        BoundedMap<String, Integer> map = new BoundedMap<>(2, EvictionPolicy.lfu());
+        map.put("a", 1);
+        map.put("b", 2);
+        map.get("a");
+        map.get("a");
+        map.get("b");
+        map.put("c", 3);
+
+        assertEquals(1, map.get("a"), "The most frequently used entry should survive");
+        assertNull(map.get("b"));
+        map.put("d", 4);
+
+        assertNull(map.get("c"));
+        assertEquals(4, map.get("d"));
+    }
+
+    @Test
+    void testTinyLfuResistsScans() {
+        BoundedMap<Integer, Integer> map = new BoundedMap<>(100, EvictionPolicy.tinyLfu(100));
+        for (int round = 0; round < 5; round++) {
+            for (int hot = 0; hot < 50; hot++) {
+                if (map.get(hot) == null) {
+                    map.put(hot, hot);
+                }
+            }
+        }
+        for (int cold = 1000; cold < 11000; cold++) {
+            map.put(cold, cold); // One-hit wonders
+        }
+
+        int hotSurvivors = 0;
+        for (int hot = 0; hot < 50; hot++) {
+            if (map.containsKey(hot)) {
+                hotSurvivors++;
+            }
+        }
+        assertEquals(100, map.size());
+        assertTrue(hotSurvivors >= 45, "Hot keys should survive a scan, but only " + hotSurvivors + " did");
+    }
+
+    @Test
+    void testWeightBound() {
+        BoundedMap<String, String> map = new BoundedMap<>(10, (key, value) -> value.length(), EvictionPolicy.lru());
+        map.put("a", "12345");
+        map.put("b", "1234");
+        map.put("c", "123");
+
+        assertNull(map.get("a"));
+        assertEquals(7, map.weight());
+
+        map.put("b", "1");
+        assertEquals(4, map.weight(), "Replacing a value should adjust the weight");
+        map.remove("c");
+        assertEquals(1, map.weight());
+    }
+
+    @Test
+    void testPinnedKeysAreNotEvicted() {
+        BoundedMap<String, Integer> map = new BoundedMap<>(1, EvictionPolicy.lru());
+        map.put("a", 1);
+        map.pin("a");
+        map.put("b", 2);
+        map.put("c", 3);
+
+        assertTrue(map.containsKey("a"));
+        assertFalse(map.containsKey("b"));
+        assertEquals(2, map.size(), "Only unpinned entries can be evicted");
+
+        map.unpin("a");
+        assertEquals(1, map.size(), "Unpinning should catch up on pending evictions");
+        assertFalse(map.containsKey("a"));
+    }
+}
@@ -0,0 +1,97 @@
+package org.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheMetricsTest {
+
+    @Test
+    void testPerpexilityTransactionCountsOperations() {
+        CacheMetrics metrics = new CacheMetrics();
+        PerpexilityTransaction<String, Integer> cache = new PerpexilityTransaction<>(new ConcurrentHashMap<>(), null, metrics);
+
+        cache.put("key1", 1);
+        cache.get("key1");
+        cache.get("missing");
+        cache.beginTransaction();
+        cache.beginTransaction();
+        cache.putAll(Map.of("key2", 2, "key3", 3));
+        cache.delete("key1");
+        cache.commitTransaction();
+        cache.commitTransaction();
+        cache.beginTransaction();
+        cache.rollbackTransaction();
+        cache.getAll(List.of("key1", "key2"));
+
+        CacheMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.hits());
+        assertEquals(2, snapshot.misses());
+        assertEquals(0.5, snapshot.hitRatio());
+        assertEquals(3, snapshot.puts());
+        assertEquals(1, snapshot.deletes());
+        assertEquals(3, snapshot.transactionsBegun());
+        assertEquals(2, snapshot.transactionsCommitted());
+        assertEquals(1, snapshot.transactionsRolledBack());
+        assertEquals(1, snapshot.transactionSizes().count(), "Only the outermost commit has a size");
+        assertEquals(3, snapshot.transactionSizes().max());
+        assertEquals(2, snapshot.nestingDepths().max());
+        assertTrue(snapshot.lockWaitNanos().count() > 0);
+    }
+
+    @Test
+    void testNestedTransactionCacheRecordsUndoLogLength() {
+        CacheMetrics metrics = new CacheMetrics();
+        NestedTransactionCache<String, Integer> cache = new NestedTransactionCache<>(new ConcurrentHashMap<>(), metrics);
+
+        cache.beginTransaction();
+        cache.put("key1", 1);
+        cache.put("key1", 2);
+        cache.commitTransaction();
+        cache.beginTransaction();
+        cache.delete("key1");
+        cache.rollbackTransaction();
+
+        CacheMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.undoLogLengths().count());
+        assertEquals(2, snapshot.undoLogLengths().max());
+        assertEquals(1.5, snapshot.undoLogLengths().mean());
+    }
+
+    @Test
+    void testHistogramPercentilesUseBucketUpperBounds() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100, snapshot.count());
+        assertEquals(5050, snapshot.sum());
+        assertEquals(63, snapshot.percentile(50));
+        assertEquals(100, snapshot.percentile(99), "The top bucket is capped at the maximum");
+    }
+
+    @Test
+    void testMetricsAreReadableOverJmx() throws Exception {
+        CacheMetrics metrics = new CacheMetrics();
+        metrics.recordLookups(3, 1);
+        metrics.register("test-cache");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("org.cache:type=CacheMetrics,name=\"test-cache\"");
+            assertEquals(3L, server.getAttribute(name, "Hits"));
+            assertEquals(0.75, server.getAttribute(name, "HitRatio"));
+            server.invoke(name, "reset", null, null);
+            assertEquals(0, metrics.getHits());
+        } finally {
+            metrics.unregister();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeFeedTest {
+
+    // Requests everything up front and queues what it receives
+    private static final class Collector<K, V> implements Flow.Subscriber<ChangeEvent<K, V>> {
+        final BlockingQueue<ChangeEvent<K, V>> events = new LinkedBlockingQueue<>();
+        final CompletableFuture<Void> completed = new CompletableFuture<>();
+        final long initialDemand;
+        Flow.Subscription subscription;
+
+        Collector(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialDemand > 0) {
+                subscription.request(initialDemand);
+            }
+        }
+
+        @Override
+        public void onNext(ChangeEvent<K, V> item) {
+            events.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            completed.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completed.complete(null);
+        }
+
+        ChangeEvent<K, V> next() throws InterruptedException {
+            ChangeEvent<K, V> event = events.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event, "Timed out waiting for a change event");
+            return event;
+        }
+    }
+
+    private static <K, V> Map<K, V> netWrites(ChangeEvent<K, V> event) {
+        Map<K, V> writes = new HashMap<>();
+        event.writes().forEach(write -> writes.put(write.key(), write.value()));
+        return writes;
+    }
+
+    @Test
+    void testCommittedTransactionsArePublishedInOrder() throws Exception {
+        PerpexilityTransaction<String, Integer> cache = new PerpexilityTransaction<>();
+        Collector<String, Integer> collector = new Collector<>(Long.MAX_VALUE);
+        cache.changes().subscribe(collector);
+
+        cache.put("key1", 1);
+
+        cache.beginTransaction();
+        cache.put("key2", 2);
+        cache.put("key2", 20);
+        cache.delete("key1");
+        cache.commitTransaction();
+
+        cache.beginTransaction();
+        cache.put("key3", 3);
+        cache.rollbackTransaction();
+
+        cache.deleteAll(List.of("key2", "key2"));
+
+        ChangeEvent<String, Integer> first = collector.next();
+        assertEquals(Map.of("key1", 1), netWrites(first));
+
+        ChangeEvent<String, Integer> second = collector.next();
+        assertEquals(2, second.writes().size(), "Redundant writes to a key are collapsed");
+        Map<String, Integer> expected = new HashMap<>();
+        expected.put("key2", 20);
+        expected.put("key1", null);
+        assertEquals(expected, netWrites(second));
+
+        ChangeEvent<String, Integer> third = collector.next();
+        assertEquals(1, third.writes().size());
+        assertNull(third.writes().get(0).value());
+        assertTrue(second.sequence() > first.sequence() && third.sequence() > second.sequence());
+        assertNull(collector.events.poll(100, TimeUnit.MILLISECONDS), "Rolled back transactions never appear");
+    }
+
+    @Test
+    void testFullRingHoldsBackPublisherUntilDemand() throws Exception {
+        ChangeFeed<String, Integer> feed = new ChangeFeed<>(4, Runnable::run);
+        Collector<String, Integer> collector = new Collector<>(0);
+        feed.subscribe(collector);
+
+        Thread publisher = new Thread(() -> {
+            for (int i = 0; i < 6; i++) {
+                feed.publish(feed.claim(), List.of(new PutCommand<>("key", i, null)));
+            }
+        });
+        publisher.start();
+        publisher.join(200);
+        assertTrue(publisher.isAlive(), "The fifth event must wait for a free slot");
+
+        collector.subscription.request(Long.MAX_VALUE);
+        publisher.join(5000);
+        assertFalse(publisher.isAlive());
+
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            values.add(collector.next().writes().get(0).value());
+        }
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), values);
+    }
+
+    @Test
+    void testUnwatchedFeedClaimsNothingAndCloseCompletesSubscribers() throws Exception {
+        ChangeFeed<String, Integer> feed = new ChangeFeed<>(4, Runnable::run);
+        assertEquals(ChangeFeed.UNCLAIMED, feed.claim());
+
+        Collector<String, Integer> collector = new Collector<>(1);
+        feed.subscribe(collector);
+        long sequence = feed.claim();
+        feed.close();
+        assertFalse(collector.completed.isDone(), "Claimed events are delivered before completion");
+
+        feed.publish(sequence, List.of(new DeleteCommand<>("key", null)));
+        collector.subscription.request(1);
+        assertEquals(sequence, collector.next().sequence());
+        collector.completed.get(5, TimeUnit.SECONDS);
+    }
+}
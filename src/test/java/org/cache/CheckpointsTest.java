@@ -0,0 +1,37 @@
+package org.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointsTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testLoadReturnsNewestCheckpoint() throws Exception {
+        Checkpoints<String, Integer> checkpoints = new Checkpoints<>(directory, Serializer.strings(), Serializer.integers());
+        checkpoints.write(5, Map.of("key1", 1, "key2", 2).entrySet());
+        checkpoints.write(9, Map.of("key1", 10).entrySet());
+
+        Map<String, Integer> loaded = new HashMap<>();
+        assertEquals(9, checkpoints.load(loaded::put));
+        assertEquals(Map.of("key1", 10), loaded);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count(), "Older checkpoints should be deleted once a newer one is installed");
+        }
+    }
+
+    @Test
+    void testLoadWithoutCheckpoint() {
+        Checkpoints<String, Integer> checkpoints = new Checkpoints<>(directory);
+        assertEquals(0, checkpoints.load((key, value) -> fail("No entries expected")));
+    }
+}
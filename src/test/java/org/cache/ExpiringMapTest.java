@@ -0,0 +1,128 @@
+package org.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiringMapTest {
+    private final AtomicLong ticker = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        ticker.set(0);
+    }
+
+    private void advance(Duration duration) {
+        ticker.addAndGet(duration.toNanos());
+    }
+
+    @Test
+    void testExpireAfterWrite() {
+        ExpiringMap<String, String> map = new ExpiringMap<>(new ConcurrentHashMap<>(), Duration.ofSeconds(10), null, ticker::get);
+        map.put("key1", "value1");
+
+        advance(Duration.ofSeconds(9));
+        assertEquals("value1", map.get("key1"));
+        advance(Duration.ofSeconds(1));
+        assertNull(map.get("key1"), "Entries must not be readable once their deadline has passed");
+    }
+
+    @Test
+    void testPerEntryTtlOverridesPolicy() {
+        ExpiringMap<String, String> map = new ExpiringMap<>(new ConcurrentHashMap<>(), Duration.ofMinutes(10), null, ticker::get);
+        map.put("short", "value", Duration.ofSeconds(1));
+        map.put("long", "value");
+
+        advance(Duration.ofSeconds(2));
+        assertNull(map.get("short"));
+        assertEquals("value", map.get("long"));
+    }
+
+    @Test
+    void testExpireAfterAccessIsExtendedByReads() {
+        ExpiringMap<String, String> map = new ExpiringMap<>(new ConcurrentHashMap<>(), null, Duration.ofSeconds(10), ticker::get);
+        map.put("key1", "value1");
+
+        for (int i = 0; i < 5; i++) {
+            advance(Duration.ofSeconds(8));
+            assertEquals("value1", map.get("key1"));
+        }
+        advance(Duration.ofSeconds(10));
+        assertNull(map.get("key1"));
+    }
+
+    @Test
+    void testWheelReclaimsExpiredEntriesAcrossLevels() {
+        ExpiringMap<Integer, Integer> map = new ExpiringMap<>(new ConcurrentHashMap<>(), null, null, ticker::get);
+        for (int i = 0; i < 1000; i++) {
+            map.put(i, i, Duration.ofSeconds(1 + i * 37L)); // From a second to about ten hours
+        }
+
+        advance(Duration.ofMinutes(30));
+        map.cleanUp();
+        assertEquals(1000 - 49, map.size(), "Entries with a ttl of up to 30 minutes should be reclaimed");
+
+        advance(Duration.ofHours(12));
+        map.cleanUp();
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void testSizeAndIterationSkipExpiredEntriesBeforeAnyWrite() {
+        ExpiringMap<String, String> map = new ExpiringMap<>(new ConcurrentHashMap<>(), null, null, ticker::get);
+        map.put("short", "value", Duration.ofSeconds(1));
+        map.put("long", "value", Duration.ofHours(1));
+        map.put("forever", "value");
+
+        advance(Duration.ofSeconds(2)); // No write since, so the wheel hasn't run
+        assertEquals(2, map.size());
+        assertEquals(Set.of("long", "forever"), map.keySet());
+        assertEquals(Map.of("long", "value", "forever", "value"), Map.copyOf(map));
+    }
+
+    @Test
+    void testRemoveCancelsTimer() {
+        ExpiringMap<String, String> map = new ExpiringMap<>(new ConcurrentHashMap<>(), Duration.ofSeconds(1), null, ticker::get);
+        map.put("key1", "value1");
+        map.remove("key1");
+        map.put("key1", "value2", Duration.ofHours(1));
+
+        advance(Duration.ofSeconds(5));
+        map.cleanUp();
+        assertEquals("value2", map.get("key1"), "A cancelled timer must not expire the new entry");
+    }
+
+    @Test
+    void testRollbackRestoresRemainingTtl() {
+        ExpiringMap<String, String> store = new ExpiringMap<>(new ConcurrentHashMap<>(), null, null, ticker::get);
+        NestedTransactionCache<String, String> cache = new NestedTransactionCache<>(store);
+        cache.put("key1", "original", Duration.ofSeconds(10));
+        cache.put("key2", "original", Duration.ofSeconds(10));
+
+        advance(Duration.ofSeconds(4));
+        cache.beginTransaction();
+        cache.put("key1", "updated");
+        cache.delete("key2");
+        cache.rollbackTransaction();
+
+        advance(Duration.ofSeconds(5));
+        assertEquals("original", cache.get("key1"));
+        assertEquals("original", cache.get("key2"));
+        advance(Duration.ofSeconds(1));
+        assertNull(cache.get("key1"), "The restored entry should keep its original deadline");
+        assertNull(cache.get("key2"));
+    }
+
+    @Test
+    void testPerEntryTtlRequiresExpiringStore() {
+        NestedTransactionCache<String, String> cache = new NestedTransactionCache<>();
+        assertThrows(UnsupportedOperationException.class, () -> cache.put("key1", "value1", Duration.ofSeconds(1)));
+    }
+}
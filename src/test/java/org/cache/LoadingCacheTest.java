@@ -0,0 +1,251 @@
+package org.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadingCacheTest {
+    private final Map<String, Integer> backingStore = new ConcurrentHashMap<>(Map.of("key1", 1, "key2", 2, "key3", 3));
+    private final AtomicInteger loads = new AtomicInteger();
+    private final CacheLoader<String, Integer> loader = key -> {
+        loads.incrementAndGet();
+        return backingStore.get(key);
+    };
+
+    @Test
+    void testMissLoadsAndCachesValue() {
+        LoadingCache<String, Integer> cache = new LoadingCache<>(new NestedTransactionCache<>(), loader);
+
+        assertEquals(1, cache.get("key1"));
+        assertEquals(1, cache.get("key1"));
+        assertEquals(1, loads.get(), "The second read should hit the cache");
+
+        assertNull(cache.get("missing"));
+        assertNull(cache.get("missing"));
+        assertEquals(3, loads.get(), "Absent keys are not cached");
+    }
+
+    @Test
+    void testConcurrentMissesShareOneLoad() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger slowLoads = new AtomicInteger();
+        LoadingCache<String, Integer> cache = new LoadingCache<>(new NestedTransactionCache<>(), key -> {
+            slowLoads.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 42;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.get("hot")));
+            }
+            Thread.sleep(100); // Let every caller miss while the first load is blocked
+            release.countDown();
+            for (Future<Integer> result : results) {
+                assertEquals(42, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, slowLoads.get());
+    }
+
+    @Test
+    void testGetAllUsesBulkLoaderForMissesOnly() {
+        List<Collection<? extends String>> batches = new ArrayList<>();
+        CacheLoader<String, Integer> bulkLoader = new CacheLoader<>() {
+            @Override
+            public Integer load(String key) {
+                throw new AssertionError("Single-key load should not be used");
+            }
+
+            @Override
+            public Map<String, Integer> loadAll(Collection<? extends String> keys) {
+                batches.add(List.copyOf(keys));
+                Map<String, Integer> result = new HashMap<>();
+                keys.forEach(key -> {
+                    if (backingStore.containsKey(key)) {
+                        result.put(key, backingStore.get(key));
+                    }
+                });
+                return result;
+            }
+        };
+        LoadingCache<String, Integer> cache = new LoadingCache<>(new PerpexilityTransaction<>(), bulkLoader);
+        cache.put("key1", 10);
+
+        assertEquals(Map.of("key1", 10, "key2", 2, "key3", 3), cache.getAll(List.of("key1", "key2", "key3", "missing")));
+        assertEquals(List.of(List.of("key2", "key3", "missing")), batches);
+    }
+
+    @Test
+    void testLoadInsideTransactionIsRolledBack() {
+        NestedTransactionCache<String, Integer> engine = new NestedTransactionCache<>();
+        LoadingCache<String, Integer> cache = new LoadingCache<>(engine, loader);
+
+        cache.beginTransaction();
+        assertEquals(1, cache.get("key1"));
+        cache.rollbackTransaction();
+
+        assertNull(engine.get("key1"), "The loaded value was one of the transaction's writes");
+        assertEquals(1, cache.get("key1"));
+        assertEquals(1, engine.get("key1"));
+    }
+
+    @Test
+    void testLoaderFailurePropagatesAndIsRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+        LoadingCache<String, Integer> cache = new LoadingCache<>(new NestedTransactionCache<>(), key -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("Backing store unavailable");
+            }
+            return 7;
+        });
+
+        assertThrows(IllegalStateException.class, () -> cache.get("key1"));
+        assertEquals(7, cache.get("key1"));
+    }
+
+    @Test
+    void testStaleValueIsRefreshedInBackground() {
+        AtomicLong now = new AtomicLong();
+        List<Runnable> refreshes = new ArrayList<>();
+        LoadingCache<String, Integer> cache = new LoadingCache<>(new NestedTransactionCache<>(new ExpiringMap<>(
+                new ConcurrentHashMap<>(), null, null, now::get)), loader, Duration.ofSeconds(10), Duration.ofSeconds(8),
+                refreshes::add, now::get);
+
+        assertEquals(1, cache.get("key1"));
+        backingStore.put("key1", 100);
+
+        now.set(Duration.ofSeconds(5).toNanos());
+        assertEquals(1, cache.get("key1"));
+        assertTrue(refreshes.isEmpty(), "Fresh values are not reloaded");
+
+        now.set(Duration.ofSeconds(9).toNanos());
+        assertEquals(1, cache.get("key1"), "The stale value is served while the refresh runs");
+        assertEquals(1, cache.get("key1"));
+        assertEquals(1, refreshes.size(), "Only one refresh is in flight per key");
+
+        refreshes.get(0).run();
+        assertEquals(100, cache.get("key1"));
+
+        now.set(Duration.ofSeconds(30).toNanos());
+        backingStore.put("key1", 200);
+        assertEquals(200, cache.get("key1"), "Expired values are loaded again on read");
+    }
+
+    @Test
+    void testFailedInstallReleasesTheRestOfTheBatch() throws Exception {
+        NestedTransactionCache<String, Integer> store = new NestedTransactionCache<>() {
+            @Override
+            public void put(String key, Integer value) {
+                if (key.equals("key2")) {
+                    throw new IllegalStateException("Store rejected the write");
+                }
+                super.put(key, value);
+            }
+        };
+        LoadingCache<String, Integer> cache = new LoadingCache<>(store, loader);
+
+        assertThrows(IllegalStateException.class, () -> cache.getAll(List.of("key1", "key2", "key3")));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> reload = executor.submit(() -> cache.get("key3"));
+            assertEquals(3, reload.get(5, TimeUnit.SECONDS), "A failed batch must not leave loads in flight");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testLoadAllReturningNullFailsEveryLoad() throws Exception {
+        CacheLoader<String, Integer> broken = new CacheLoader<>() {
+            @Override
+            public Integer load(String key) {
+                return backingStore.get(key);
+            }
+
+            @Override
+            public Map<String, Integer> loadAll(Collection<? extends String> keys) {
+                return null;
+            }
+        };
+        LoadingCache<String, Integer> cache = new LoadingCache<>(new NestedTransactionCache<>(), broken);
+
+        assertThrows(NullPointerException.class, () -> cache.getAll(List.of("key1", "key2")));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> reload = executor.submit(() -> cache.get("key1"));
+            assertEquals(1, reload.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testTtlNeedsACacheWithPerEntryExpiration() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new LoadingCache<>(new NestedTransactionCache<String, Integer>(), loader, Duration.ofSeconds(10), null));
+        assertThrows(IllegalArgumentException.class,
+                () -> new LoadingCache<>(new PerpexilityTransaction<String, Integer>(), loader, Duration.ofSeconds(10), null));
+    }
+
+    @Test
+    void testWriteDuringInstallIsNotOverwritten() throws Exception {
+        CountDownLatch installing = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        NestedTransactionCache<String, Integer> store = new NestedTransactionCache<>() {
+            @Override
+            public void put(String key, Integer value) {
+                if (value == 1) { // The loaded value; hold its install open
+                    installing.countDown();
+                    try {
+                        resume.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                super.put(key, value);
+            }
+        };
+        LoadingCache<String, Integer> cache = new LoadingCache<>(store, loader);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> load = executor.submit(() -> cache.get("key1"));
+            assertTrue(installing.await(5, TimeUnit.SECONDS));
+            Future<?> write = executor.submit(() -> cache.put("key1", 10));
+            Thread.sleep(100); // Give the write the chance to slip in before the install ends
+            resume.countDown();
+
+            assertEquals(1, load.get(5, TimeUnit.SECONDS));
+            write.get(5, TimeUnit.SECONDS);
+            assertEquals(10, cache.get("key1"), "The write came after the load and must win");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
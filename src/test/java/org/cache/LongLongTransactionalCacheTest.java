@@ -0,0 +1,146 @@
+package org.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongLongTransactionalCacheTest {
+    private LongLongTransactionalCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new LongLongTransactionalCache(-1);
+    }
+
+    @Test
+    void testBasicOperations() {
+        cache.put(42, 100);
+        assertEquals(100, cache.get(42));
+        assertTrue(cache.containsKey(42));
+
+        cache.delete(42);
+        assertEquals(-1, cache.get(42), "Missing keys should read as the absent value");
+        assertNull(cache.get(Long.valueOf(42)), "The boxed view should report missing keys as null");
+    }
+
+    @Test
+    void testZeroAndNegativeKeys() {
+        cache.put(0, 1);
+        cache.put(-5, 2);
+        assertEquals(1, cache.get(0));
+        assertEquals(2, cache.get(-5));
+
+        cache.delete(0);
+        assertFalse(cache.containsKey(0));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testTableGrowsAndKeepsEveryKey() {
+        for (long i = 1; i <= 100_000; i++) {
+            cache.put(i, i * 2);
+        }
+        for (long i = 1; i <= 100_000; i += 2) {
+            cache.delete(i);
+        }
+        assertEquals(50_000, cache.size());
+        for (long i = 1; i <= 100_000; i++) {
+            assertEquals(i % 2 == 0 ? i * 2 : -1, cache.get(i));
+        }
+    }
+
+    @Test
+    void testNestedRollbackUndoesOnlyInnerLevel() {
+        cache.put(1, 10);
+
+        cache.beginTransaction();
+        cache.put(1, 20);
+        cache.beginTransaction();
+        cache.put(1, 30);
+        cache.delete(1);
+        cache.put(2, 40);
+        cache.rollbackTransaction();
+        assertEquals(20, cache.get(1));
+        assertFalse(cache.containsKey(2));
+
+        cache.rollbackTransaction();
+        assertEquals(10, cache.get(1));
+        assertEquals(0, cache.transactionDepth());
+    }
+
+    @Test
+    void testNestedCommitFoldsIntoParent() {
+        cache.beginTransaction();
+        cache.beginTransaction();
+        cache.put(1, 10);
+        cache.commitTransaction();
+        cache.rollbackTransaction();
+
+        assertFalse(cache.containsKey(1), "Rolling back the parent should undo its committed child");
+    }
+
+    @Test
+    void testExceptionOnInvalidCommit() {
+        Exception exception = assertThrows(IllegalStateException.class, cache::commitTransaction);
+        assertEquals("No active transaction to commit", exception.getMessage());
+    }
+
+    @Test
+    void testRollbackToSavepointKeepsEarlierWrites() {
+        cache.beginTransaction();
+        cache.put(1, 10);
+        Savepoint savepoint = cache.savepoint();
+        cache.put(1, 20);
+        cache.put(2, 20);
+
+        cache.beginTransaction();
+        cache.delete(1);
+        cache.rollbackTo(savepoint); // Also closes the nested level begun after the savepoint
+
+        assertEquals(1, cache.transactionDepth());
+        assertEquals(10, cache.get(1));
+        assertFalse(cache.containsKey(2));
+
+        cache.put(2, 30);
+        cache.rollbackTo(savepoint); // The savepoint stays usable
+        assertFalse(cache.containsKey(2));
+
+        cache.commitTransaction();
+        assertEquals(10, cache.get(1));
+        assertThrows(IllegalStateException.class, () -> cache.rollbackTo(savepoint));
+    }
+
+    @Test
+    void testReleasedSavepointKeepsItsWrites() {
+        cache.beginTransaction();
+        Savepoint first = cache.savepoint();
+        cache.put(1, 10);
+        Savepoint second = cache.savepoint();
+        cache.put(2, 20);
+
+        cache.release(first);
+        assertThrows(IllegalStateException.class, () -> cache.rollbackTo(second), "Later savepoints go with it");
+        assertEquals(20, cache.get(2));
+
+        cache.rollbackTransaction();
+        assertFalse(cache.containsKey(1));
+        assertFalse(cache.containsKey(2));
+    }
+
+    @Test
+    void testAtomicUpdatesAreUndoneByRollback() {
+        cache.put(1, 10);
+
+        cache.beginTransaction();
+        assertEquals(15, cache.merge(1L, 5L, Long::sum));
+        assertEquals(1, cache.merge(2L, 1L, Long::sum));
+        assertNull(cache.compute(1L, (key, old) -> null));
+        cache.rollbackTransaction();
+
+        assertEquals(10, cache.get(1));
+        assertFalse(cache.containsKey(2));
+        assertTrue(cache.replace(1L, 10L, 20L));
+        assertEquals(20, cache.get(1));
+    }
+}
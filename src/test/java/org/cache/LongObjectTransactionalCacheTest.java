@@ -0,0 +1,98 @@
+package org.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongObjectTransactionalCacheTest {
+    private LongObjectTransactionalCache<byte[]> cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new LongObjectTransactionalCache<>();
+    }
+
+    @Test
+    void testBasicOperations() {
+        byte[] value = {1, 2, 3};
+        cache.put(7, value);
+        assertSame(value, cache.get(7));
+
+        cache.delete(7);
+        assertNull(cache.get(7));
+    }
+
+    @Test
+    void testRollbackRestoresReplacedAndDeletedValues() {
+        byte[] first = {1};
+        byte[] second = {2};
+        cache.put(1, first);
+        cache.put(2, second);
+
+        cache.beginTransaction();
+        cache.put(1, new byte[]{10});
+        cache.delete(2);
+        cache.put(3, new byte[]{30});
+        cache.rollbackTransaction();
+
+        assertSame(first, cache.get(1));
+        assertSame(second, cache.get(2));
+        assertNull(cache.get(3));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testRejectsNullValues() {
+        assertThrows(NullPointerException.class, () -> cache.put(1, null));
+    }
+
+    @Test
+    void testBoxedCacheView() {
+        Cache<Long, byte[]> boxed = cache;
+        byte[] value = {1};
+        boxed.putAll(Map.of(1L, value));
+        assertEquals(Map.of(1L, value), boxed.getAll(List.of(1L, 2L)));
+    }
+
+    @Test
+    void testRollbackToSavepointKeepsEarlierWrites() {
+        byte[] before = {1};
+        cache.beginTransaction();
+        cache.put(1, before);
+        Savepoint savepoint = cache.savepoint();
+        cache.put(1, new byte[]{2});
+        cache.put(2, new byte[]{2});
+
+        cache.beginTransaction();
+        cache.delete(1);
+        cache.rollbackTo(savepoint); // Also closes the nested level begun after the savepoint
+
+        assertEquals(1, cache.transactionDepth());
+        assertSame(before, cache.get(1));
+        assertNull(cache.get(2));
+
+        cache.commitTransaction();
+        assertSame(before, cache.get(1));
+        assertThrows(IllegalStateException.class, () -> cache.rollbackTo(savepoint));
+    }
+
+    @Test
+    void testAtomicUpdatesAreUndoneByRollback() {
+        byte[] first = {1};
+        cache.put(1, first);
+
+        cache.beginTransaction();
+        assertSame(first, cache.putIfAbsent(1L, new byte[]{2}));
+        assertNull(cache.putIfAbsent(2L, new byte[]{2}));
+        assertNull(cache.compute(1L, (key, old) -> null));
+        cache.rollbackTransaction();
+
+        assertSame(first, cache.get(1));
+        assertNull(cache.get(2));
+        assertEquals(1, cache.size());
+    }
+}
@@ -0,0 +1,251 @@
+package org.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MvccCacheTest {
+    private MvccCache<String, Integer> cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new MvccCache<>();
+    }
+
+    @Test
+    void testBasicOperations() {
+        cache.put("key1", 100);
+        assertEquals(100, cache.get("key1"));
+
+        cache.delete("key1");
+        assertNull(cache.get("key1"));
+    }
+
+    @Test
+    void testTransactionSeesItsOwnWritesAndCommitsThem() {
+        cache.beginTransaction();
+        cache.put("key1", 100);
+        cache.put("key1", 200);
+        assertEquals(200, cache.get("key1"));
+        cache.commitTransaction();
+
+        assertEquals(200, cache.get("key1"));
+    }
+
+    @Test
+    void testRollbackDiscardsWrites() {
+        cache.put("key1", 100);
+
+        cache.beginTransaction();
+        cache.put("key1", 200);
+        cache.beginTransaction();
+        cache.delete("key1");
+        assertNull(cache.get("key1"));
+        cache.rollbackTransaction();
+        assertEquals(200, cache.get("key1"), "Only the inner level should be rolled back");
+        cache.rollbackTransaction();
+
+        assertEquals(100, cache.get("key1"));
+    }
+
+    @Test
+    void testReaderKeepsItsSnapshot() throws Exception {
+        cache.put("key1", 100);
+
+        cache.beginTransaction();
+        assertEquals(100, cache.get("key1"));
+
+        runOnOtherThread(() -> {
+            cache.put("key1", 200);
+            cache.put("key2", 300);
+        });
+
+        assertEquals(100, cache.get("key1"), "Concurrent commits must not leak into the snapshot");
+        assertNull(cache.get("key2"));
+        cache.commitTransaction();
+
+        assertEquals(200, cache.get("key1"));
+        assertEquals(300, cache.get("key2"));
+    }
+
+    @Test
+    void testFirstCommitterWins() throws Exception {
+        cache.put("key1", 100);
+
+        cache.beginTransaction();
+        cache.put("key1", 200);
+
+        runOnOtherThread(() -> {
+            cache.beginTransaction();
+            cache.put("key1", 300);
+            cache.commitTransaction();
+        });
+
+        assertThrows(TransactionConflictException.class, cache::commitTransaction);
+        assertEquals(0, cache.transactionDepth());
+        assertEquals(300, cache.get("key1"));
+    }
+
+    @Test
+    void testDisjointTransactionsDoNotConflict() throws Exception {
+        cache.beginTransaction();
+        cache.put("key1", 100);
+
+        runOnOtherThread(() -> {
+            cache.beginTransaction();
+            cache.put("key2", 200);
+            cache.commitTransaction();
+        });
+
+        cache.commitTransaction();
+        assertEquals(100, cache.get("key1"));
+        assertEquals(200, cache.get("key2"));
+    }
+
+    @Test
+    void testOldVersionsAreReclaimedOnceNoSnapshotNeedsThem() throws Exception {
+        cache.put("key1", 100);
+        cache.put("key1", 200);
+        assertEquals(1, cache.versionCount("key1"));
+
+        cache.beginTransaction();
+        runOnOtherThread(() -> cache.put("key1", 300));
+        assertEquals(2, cache.versionCount("key1"), "The open snapshot still needs the old version");
+        assertEquals(200, cache.get("key1"));
+        cache.commitTransaction();
+
+        cache.put("key1", 400);
+        assertEquals(1, cache.versionCount("key1"));
+
+        cache.delete("key1");
+        assertEquals(0, cache.versionCount("key1"), "A tombstone nobody can see past is dropped");
+    }
+
+    @Test
+    void testVersionsOfKeysNeverWrittenAgainAreReclaimedOnRelease() throws Exception {
+        cache.put("key1", 100);
+        cache.put("key2", 100);
+
+        cache.beginTransaction();
+        assertEquals(100, cache.get("key1"));
+        runOnOtherThread(() -> {
+            cache.put("key1", 200);
+            cache.delete("key2");
+        });
+        assertEquals(2, cache.versionCount("key1"));
+        assertEquals(2, cache.versionCount("key2"));
+        cache.rollbackTransaction();
+
+        assertEquals(1, cache.versionCount("key1"), "Releasing the last old snapshot trims the chain");
+        assertEquals(0, cache.versionCount("key2"), "and drops the tombstone");
+    }
+
+    private void runOnOtherThread(Runnable task) throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> future = executor.submit(task);
+            future.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testPutAllIsOneCommit() throws Exception {
+        cache.beginTransaction();
+        assertTrue(cache.getAll(List.of("key1", "key2")).isEmpty());
+
+        runOnOtherThread(() -> cache.putAll(Map.of("key1", 1, "key2", 2)));
+
+        assertTrue(cache.getAll(List.of("key1", "key2")).isEmpty(), "The batch must not leak into the snapshot");
+        cache.rollbackTransaction();
+        assertEquals(Map.of("key1", 1, "key2", 2), cache.getAll(List.of("key1", "key2")));
+
+        cache.deleteAll(List.of("key1", "key2"));
+        assertTrue(cache.getAll(List.of("key1", "key2")).isEmpty());
+    }
+
+    @Test
+    void testRecoversFromCheckpointAndLogTail(@TempDir Path directory) throws Exception {
+        Path logDirectory = directory.resolve("wal");
+        Checkpoints<String, Integer> checkpoints = new Checkpoints<>(directory.resolve("checkpoints"),
+                Serializer.strings(), Serializer.integers());
+        try (WriteAheadLog<String, Integer> log = new WriteAheadLog<>(logDirectory, Serializer.strings(), Serializer.integers())) {
+            MvccCache<String, Integer> durable = new MvccCache<>(checkpoints, log);
+            durable.put("key1", 1);
+            durable.put("key2", 2);
+            durable.checkpoint();
+            durable.beginTransaction();
+            durable.put("key1", 10);
+            durable.delete("key2");
+            durable.commitTransaction();
+        }
+
+        try (WriteAheadLog<String, Integer> log = new WriteAheadLog<>(logDirectory, Serializer.strings(), Serializer.integers())) {
+            MvccCache<String, Integer> restarted = new MvccCache<>(checkpoints, log);
+            assertEquals(10, restarted.get("key1"));
+            assertNull(restarted.get("key2"));
+
+            // Commit timestamps carry on from the recovered log
+            restarted.put("key3", 3);
+            assertEquals(4, log.lastSequence());
+        }
+    }
+
+    @Test
+    void testCheckpointsNeedALog(@TempDir Path directory) {
+        Checkpoints<String, Integer> checkpoints = new Checkpoints<>(directory, Serializer.strings(), Serializer.integers());
+        assertThrows(IllegalArgumentException.class, () -> new MvccCache<>(checkpoints, null));
+        assertThrows(IllegalArgumentException.class, () -> new SortedCache<>(null, checkpoints, null));
+    }
+
+    @Test
+    void testAtomicUpdates() throws Exception {
+        assertNull(cache.putIfAbsent("key1", 1));
+        assertEquals(1, cache.putIfAbsent("key1", 2));
+        assertTrue(cache.replace("key1", 1, 10));
+        assertEquals(15, cache.merge("key1", 5, Integer::sum));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        cache.merge("counter", 1, Integer::sum);
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(2000, cache.get("counter"));
+    }
+
+    @Test
+    void testUpdateInsideTransactionIsValidatedAtCommit() throws Exception {
+        cache.put("key1", 1);
+
+        cache.beginTransaction();
+        assertEquals(2, cache.merge("key1", 1, Integer::sum));
+        assertEquals(2, cache.get("key1"), "Sees its own pending update");
+        runOnOtherThread(() -> assertEquals(1, cache.get("key1")));
+        runOnOtherThread(() -> cache.merge("key1", 100, Integer::sum));
+
+        assertThrows(TransactionConflictException.class, cache::commitTransaction);
+        assertEquals(101, cache.get("key1"));
+    }
+}
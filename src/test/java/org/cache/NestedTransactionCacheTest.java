@@ -2,6 +2,14 @@ package org.cache;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class NestedTransactionCacheTest {
@@ -82,4 +90,214 @@ class NestedTransactionCacheTest {
         cache.commitTransaction(); // Outer commit
     }
 
+    @Test
+    void testRollbackDoesNotUndoOtherThreadsWrites() throws InterruptedException {
+        cache.beginTransaction();
+        cache.put("key1", "mine");
+
+        Thread other = new Thread(() -> {
+            cache.beginTransaction();
+            cache.put("key2", "theirs");
+            cache.commitTransaction();
+        });
+        other.start();
+        other.join();
+
+        cache.rollbackTransaction();
+
+        assertNull(cache.get("key1"), "Rollback should revert this thread's writes");
+        assertEquals("theirs", cache.get("key2"), "Rollback should not touch another thread's commit");
+    }
+
+    @Test
+    void testTransactionHandleIsBoundToItsThread() throws InterruptedException {
+        Transaction transaction = cache.begin();
+        cache.put("key1", "value1");
+
+        Exception[] failure = new Exception[1];
+        Thread other = new Thread(() -> {
+            try {
+                transaction.commit();
+            } catch (Exception e) {
+                failure[0] = e;
+            }
+        });
+        other.start();
+        other.join();
+
+        assertInstanceOf(IllegalStateException.class, failure[0]);
+        transaction.rollback();
+        assertNull(cache.get("key1"));
+        assertEquals(0, cache.transactionDepth());
+    }
+
+    @Test
+    void testOuterHandleIsInactiveAfterNestedRollback() {
+        Transaction outer = cache.begin();
+        Transaction inner = cache.begin();
+        inner.rollback();
+
+        Exception exception = assertThrows(IllegalStateException.class, outer::commit);
+        assertEquals("Transaction is no longer active", exception.getMessage());
+    }
+
+    @Test
+    void testKeysWithPendingUndoAreNotEvicted() throws InterruptedException {
+        cache = new NestedTransactionCache<>(new BoundedMap<>(2, EvictionPolicy.lru()));
+        cache.put("key1", "original");
+
+        cache.beginTransaction();
+        cache.put("key1", "transaction1");
+
+        Thread other = new Thread(() -> {
+            for (int i = 0; i < 10; i++) {
+                cache.put("other" + i, "value" + i);
+            }
+        });
+        other.start();
+        other.join();
+
+        assertEquals("transaction1", cache.get("key1"), "A key with an undo record must not be evicted");
+        cache.rollbackTransaction();
+        assertEquals("original", cache.get("key1"));
+    }
+
+    @Test
+    void testBatchRollbackRestoresEveryKey() {
+        cache.putAll(Map.of("key1", "original1", "key2", "original2"));
+
+        cache.beginTransaction();
+        cache.putAll(Map.of("key1", "updated1", "key3", "new3"));
+        cache.deleteAll(List.of("key2", "missing"));
+        assertEquals(Map.of("key1", "updated1", "key3", "new3"), cache.getAll(List.of("key1", "key2", "key3")));
+        cache.rollbackTransaction();
+
+        assertEquals(Map.of("key1", "original1", "key2", "original2"), cache.getAll(List.of("key1", "key2", "key3")));
+    }
+
+    @Test
+    void testRollbackToSavepointKeepsEarlierWrites() {
+        cache.beginTransaction();
+        cache.put("key1", "before");
+        Savepoint savepoint = cache.savepoint();
+        cache.put("key1", "after");
+        cache.put("key2", "after");
+
+        cache.beginTransaction();
+        cache.delete("key1");
+        cache.rollbackTo(savepoint); // Also closes the nested level begun after the savepoint
+
+        assertEquals(1, cache.transactionDepth());
+        assertEquals("before", cache.get("key1"));
+        assertNull(cache.get("key2"));
+
+        cache.put("key2", "retry");
+        cache.rollbackTo(savepoint); // The savepoint stays usable
+        assertNull(cache.get("key2"));
+
+        cache.commitTransaction();
+        assertEquals("before", cache.get("key1"));
+        assertThrows(IllegalStateException.class, () -> cache.rollbackTo(savepoint));
+    }
+
+    @Test
+    void testReleasedSavepointKeepsItsWrites() {
+        cache.beginTransaction();
+        Savepoint first = cache.savepoint();
+        cache.put("key1", "value1");
+        Savepoint second = cache.savepoint();
+        cache.put("key2", "value2");
+
+        cache.release(first);
+        assertThrows(IllegalStateException.class, () -> cache.rollbackTo(second), "Later savepoints go with it");
+        assertEquals("value2", cache.get("key2"));
+
+        cache.rollbackTransaction();
+        assertNull(cache.get("key1"));
+        assertNull(cache.get("key2"));
+    }
+
+    @Test
+    void testConditionalUpdatesAreUndoneByRollback() {
+        NestedTransactionCache<String, Integer> counters = new NestedTransactionCache<>();
+        counters.put("key1", 1);
+
+        counters.beginTransaction();
+        assertEquals(2, counters.merge("key1", 1, Integer::sum));
+        assertNull(counters.putIfAbsent("key2", 2));
+        assertTrue(counters.replace("key2", 2, 3));
+        assertNull(counters.compute("key1", (key, old) -> null));
+        counters.rollbackTransaction();
+
+        assertEquals(1, counters.get("key1"));
+        assertNull(counters.get("key2"));
+    }
+
+    @Test
+    void testConditionalUpdatesNeedConcurrentStore() {
+        NestedTransactionCache<String, String> bounded = new NestedTransactionCache<>(new BoundedMap<>(10, EvictionPolicy.lru()));
+        assertThrows(UnsupportedOperationException.class, () -> bounded.putIfAbsent("key1", "value"));
+    }
+
+    @Test
+    void testRollbackUndoesOnlyItsOwnIncrements() throws InterruptedException {
+        NestedTransactionCache<String, Long> counters = new NestedTransactionCache<>();
+        counters.increment("hits", 1);
+
+        counters.beginTransaction();
+        assertEquals(11, counters.increment("hits", 10));
+        Thread other = new Thread(() -> counters.increment("hits", 5));
+        other.start();
+        other.join();
+        assertEquals(16, counters.get("hits"), "Increments are applied eagerly");
+        counters.rollbackTransaction();
+
+        assertEquals(6, counters.get("hits"), "The other thread's increment survives");
+
+        counters.beginTransaction();
+        counters.increment("created", 3);
+        counters.rollbackTransaction();
+        assertNull(counters.get("created"), "A counter the transaction created goes away");
+    }
+
+    @Test
+    void testConcurrentIncrementsAreExact() throws InterruptedException {
+        NestedTransactionCache<String, Long> counters = new NestedTransactionCache<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            boolean rollback = t % 2 == 0;
+            executor.execute(() -> {
+                for (int i = 0; i < 500; i++) {
+                    counters.beginTransaction();
+                    counters.increment("hits", 1);
+                    if (rollback) {
+                        counters.rollbackTransaction();
+                    } else {
+                        counters.commitTransaction();
+                    }
+                    counters.increment("hits", 1);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(6000, counters.get("hits"));
+    }
+
+    @Test
+    void testBoundedAddRespectsLimits() {
+        NestedTransactionCache<String, Long> counters = new NestedTransactionCache<>();
+        assertFalse(counters.add("stock", -1, 0, 100), "Absent counts as 0");
+        assertNull(counters.get("stock"));
+        assertTrue(counters.add("stock", 100, 0, 100));
+        assertFalse(counters.add("stock", 1, 0, 100));
+
+        counters.beginTransaction();
+        assertTrue(counters.add("stock", -60, 0, 100));
+        assertFalse(counters.add("stock", -60, 0, 100));
+        counters.rollbackTransaction();
+        assertEquals(100, counters.get("stock"));
+    }
 }
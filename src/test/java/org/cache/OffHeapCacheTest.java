@@ -0,0 +1,230 @@
+package org.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapCacheTest {
+    private OffHeapCache<String, String> cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new OffHeapCache<>(Serializer.strings(), Serializer.strings(), 4096);
+    }
+
+    @Test
+    void testBasicOperations() {
+        cache.put("key1", "value1");
+        assertEquals("value1", cache.get("key1"));
+
+        cache.put("key1", "value2");
+        assertEquals("value2", cache.get("key1"));
+
+        cache.delete("key1");
+        assertNull(cache.get("key1"));
+    }
+
+    @Test
+    void testValuesLargerThanAPage() {
+        String large = "x".repeat(10_000);
+        cache.put("key1", large);
+        assertEquals(large, cache.get("key1"));
+    }
+
+    @Test
+    void testIndexGrowsAndKeepsEveryKey() {
+        for (int i = 0; i < 10_000; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        for (int i = 0; i < 10_000; i += 2) {
+            cache.delete("key" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i % 2 == 0 ? null : "value" + i, cache.get("key" + i));
+        }
+    }
+
+    @Test
+    void testIndexSpanningSeveralBuffersKeepsEveryKey() {
+        OffHeapCache<String, String> paged = new OffHeapCache<>(Serializer.strings(), Serializer.strings(), 4096, 64);
+        for (int i = 0; i < 10_000; i++) {
+            paged.put("key" + i, "value" + i);
+        }
+        paged.beginTransaction();
+        for (int i = 0; i < 10_000; i += 2) {
+            paged.delete("key" + i);
+        }
+        paged.rollbackTransaction();
+        for (int i = 0; i < 10_000; i += 3) {
+            paged.delete("key" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i % 3 == 0 ? null : "value" + i, paged.get("key" + i));
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> new OffHeapCache<>(Serializer.strings(), Serializer.strings(), 4096, 100));
+    }
+
+    @Test
+    void testNestedRollbackRestoresOffHeapChunks() {
+        cache.put("key1", "value1");
+
+        cache.beginTransaction();
+        cache.put("key1", "value2");
+        cache.beginTransaction();
+        cache.delete("key1");
+        cache.put("key2", "value3");
+        cache.rollbackTransaction();
+        assertEquals("value2", cache.get("key1"));
+        assertNull(cache.get("key2"));
+        cache.rollbackTransaction();
+
+        assertEquals("value1", cache.get("key1"));
+    }
+
+    @Test
+    void testCommittedAndRolledBackChunksAreFreed() {
+        long empty = cache.offHeapBytes();
+
+        cache.beginTransaction();
+        cache.put("key1", "value1");
+        cache.put("key1", "value2");
+        cache.commitTransaction();
+        cache.beginTransaction();
+        cache.put("key1", "value3");
+        cache.put("key2", "value4");
+        cache.rollbackTransaction();
+        cache.deleteAll(List.of("key1", "key2"));
+
+        assertEquals(empty, cache.offHeapBytes());
+    }
+
+    @Test
+    void testConcurrentTransactionsDoNotLeakOrCorrupt() throws Exception {
+        long empty = cache.offHeapBytes();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        cache.beginTransaction();
+                        cache.put("key" + (i % 10), "value" + thread);
+                        cache.delete("key" + ((i + 1) % 10));
+                        if (i % 2 == 0) {
+                            cache.commitTransaction();
+                        } else {
+                            cache.rollbackTransaction();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        for (int i = 0; i < 10; i++) {
+            cache.delete("key" + i);
+        }
+        assertEquals(empty, cache.offHeapBytes());
+    }
+
+    @Test
+    void testBatchOperations() {
+        cache.putAll(Map.of("key1", "value1", "key2", "value2"));
+        assertEquals(Map.of("key1", "value1", "key2", "value2"), cache.getAll(List.of("key1", "key2", "key3")));
+
+        cache.beginTransaction();
+        cache.deleteAll(List.of("key1"));
+        cache.rollbackTransaction();
+        assertEquals("value1", cache.get("key1"));
+    }
+
+    @Test
+    void testAtomicUpdatesAreUndoneByRollback() {
+        cache.put("key1", "a");
+
+        cache.beginTransaction();
+        assertEquals("ab", cache.merge("key1", "b", String::concat));
+        assertEquals("ab", cache.putIfAbsent("key1", "ignored"));
+        assertNull(cache.putIfAbsent("key2", "value2"));
+        cache.rollbackTransaction();
+
+        assertEquals("a", cache.get("key1"));
+        assertNull(cache.get("key2"));
+        assertTrue(cache.replace("key1", "a", "c"));
+        assertEquals("c", cache.get("key1"));
+        assertNull(cache.merge("key1", "d", (old, value) -> null));
+        assertNull(cache.get("key1"));
+    }
+
+    @Test
+    void testRollbackToSavepointKeepsEarlierWrites() {
+        long empty = cache.offHeapBytes();
+        cache.beginTransaction();
+        cache.put("key1", "before");
+        Savepoint savepoint = cache.savepoint();
+        cache.put("key1", "after");
+        cache.put("key2", "after");
+
+        cache.beginTransaction();
+        cache.delete("key1");
+        cache.rollbackTo(savepoint); // Also closes the nested level begun after the savepoint
+
+        assertEquals(1, cache.transactionDepth());
+        assertEquals("before", cache.get("key1"));
+        assertNull(cache.get("key2"));
+
+        cache.put("key2", "retry");
+        cache.rollbackTo(savepoint); // The savepoint stays usable
+        assertNull(cache.get("key2"));
+
+        cache.commitTransaction();
+        assertEquals("before", cache.get("key1"));
+        assertThrows(IllegalStateException.class, () -> cache.rollbackTo(savepoint));
+        cache.delete("key1");
+        assertEquals(empty, cache.offHeapBytes(), "Undone chunks are freed");
+    }
+
+    @Test
+    void testReleasedSavepointKeepsItsWrites() {
+        cache.beginTransaction();
+        Savepoint first = cache.savepoint();
+        cache.put("key1", "value1");
+        cache.beginTransaction();
+        Savepoint second = cache.savepoint();
+        cache.put("key2", "value2");
+
+        cache.release(first);
+        assertThrows(IllegalStateException.class, () -> cache.rollbackTo(second), "Later savepoints go with it");
+        cache.commitTransaction();
+        assertEquals("value2", cache.get("key2"));
+
+        cache.rollbackTransaction();
+        assertNull(cache.get("key1"));
+        assertNull(cache.get("key2"));
+    }
+
+    @Test
+    void testHandleDoesNotEndALaterTransactionAtTheSameDepth() {
+        Transaction stale = cache.begin();
+        cache.commitTransaction(); // Ended without the handle
+
+        Transaction current = cache.begin();
+        cache.put("key1", "value1");
+        assertThrows(IllegalStateException.class, stale::rollback);
+        current.commit();
+        assertEquals("value1", cache.get("key1"));
+    }
+}
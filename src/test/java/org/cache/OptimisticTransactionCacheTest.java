@@ -0,0 +1,142 @@
+package org.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptimisticTransactionCacheTest {
+    private OptimisticTransactionCache<String, Integer> cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new OptimisticTransactionCache<>();
+    }
+
+    @Test
+    void testCommitInstallsBufferedWrites() {
+        cache.put("key1", 100);
+
+        cache.beginTransaction();
+        cache.put("key1", 200);
+        cache.delete("key1");
+        cache.put("key2", 300);
+        assertNull(cache.get("key1"));
+        cache.commitTransaction();
+
+        assertNull(cache.get("key1"));
+        assertEquals(300, cache.get("key2"));
+    }
+
+    @Test
+    void testNestedRollbackOnlyDiscardsInnerLevel() {
+        cache.beginTransaction();
+        cache.put("key1", 100);
+        cache.beginTransaction();
+        cache.put("key1", 200);
+        cache.rollbackTransaction();
+        assertEquals(100, cache.get("key1"));
+        cache.commitTransaction();
+
+        assertEquals(100, cache.get("key1"));
+    }
+
+    @Test
+    void testStaleReadFailsValidation() throws Exception {
+        cache.put("key1", 100);
+
+        cache.beginTransaction();
+        int seen = cache.get("key1");
+        cache.put("key2", seen + 1);
+
+        Thread writer = new Thread(() -> cache.put("key1", 500));
+        writer.start();
+        writer.join();
+
+        assertThrows(TransactionConflictException.class, cache::commitTransaction);
+        assertEquals(0, cache.transactionDepth());
+        assertNull(cache.get("key2"), "A failed commit must not install any write");
+    }
+
+    @Test
+    void testReadOfAbsentKeyIsValidated() throws Exception {
+        cache.beginTransaction();
+        assertNull(cache.get("key1"));
+        cache.put("key2", 1);
+
+        Thread writer = new Thread(() -> cache.put("key1", 1));
+        writer.start();
+        writer.join();
+
+        assertThrows(TransactionConflictException.class, cache::commitTransaction);
+    }
+
+    @Test
+    void testConcurrentIncrementsWithRetryAreNotLost() throws InterruptedException {
+        cache.put("counter", 0);
+        final int threadCount = 8;
+        final int increments = 200;
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            executorService.submit(() -> {
+                try {
+                    for (int n = 0; n < increments; n++) {
+                        while (true) {
+                            cache.beginTransaction();
+                            cache.put("counter", cache.get("counter") + 1);
+                            try {
+                                cache.commitTransaction();
+                                break;
+                            } catch (TransactionConflictException e) {
+                                // Retry with fresh reads
+                            }
+                        }
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        executorService.shutdown();
+        assertEquals(threadCount * increments, cache.get("counter"));
+    }
+
+    @Test
+    void testAtomicUpdates() throws Exception {
+        assertNull(cache.putIfAbsent("key1", 1));
+        assertEquals(1, cache.putIfAbsent("key1", 2));
+        assertTrue(cache.replace("key1", 1, 10));
+        assertEquals(15, cache.merge("key1", 5, Integer::sum));
+
+        cache.beginTransaction();
+        assertNull(cache.putIfAbsent("key2", 2), "An absent key joins the read-set");
+        Thread writer = new Thread(() -> cache.put("key2", 500));
+        writer.start();
+        writer.join();
+        assertThrows(TransactionConflictException.class, cache::commitTransaction);
+        assertEquals(500, cache.get("key2"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 500; i++) {
+                    cache.merge("counter", 1, Integer::sum);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(20, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(2000, cache.get("counter"));
+    }
+}
@@ -5,8 +5,13 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -198,4 +203,312 @@ public class PerpexilityTransactionTest {
         int finalValue = cache.get("shared");
         assertEquals(0, finalValue % 10);
     }
+
+    @Test
+    public void testRollbackDoesNotUndoOtherThreadsWrites() throws InterruptedException {
+        cache.beginTransaction();
+        cache.put("key1", 1);
+
+        Thread other = new Thread(() -> {
+            cache.beginTransaction();
+            cache.put("key2", 2);
+            cache.commitTransaction();
+        });
+        other.start();
+        other.join();
+
+        cache.rollbackTransaction();
+
+        assertNull(cache.get("key1"));
+        assertEquals(2, cache.get("key2"));
+    }
+
+    @Test
+    public void testTransactionHandle() {
+        cache.put("key1", 100);
+
+        Transaction outer = cache.begin();
+        cache.put("key1", 200);
+        Transaction inner = cache.begin();
+        cache.put("key1", 300);
+
+        assertThrows(IllegalStateException.class, outer::commit);
+        inner.rollback();
+        assertEquals(200, cache.get("key1"));
+        outer.commit();
+        assertEquals(200, cache.get("key1"));
+        assertEquals(0, cache.transactionDepth());
+    }
+
+    @Test
+    public void testHandleDoesNotEndALaterTransactionAtTheSameDepth() {
+        Transaction stale = cache.begin();
+        cache.rollbackTransaction(); // Ended without the handle
+
+        cache.beginTransaction();
+        cache.put("key1", 100);
+        assertThrows(IllegalStateException.class, stale::commit);
+        assertThrows(IllegalStateException.class, stale::rollback);
+        assertEquals(1, cache.transactionDepth());
+        cache.commitTransaction();
+        assertEquals(100, cache.get("key1"));
+    }
+
+    @Test
+    public void testReadsSeeLatestUncommittedWrite() {
+        cache.beginTransaction();
+        cache.put("key1", 100);
+        cache.put("key1", 200);
+        assertEquals(200, cache.get("key1"));
+
+        cache.beginTransaction();
+        cache.delete("key1");
+        assertNull(cache.get("key1"));
+        cache.commitTransaction();
+
+        cache.put("key1", 300);
+        assertEquals(300, cache.get("key1"));
+        cache.commitTransaction();
+        assertEquals(300, cache.get("key1"));
+    }
+
+    @Test
+    public void testUncommittedWritesAreInvisibleToOtherThreads() throws Exception {
+        cache.put("key1", 100);
+
+        cache.beginTransaction();
+        cache.put("key1", 200);
+        cache.put("key2", 300);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals(100, executor.submit(() -> cache.get("key1")).get());
+            assertNull(executor.submit(() -> cache.get("key2")).get());
+
+            cache.commitTransaction();
+
+            assertEquals(200, executor.submit(() -> cache.get("key1")).get());
+            assertEquals(300, executor.submit(() -> cache.get("key2")).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatchOperations() {
+        cache.putAll(Map.of("key1", 1, "key2", 2));
+        assertEquals(Map.of("key1", 1, "key2", 2), cache.getAll(List.of("key1", "key2", "key3")));
+
+        cache.beginTransaction();
+        cache.putAll(Map.of("key1", 10, "key3", 30));
+        cache.deleteAll(List.of("key2"));
+        assertEquals(Map.of("key1", 10, "key3", 30), cache.getAll(List.of("key1", "key2", "key3")));
+        cache.rollbackTransaction();
+        assertEquals(Map.of("key1", 1, "key2", 2), cache.getAll(List.of("key1", "key2", "key3")));
+
+        cache.deleteAll(List.of("key1", "key2"));
+        assertTrue(cache.getAll(List.of("key1", "key2")).isEmpty());
+    }
+
+    @Test
+    public void testDurableCommitsSurviveRestart(@TempDir Path directory) throws Exception {
+        Path path = directory.resolve("wal");
+        try (WriteAheadLog<String, Integer> log = new WriteAheadLog<>(path)) {
+            PerpexilityTransaction<String, Integer> durable = new PerpexilityTransaction<>(new ConcurrentHashMap<>(), log);
+            durable.put("key1", 100);
+            durable.beginTransaction();
+            durable.put("key2", 200);
+            durable.delete("key1");
+            durable.commitTransaction();
+            durable.beginTransaction();
+            durable.put("key3", 300);
+            durable.rollbackTransaction();
+        }
+
+        try (WriteAheadLog<String, Integer> log = new WriteAheadLog<>(path)) {
+            PerpexilityTransaction<String, Integer> restarted = new PerpexilityTransaction<>(new ConcurrentHashMap<>(), log);
+            assertNull(restarted.get("key1"));
+            assertEquals(200, restarted.get("key2"));
+            assertNull(restarted.get("key3"), "Rolled back writes must never reach the log");
+        }
+    }
+
+    @Test
+    public void testRollbackToSavepointDiscardsOnlyLaterWrites() {
+        cache.beginTransaction();
+        cache.put("key1", 1);
+        Savepoint savepoint = cache.savepoint();
+        cache.put("key1", 2);
+        cache.put("key2", 2);
+
+        cache.beginTransaction();
+        cache.put("key3", 3);
+        cache.rollbackTo(savepoint);
+
+        assertEquals(1, cache.transactionDepth());
+        assertEquals(1, cache.get("key1"));
+        assertNull(cache.get("key2"));
+        assertNull(cache.get("key3"));
+
+        cache.put("key2", 20);
+        cache.commitTransaction();
+        assertEquals(1, cache.get("key1"));
+        assertEquals(20, cache.get("key2"));
+        assertThrows(IllegalStateException.class, () -> cache.release(savepoint));
+    }
+
+    @Test
+    public void testReleasedSavepointWritesCommitWithTheTransaction() {
+        cache.beginTransaction();
+        Savepoint savepoint = cache.savepoint();
+        cache.put("key1", 1);
+        cache.beginTransaction();
+        cache.put("key2", 2);
+        cache.commitTransaction();
+        cache.release(savepoint);
+        assertThrows(IllegalStateException.class, () -> cache.rollbackTo(savepoint));
+
+        cache.commitTransaction();
+        assertEquals(1, cache.get("key1"));
+        assertEquals(2, cache.get("key2"));
+    }
+
+    @Test
+    public void testConditionalUpdatesOutsideTransaction() {
+        assertNull(cache.putIfAbsent("key1", 1));
+        assertEquals(1, cache.putIfAbsent("key1", 2));
+        assertFalse(cache.replace("key1", 5, 6));
+        assertTrue(cache.replace("key1", 1, 10));
+        assertEquals(15, cache.merge("key1", 5, Integer::sum));
+        assertNull(cache.compute("key1", (key, old) -> null));
+        assertNull(cache.get("key1"));
+    }
+
+    @Test
+    public void testConcurrentMergesAreAtomic() throws Exception {
+        ExecutorService executor = newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    cache.merge("counter", 1, Integer::sum);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(8000, cache.get("counter"));
+    }
+
+    @Test
+    public void testConditionalUpdatesInsideTransactionAreBuffered() {
+        cache.put("key1", 1);
+        cache.beginTransaction();
+        assertEquals(2, cache.merge("key1", 1, Integer::sum));
+        assertEquals(3, cache.merge("key1", 1, Integer::sum), "Sees its own pending write");
+        assertEquals(3, cache.putIfAbsent("key1", 100));
+        cache.rollbackTransaction();
+        assertEquals(1, cache.get("key1"));
+
+        cache.beginTransaction();
+        assertTrue(cache.replace("key1", 1, 5));
+        cache.commitTransaction();
+        assertEquals(5, cache.get("key1"));
+    }
+
+    @Test
+    public void testDurableConditionalUpdatesSurviveRestart(@TempDir Path directory) throws Exception {
+        Path path = directory.resolve("wal");
+        try (WriteAheadLog<String, Integer> log = new WriteAheadLog<>(path)) {
+            PerpexilityTransaction<String, Integer> durable = new PerpexilityTransaction<>(new ConcurrentHashMap<>(), log);
+            durable.merge("counter", 1, Integer::sum);
+            durable.merge("counter", 1, Integer::sum);
+            durable.putIfAbsent("counter", 100);
+        }
+        try (WriteAheadLog<String, Integer> log = new WriteAheadLog<>(path)) {
+            PerpexilityTransaction<String, Integer> restarted = new PerpexilityTransaction<>(new ConcurrentHashMap<>(), log);
+            assertEquals(2, restarted.get("counter"));
+            assertEquals(2, log.lastSequence(), "Updates that change nothing are not logged");
+        }
+    }
+
+    @Test
+    public void testConcurrentTransactionsIncrementWithoutLosingUpdates() throws Exception {
+        PerpexilityTransaction<String, Long> counters = new PerpexilityTransaction<>();
+        ExecutorService executor = newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            boolean rollback = t % 2 == 0;
+            executor.execute(() -> {
+                for (int i = 0; i < 200; i++) {
+                    counters.beginTransaction();
+                    counters.increment("hits", 1);
+                    counters.increment("hits", 2);
+                    if (rollback) {
+                        counters.rollbackTransaction();
+                    } else {
+                        counters.commitTransaction();
+                    }
+                    counters.increment("hits", 1);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(4 * 200 * 3 + 8 * 200, counters.get("hits"));
+    }
+
+    @Test
+    public void testIncrementsAreBufferedUntilCommit() {
+        PerpexilityTransaction<String, Long> counters = new PerpexilityTransaction<>();
+        counters.increment("hits", 5);
+
+        counters.beginTransaction();
+        assertEquals(6, counters.increment("hits", 1));
+        Savepoint savepoint = counters.savepoint();
+        assertEquals(8, counters.increment("hits", 2));
+        assertEquals(Map.of("hits", 8L), counters.getAll(List.of("hits")));
+        counters.rollbackTo(savepoint);
+        assertEquals(6, counters.get("hits"));
+        counters.put("reset", 10L);
+        assertEquals(11, counters.increment("reset", 1), "Adds to the transaction's own put");
+        counters.commitTransaction();
+
+        assertEquals(6, counters.get("hits"));
+        assertEquals(11, counters.get("reset"));
+    }
+
+    @Test
+    public void testBoundedAddIsCheckedAgainAtCommit() throws Exception {
+        PerpexilityTransaction<String, Long> counters = new PerpexilityTransaction<>();
+        counters.increment("stock", 1);
+
+        counters.beginTransaction();
+        assertTrue(counters.add("stock", -1, 0, Long.MAX_VALUE));
+        assertFalse(counters.add("stock", -1, 0, Long.MAX_VALUE), "Bounds hold for the total");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        assertTrue(executor.submit(() -> counters.add("stock", -1, 0, Long.MAX_VALUE)).get());
+        executor.shutdown();
+
+        assertThrows(TransactionConflictException.class, counters::commitTransaction);
+        assertEquals(0, counters.get("stock"), "A rejected commit applies nothing");
+        assertEquals(0, counters.transactionDepth());
+    }
+
+    @Test
+    public void testUndoingADeltaRemovesTheCounterItCreated() {
+        Map<String, Long> counters = new ConcurrentHashMap<>(Map.of("hits", 5L));
+        DeltaCommand<String, Long> created = new DeltaCommand<>("misses", 3);
+        DeltaCommand<String, Long> existing = new DeltaCommand<>("hits", -5);
+
+        created.execute(counters);
+        existing.execute(counters);
+        assertEquals(Map.of("hits", 0L, "misses", 3L), counters);
+
+        existing.undo(counters);
+        created.undo(counters);
+        assertEquals(Map.of("hits", 5L), counters, "Only the counter the delta inserted goes away");
+    }
 }
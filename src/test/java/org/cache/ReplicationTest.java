@@ -0,0 +1,143 @@
+package org.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationTest {
+
+    // Holds frames until the test delivers them, so it can reorder or repeat them
+    private static final class ManualTransport implements ReplicationTransport {
+        final List<ByteBuffer> sent = new ArrayList<>();
+        final List<Consumer<ByteBuffer>> receivers = new ArrayList<>();
+
+        @Override
+        public synchronized void send(ByteBuffer frame) {
+            sent.add(frame);
+        }
+
+        @Override
+        public void subscribe(Consumer<ByteBuffer> receiver) {
+            receivers.add(receiver);
+        }
+
+        synchronized ByteBuffer frame(int index) {
+            return sent.get(index).asReadOnlyBuffer();
+        }
+
+        synchronized int size() {
+            return sent.size();
+        }
+    }
+
+    private static void awaitShipped(ReplicationLeader<?, ?> leader, long transactions) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (leader.shippedTransactions() < transactions) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for the leader to ship");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void testFollowersApplyCommittedTransactionsInOrder() throws Exception {
+        PerpexilityTransaction<String, Integer> leaderCache = new PerpexilityTransaction<>();
+        LoopbackTransport transport = new LoopbackTransport();
+        PerpexilityTransaction<String, Integer> followerCache = new PerpexilityTransaction<>();
+        PerpexilityTransaction<String, Integer> otherFollowerCache = new PerpexilityTransaction<>();
+        ReplicationFollower<String, Integer> follower =
+                new ReplicationFollower<>(followerCache, Serializer.strings(), Serializer.integers(), transport);
+        new ReplicationFollower<>(otherFollowerCache, Serializer.strings(), Serializer.integers(), transport);
+
+        try (ReplicationLeader<String, Integer> leader =
+                     new ReplicationLeader<>(leaderCache, Serializer.strings(), Serializer.integers(), transport)) {
+            leaderCache.put("key1", 1);
+            leaderCache.beginTransaction();
+            leaderCache.put("key2", 2);
+            leaderCache.delete("key1");
+            leaderCache.commitTransaction();
+            leaderCache.beginTransaction();
+            leaderCache.put("key3", 3);
+            leaderCache.rollbackTransaction();
+
+            awaitShipped(leader, 2);
+            assertEquals(leader.shippedSequence(), follower.stats().appliedSequence());
+        }
+
+        for (PerpexilityTransaction<String, Integer> replica : List.of(followerCache, otherFollowerCache)) {
+            assertNull(replica.get("key1"));
+            assertEquals(2, replica.get("key2"));
+            assertNull(replica.get("key3"), "Rolled back transactions are never shipped");
+        }
+        ReplicationFollower.Stats stats = follower.stats();
+        assertEquals(2, stats.appliedTransactions());
+        assertEquals(3, stats.appliedWrites());
+        assertEquals(2, stats.lagMillis().count());
+    }
+
+    @Test
+    void testFollowerSkipsRepeatedFramesAndRecordsGaps() throws Exception {
+        PerpexilityTransaction<String, Integer> leaderCache = new PerpexilityTransaction<>();
+        ManualTransport transport = new ManualTransport();
+        PerpexilityTransaction<String, Integer> followerCache = new PerpexilityTransaction<>();
+        ReplicationFollower<String, Integer> follower =
+                new ReplicationFollower<>(followerCache, Serializer.strings(), Serializer.integers(), transport);
+        Consumer<ByteBuffer> receiver = transport.receivers.get(0);
+
+        try (ReplicationLeader<String, Integer> leader =
+                     new ReplicationLeader<>(leaderCache, Serializer.strings(), Serializer.integers(), transport)) {
+            for (int i = 1; i <= 3; i++) {
+                leaderCache.put("key", i);
+            }
+            awaitShipped(leader, 3);
+        }
+        assertEquals(3, transport.size());
+
+        receiver.accept(transport.frame(0));
+        receiver.accept(transport.frame(0));
+        assertEquals(1, follower.stats().appliedTransactions());
+        receiver.accept(transport.frame(2));
+        assertInstanceOf(IllegalStateException.class, follower.failure(), "A gap is recorded, not thrown");
+        assertEquals(1, followerCache.get("key"));
+
+        receiver.accept(transport.frame(1));
+        receiver.accept(transport.frame(2));
+        assertEquals(3, followerCache.get("key"));
+
+        ByteBuffer corrupt = ByteBuffer.allocate(transport.frame(0).remaining()).put(transport.frame(0)).flip();
+        corrupt.put(corrupt.limit() - 1, (byte) (corrupt.get(corrupt.limit() - 1) ^ 1));
+        receiver.accept(corrupt);
+        assertTrue(follower.failure().getMessage().contains("Corrupt"));
+        assertEquals(3, follower.stats().appliedSequence(), "A corrupt frame is dropped");
+    }
+
+    @Test
+    void testFailingReceiverDoesNotStopTheLeader() throws Exception {
+        PerpexilityTransaction<String, Integer> leaderCache = new PerpexilityTransaction<>();
+        LoopbackTransport transport = new LoopbackTransport();
+        List<ByteBuffer> received = new ArrayList<>();
+        transport.subscribe(frame -> {
+            received.add(frame);
+            throw new IllegalStateException("Receiver failed");
+        });
+        PerpexilityTransaction<String, Integer> followerCache = new PerpexilityTransaction<>();
+        ReplicationFollower<String, Integer> follower =
+                new ReplicationFollower<>(followerCache, Serializer.strings(), Serializer.integers(), transport);
+
+        try (ReplicationLeader<String, Integer> leader =
+                     new ReplicationLeader<>(leaderCache, Serializer.strings(), Serializer.integers(), transport)) {
+            leaderCache.put("key1", 1);
+            leaderCache.put("key2", 2);
+            awaitShipped(leader, 2);
+            assertNull(leader.failure());
+        }
+
+        assertEquals(1, received.size(), "The failing receiver is disconnected");
+        assertNull(follower.failure());
+        assertEquals(2, followerCache.get("key2"));
+    }
+}
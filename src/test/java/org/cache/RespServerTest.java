@@ -0,0 +1,141 @@
+package org.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RespServerTest {
+    private PerpexilityTransaction<String, byte[]> cache;
+    private RespServer server;
+    private SocketChannel client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        cache = new PerpexilityTransaction<>();
+        server = new RespServer(cache, new InetSocketAddress("localhost", 0));
+        client = SocketChannel.open(server.address());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    private static String command(String... args) {
+        StringBuilder request = new StringBuilder("*").append(args.length).append("\r\n");
+        for (String arg : args) {
+            request.append('$').append(arg.getBytes(UTF_8).length).append("\r\n").append(arg).append("\r\n");
+        }
+        return request.toString();
+    }
+
+    private void send(String request) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(request.getBytes(UTF_8));
+        while (buffer.hasRemaining()) {
+            client.write(buffer);
+        }
+    }
+
+    // Reads until exactly the expected bytes have arrived
+    private String receive(String expected) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(expected.getBytes(UTF_8).length);
+        while (buffer.hasRemaining()) {
+            if (client.read(buffer) < 0) {
+                break;
+            }
+        }
+        return new String(buffer.array(), 0, buffer.position(), UTF_8);
+    }
+
+    private void assertReplies(String expected, String request) throws IOException {
+        send(request);
+        assertEquals(expected, receive(expected));
+    }
+
+    @Test
+    void testPipelinedCommandsAreAnsweredInOrder() throws IOException {
+        assertReplies("+OK\r\n+OK\r\n$2\r\nv1\r\n$-1\r\n*3\r\n$2\r\nv1\r\n$-1\r\n$2\r\nv2\r\n:1\r\n$-1\r\n+PONG\r\n",
+                command("SET", "k1", "v1") + command("MSET", "k2", "v2", "k2", "v2")
+                        + command("GET", "k1") + command("GET", "missing")
+                        + command("MGET", "k1", "missing", "k2")
+                        + command("DEL", "k1", "missing") + command("GET", "k1") + command("PING"));
+        assertArrayEquals("v2".getBytes(UTF_8), cache.get("k2"));
+    }
+
+    @Test
+    void testCommandsSplitAcrossReads() throws Exception {
+        String request = command("SET", "key", "a value longer than one read");
+        send(request.substring(0, 7));
+        Thread.sleep(50);
+        send(request.substring(7, 20));
+        Thread.sleep(50);
+        assertReplies("+OK\r\n", request.substring(20));
+        assertReplies("$28\r\na value longer than one read\r\n", command("GET", "key"));
+    }
+
+    @Test
+    void testLargeValuesGrowTheBuffers() throws IOException {
+        String value = "x".repeat(100_000);
+        assertReplies("+OK\r\n", command("SET", "big", value));
+        assertReplies("$100000\r\n" + value + "\r\n", command("GET", "big"));
+    }
+
+    @Test
+    void testMultiExecRunsAsOneTransaction() throws IOException {
+        assertReplies("+OK\r\n+QUEUED\r\n+QUEUED\r\n", command("MULTI") + command("SET", "k1", "v1") + command("GET", "k1"));
+        assertNull(cache.get("k1"), "Nothing runs before EXEC");
+        assertReplies("*2\r\n+OK\r\n$2\r\nv1\r\n", command("EXEC"));
+        assertArrayEquals("v1".getBytes(UTF_8), cache.get("k1"));
+
+        assertReplies("+OK\r\n+QUEUED\r\n+OK\r\n$2\r\nv1\r\n",
+                command("MULTI") + command("DEL", "k1") + command("DISCARD") + command("GET", "k1"));
+        assertReplies("-ERR EXEC without MULTI\r\n", command("EXEC"));
+    }
+
+    @Test
+    void testFailedExecRollsBack() throws IOException {
+        String reply = "+OK\r\n+QUEUED\r\n+QUEUED\r\n-EXECABORT Transaction discarded: PerpexilityTransaction does not support per-entry expiration\r\n";
+        assertReplies(reply, command("MULTI") + command("SET", "k1", "v1") + command("SET", "k2", "v2", "EX", "10") + command("EXEC"));
+        assertNull(cache.get("k1"));
+        assertEquals(0, cache.transactionDepth());
+    }
+
+    @Test
+    void testRejectedCommandInsideMultiAbortsExec() throws IOException {
+        assertReplies("+OK\r\n+QUEUED\r\n-ERR unknown command 'flushall'\r\n-ERR wrong number of arguments for 'get' command\r\n"
+                        + "-EXECABORT Transaction discarded because of previous errors.\r\n",
+                command("MULTI") + command("SET", "k1", "v1") + command("FLUSHALL") + command("GET") + command("EXEC"));
+        assertNull(cache.get("k1"), "No queued command runs");
+
+        assertReplies("+OK\r\n+QUEUED\r\n*1\r\n+OK\r\n", command("MULTI") + command("SET", "k1", "v1") + command("EXEC"));
+        assertArrayEquals("v1".getBytes(UTF_8), cache.get("k1"), "The next MULTI starts clean");
+    }
+
+    @Test
+    void testErrors() throws IOException {
+        assertReplies("-ERR unknown command 'flushall'\r\n-ERR wrong number of arguments for 'get' command\r\n",
+                command("FLUSHALL") + command("GET"));
+        assertReplies("-ERR Protocol error: expected '*'\r\n", "GET key\r\n");
+        assertEquals(-1, client.read(ByteBuffer.allocate(1)), "The server hangs up after a protocol error");
+    }
+
+    @Test
+    void testLoadGeneratorMeasuresThroughput() throws InterruptedException {
+        RespLoadGenerator.Result sets = RespLoadGenerator.run(server.address(), "SET", 4, 500, 8, 32);
+        RespLoadGenerator.Result gets = RespLoadGenerator.run(server.address(), "GET", 4, 500, 8, 32);
+
+        assertEquals(2000, sets.requests());
+        assertEquals(2000, gets.latency().count());
+        assertTrue(gets.requestsPerSecond() > 0);
+        assertEquals(32, cache.get("key:0").length);
+    }
+}
@@ -0,0 +1,144 @@
+package org.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedCacheTest {
+    private ShardedCache<String, Integer> cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ShardedCache<>(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.close();
+    }
+
+    private static List<String> keys(int count) {
+        return IntStream.range(0, count).mapToObj(i -> "key" + i).toList();
+    }
+
+    @Test
+    void testBasicOperations() {
+        cache.put("key1", 1);
+        cache.put("key2", 2);
+        assertEquals(1, cache.get("key1"));
+        cache.delete("key1");
+        assertNull(cache.get("key1"));
+        assertEquals(Map.of("key2", 2), cache.getAll(List.of("key1", "key2")));
+        assertEquals(3, cache.merge("key2", 1, Integer::sum));
+    }
+
+    @Test
+    void testTransactionSpanningShardsCommitsAndRollsBack() {
+        List<String> keys = keys(20);
+        cache.beginTransaction();
+        for (int i = 0; i < keys.size(); i++) {
+            cache.put(keys.get(i), i);
+        }
+        assertEquals(5, cache.get("key5"), "Sees its own pending write");
+        cache.rollbackTransaction();
+        assertTrue(cache.getAll(keys).isEmpty());
+
+        cache.beginTransaction();
+        cache.beginTransaction();
+        for (int i = 0; i < keys.size(); i++) {
+            cache.put(keys.get(i), i);
+        }
+        cache.commitTransaction();
+        cache.delete("key0");
+        cache.commitTransaction();
+
+        Map<String, Integer> stored = cache.getAll(keys);
+        assertEquals(19, stored.size());
+        assertEquals(19, stored.get("key19"));
+    }
+
+    @Test
+    void testSavepointDiscardsOnlyLaterWrites() {
+        cache.beginTransaction();
+        cache.put("key1", 1);
+        Savepoint savepoint = cache.savepoint();
+        cache.put("key2", 2);
+        cache.rollbackTo(savepoint);
+        cache.commitTransaction();
+
+        assertEquals(1, cache.get("key1"));
+        assertNull(cache.get("key2"));
+    }
+
+    @Test
+    void testConcurrentCrossShardCommitsAreAtomic() throws InterruptedException {
+        List<String> keys = keys(16);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            int writer = t;
+            executor.execute(() -> {
+                for (int i = 0; i < 200; i++) {
+                    Map<String, Integer> batch = new HashMap<>();
+                    keys.forEach(key -> batch.put(key, writer));
+                    if (i % 2 == 0) {
+                        cache.putAll(batch);
+                    } else {
+                        cache.beginTransaction();
+                        batch.forEach(cache::put);
+                        cache.commitTransaction();
+                    }
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(20, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        Map<String, Integer> stored = cache.getAll(keys);
+        assertEquals(16, stored.size());
+        assertEquals(1, stored.values().stream().distinct().count(), "Every key holds the last commit's value");
+    }
+
+    @Test
+    void testConcurrentUpdatesOfOneKeyAreSerializedByItsShard() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    cache.merge("counter", 1, Integer::sum);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(20, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(8000, cache.get("counter"));
+    }
+
+    @Test
+    void testClosedCacheRejectsOperations() {
+        cache.put("key1", 1);
+        cache.close();
+        assertThrows(IllegalStateException.class, () -> cache.get("key1"));
+    }
+
+    @Test
+    void testExceptionsWhenNoTransactionIsActive() {
+        assertThrows(IllegalStateException.class, cache::commitTransaction);
+        assertThrows(IllegalStateException.class, cache::rollbackTransaction);
+        assertThrows(IllegalArgumentException.class, () -> new ShardedCache<String, Integer>(0));
+    }
+}
@@ -0,0 +1,54 @@
+package org.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotRegistryTest {
+    private final AtomicLong clock = new AtomicLong(5);
+    private final SnapshotRegistry registry = new SnapshotRegistry(clock);
+
+    @Test
+    void testOldestActiveTracksPinnedReaders() {
+        assertEquals(Long.MAX_VALUE, registry.oldestActive());
+
+        assertEquals(5, registry.acquire());
+        clock.set(9);
+        try (SnapshotRegistry.Pin pin = registry.pin()) {
+            assertEquals(9, pin.timestamp());
+            assertEquals(5, registry.oldestActive());
+            registry.release();
+            assertEquals(9, registry.oldestActive());
+        }
+        assertEquals(Long.MAX_VALUE, registry.oldestActive());
+    }
+
+    @Test
+    void testSlotsOfFinishedThreadsAreDropped() throws InterruptedException {
+        for (int round = 0; round < 10; round++) {
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                Thread thread = new Thread(() -> {
+                    registry.acquire();
+                    registry.release();
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(Long.MAX_VALUE, registry.oldestActive());
+        }
+        assertEquals(0, registry.size(), "Every reader thread has finished");
+
+        registry.acquire();
+        registry.oldestActive();
+        assertEquals(1, registry.size(), "A live thread keeps its slot");
+        registry.release();
+    }
+}
@@ -0,0 +1,83 @@
+package org.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SortedCacheTest {
+    private SortedCache<String, Integer> cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new SortedCache<>();
+        cache.putAll(Map.of("b", 2, "d", 4, "a", 1, "c", 3, "user:2", 20, "user:1", 10, "users", 0));
+    }
+
+    private static List<String> keys(Stream<Map.Entry<String, Integer>> entries) {
+        try (entries) {
+            return entries.map(Map.Entry::getKey).toList();
+        }
+    }
+
+    @Test
+    void testRangeAndPrefixScansAreOrdered() {
+        assertEquals(List.of("b", "c"), keys(cache.range("b", "d")));
+        assertEquals(List.of("a", "b"), keys(cache.range(null, "c")));
+        assertEquals(List.of("user:1", "user:2", "users"), keys(cache.range("u", null)));
+        assertEquals(List.of("user:1", "user:2"), keys(cache.prefix("user:")));
+        assertEquals(7, keys(cache.prefix("")).size());
+        assertEquals(List.of(Map.entry("a", 1)), cache.range("a", "b").toList());
+    }
+
+    @Test
+    void testScanInsideTransactionSeesItsOwnWrites() {
+        cache.beginTransaction();
+        cache.put("bb", 22);
+        cache.delete("c");
+        cache.put("b", 200);
+        assertEquals(List.of(Map.entry("b", 200), Map.entry("bb", 22), Map.entry("d", 4)), cache.range("b", "e").toList());
+        cache.rollbackTransaction();
+
+        assertEquals(List.of(Map.entry("b", 2), Map.entry("c", 3), Map.entry("d", 4)), cache.range("b", "e").toList(),
+                "Rolled back writes never reached the index");
+    }
+
+    @Test
+    void testScanSeesOneSnapshotWhileOthersCommit() throws Exception {
+        Iterator<Map.Entry<String, Integer>> scan = cache.range("a", "e").iterator();
+        assertEquals(Map.entry("a", 1), scan.next());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.submit(() -> {
+            cache.put("bb", 22);
+            cache.delete("c");
+            cache.put("d", 40);
+        }).get();
+        executor.shutdown();
+
+        assertEquals(Map.entry("b", 2), scan.next());
+        assertEquals(Map.entry("c", 3), scan.next(), "Deleted after the scan began");
+        assertEquals(Map.entry("d", 4), scan.next());
+        assertFalse(scan.hasNext());
+        assertEquals(0, cache.versionCount("c"), "Closing the scan drops what only it could see");
+        assertEquals(1, cache.versionCount("d"));
+        assertEquals(List.of("a", "b", "bb", "d"), keys(cache.range("a", "e")));
+    }
+
+    @Test
+    void testCustomOrder() {
+        SortedCache<Integer, String> leaderboard = new SortedCache<>(Comparator.reverseOrder());
+        leaderboard.putAll(Map.of(300, "carol", 100, "alice", 200, "bob"));
+        assertEquals(List.of("carol", "bob"), leaderboard.range(null, 100).map(Map.Entry::getValue).toList());
+        assertThrows(UnsupportedOperationException.class, () -> leaderboard.prefix("1"));
+    }
+}
@@ -0,0 +1,206 @@
+package org.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedTransactionCacheTest {
+    private StripedTransactionCache<String, Integer> cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new StripedTransactionCache<>(8);
+    }
+
+    @Test
+    void testRollbackAcrossSegments() {
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, i);
+        }
+
+        cache.beginTransaction();
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, -i);
+            cache.delete("key" + i);
+            cache.put("new" + i, i);
+        }
+        cache.rollbackTransaction();
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, cache.get("key" + i));
+            assertNull(cache.get("new" + i));
+        }
+    }
+
+    @Test
+    void testNestedRollbackOnlyUndoesInnerLevel() {
+        cache.put("key1", 100);
+
+        cache.beginTransaction();
+        cache.put("key1", 200);
+        cache.beginTransaction();
+        cache.put("key1", 300);
+        cache.put("key2", 400);
+        cache.rollbackTransaction();
+
+        assertEquals(200, cache.get("key1"));
+        assertNull(cache.get("key2"));
+
+        cache.beginTransaction();
+        cache.put("key2", 500);
+        cache.commitTransaction(); // Merged into the outer level
+        cache.rollbackTransaction();
+
+        assertEquals(100, cache.get("key1"));
+        assertNull(cache.get("key2"));
+    }
+
+    @Test
+    void testConcurrentRollbacksOnDisjointKeys() throws InterruptedException {
+        final int threadCount = 8;
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+
+        for (int t = 0; t < threadCount; t++) {
+            final int thread = t;
+            executorService.submit(() -> {
+                try {
+                    for (int round = 0; round < 100; round++) {
+                        cache.beginTransaction();
+                        for (int i = 0; i < 20; i++) {
+                            cache.put(thread + ":" + i, round);
+                        }
+                        if (round % 2 == 0) {
+                            cache.commitTransaction();
+                        } else {
+                            cache.rollbackTransaction();
+                        }
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        executorService.shutdown();
+        for (int t = 0; t < threadCount; t++) {
+            for (int i = 0; i < 20; i++) {
+                assertEquals(98, cache.get(t + ":" + i), "Each key should hold its last committed round");
+            }
+        }
+    }
+
+    @Test
+    void testBatchOperationsAcrossSegments() {
+        Map<String, Integer> initial = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            initial.put("key" + i, i);
+        }
+        cache.putAll(initial);
+
+        cache.beginTransaction();
+        Map<String, Integer> updates = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            updates.put("key" + i, -i);
+        }
+        cache.putAll(updates);
+        cache.deleteAll(List.of("key0", "key1"));
+        assertEquals(48, cache.getAll(initial.keySet()).size());
+        cache.rollbackTransaction();
+
+        assertEquals(initial, cache.getAll(initial.keySet()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSegmentViewBehavesAsAMap() throws ReflectiveOperationException {
+        Constructor<?> plainView = Class.forName(StripedTransactionCache.class.getName() + "$SegmentView")
+                .getDeclaredConstructor(StripedTransactionCache.class, Map.class);
+        plainView.setAccessible(true);
+        Map<String, Integer> view = (Map<String, Integer>) plainView.newInstance(cache, null);
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20; i++) {
+            cache.put("key" + i, i);
+            expected.put("key" + i, i);
+        }
+
+        assertEquals(5, view.get("key5"));
+        assertTrue(view.containsKey("key19"));
+        assertFalse(view.containsKey("missing"));
+        assertEquals(20, view.size());
+        assertEquals(expected, view);
+        assertEquals(6, view.compute("key5", (key, old) -> old + 1));
+        assertEquals(6, cache.get("key5"));
+        assertEquals(1, view.merge("counter", 1, Integer::sum));
+        assertEquals(1, cache.get("counter"));
+    }
+
+    @Test
+    void testSegmentCountIsRoundedUpToAPowerOfTwo() throws ReflectiveOperationException {
+        Field field = StripedTransactionCache.class.getDeclaredField("segments");
+        field.setAccessible(true);
+        assertEquals(1, ((Object[]) field.get(new StripedTransactionCache<String, Integer>(1))).length);
+        assertEquals(8, ((Object[]) field.get(new StripedTransactionCache<String, Integer>(8))).length);
+        assertEquals(16, ((Object[]) field.get(new StripedTransactionCache<String, Integer>(9))).length);
+
+        StripedTransactionCache<String, Integer> single = new StripedTransactionCache<>(1);
+        single.beginTransaction();
+        single.put("key1", 1);
+        single.rollbackTransaction();
+        assertNull(single.get("key1"));
+    }
+
+    @Test
+    void testAtomicUpdatesAreUndoneByRollback() {
+        cache.put("key1", 1);
+
+        cache.beginTransaction();
+        assertEquals(2, cache.merge("key1", 1, Integer::sum));
+        assertNull(cache.putIfAbsent("key2", 2));
+        assertNull(cache.compute("key1", (key, old) -> null));
+        cache.rollbackTransaction();
+
+        assertEquals(1, cache.get("key1"));
+        assertNull(cache.get("key2"));
+        assertTrue(cache.replace("key1", 1, 5));
+        assertEquals(5, cache.get("key1"));
+    }
+
+    @Test
+    void testRollbackKeepsAnotherThreadsLaterWrite() throws InterruptedException {
+        cache.put("key1", 1);
+        cache.put("key2", 2);
+
+        cache.beginTransaction();
+        cache.put("key1", 10);
+        cache.delete("key2");
+        cache.put("key3", 30);
+        Savepoint savepoint = cache.savepoint();
+        cache.put("key1", 11);
+        Thread writer = new Thread(() -> {
+            cache.put("key1", 100);
+            cache.put("key2", 200);
+        });
+        writer.start();
+        writer.join();
+        cache.rollbackTo(savepoint);
+        assertEquals(100, cache.get("key1"), "Rolling back to the savepoint keeps the other write");
+        cache.rollbackTransaction();
+
+        assertEquals(100, cache.get("key1"));
+        assertEquals(200, cache.get("key2"));
+        assertNull(cache.get("key3"), "Keys nobody else wrote are still undone");
+    }
+}
@@ -2,6 +2,10 @@ package org.cache;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class TransactionalCacheTest {
@@ -65,4 +69,48 @@ class TransactionalCacheTest {
         Exception exception = assertThrows(IllegalStateException.class, cache::beginTransaction);
         assertEquals("A transaction is already in progress", exception.getMessage());
     }
+
+    @Test
+    void testBoundedStoreKeepsKeysUntilTransactionEnds() {
+        cache = new TransactionalCache<>(new BoundedMap<>(1, EvictionPolicy.lru()));
+        cache.put("key1", "originalValue");
+
+        cache.beginTransaction();
+        cache.put("key1", "newValue");
+        cache.put("key2", "value2");
+        cache.put("key3", "value3");
+        assertEquals("newValue", cache.get("key1"), "Keys with an undo record must not be evicted");
+        cache.rollbackTransaction();
+
+        assertEquals("originalValue", cache.get("key1"));
+        assertNull(cache.get("key2"));
+        assertNull(cache.get("key3"));
+    }
+
+    @Test
+    void testBatchRollbackRestoresEveryKey() {
+        cache.putAll(Map.of("key1", "original1", "key2", "original2"));
+
+        cache.beginTransaction();
+        cache.putAll(Map.of("key1", "updated1", "key3", "new3"));
+        cache.deleteAll(List.of("key2"));
+        cache.rollbackTransaction();
+
+        assertEquals(Map.of("key1", "original1", "key2", "original2"), cache.getAll(List.of("key1", "key2", "key3")));
+    }
+
+    @Test
+    void testAtomicUpdatesAreUndoneByRollback() {
+        cache.put("key1", "a");
+
+        cache.beginTransaction();
+        assertEquals("ab", cache.merge("key1", "b", String::concat));
+        assertNull(cache.putIfAbsent("key2", "value2"));
+        cache.rollbackTransaction();
+
+        assertEquals("a", cache.get("key1"));
+        assertNull(cache.get("key2"));
+        assertTrue(cache.replace("key1", "a", "c"));
+        assertEquals("c", cache.get("key1"));
+    }
 }
@@ -0,0 +1,91 @@
+package org.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UndoLogTest {
+    private final Map<Integer, Integer> cache = new HashMap<>();
+    private final UndoLog<Integer, Integer> undoLog = new UndoLog<>();
+
+    private void put(int key, int value) {
+        undoLog.recordPut(key, cache.put(key, value), ExpiringMap.NO_EXPIRY);
+    }
+
+    @Test
+    void testRollbackAcrossChunkBoundaries() {
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, -i);
+        }
+        undoLog.begin();
+        for (int i = 0; i < 1000; i++) {
+            put(i % 200, i);
+        }
+        undoLog.rollback(cache, null);
+
+        assertEquals(100, cache.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(-i, cache.get(i));
+        }
+        assertFalse(undoLog.isActive());
+    }
+
+    @Test
+    void testNestedCommitFoldsRecordsIntoParent() {
+        undoLog.begin();
+        put(1, 10);
+        undoLog.begin();
+        for (int i = 0; i < 300; i++) {
+            put(2, i);
+        }
+        undoLog.commit();
+        assertEquals(1, undoLog.depth());
+
+        List<Integer> keys = new ArrayList<>();
+        undoLog.rollback(cache, keys::add);
+        assertTrue(cache.isEmpty(), "Rolling back the parent should also undo its committed child");
+        assertEquals(301, keys.size());
+    }
+
+    @Test
+    void testRollbackOfInnerLevelKeepsOuterWrites() {
+        undoLog.begin();
+        put(1, 10);
+        undoLog.begin();
+        put(1, 20);
+        undoLog.recordDelete(3, cache.remove(3), ExpiringMap.NO_EXPIRY);
+        undoLog.rollback(cache, null);
+
+        assertEquals(Map.of(1, 10), cache);
+        List<Integer> keys = new ArrayList<>();
+        undoLog.forEachKey(keys::add);
+        assertEquals(List.of(1), keys);
+    }
+
+    @Test
+    void testRollbackToSavepointUndoesOnlyTheSuffix() {
+        undoLog.begin();
+        put(1, 10);
+        Savepoint savepoint = undoLog.savepoint();
+        put(1, 20);
+        undoLog.begin();
+        put(2, 30);
+
+        List<Integer> keys = new ArrayList<>();
+        undoLog.forEachKeyAfter(savepoint, keys::add);
+        assertEquals(List.of(1, 2), keys);
+
+        undoLog.rollbackTo(savepoint, cache, null);
+        assertEquals(Map.of(1, 10), cache);
+        assertEquals(1, undoLog.depth());
+
+        undoLog.rollback(cache, null);
+        assertTrue(cache.isEmpty());
+        assertThrows(IllegalStateException.class, () -> undoLog.release(savepoint));
+    }
+}
@@ -0,0 +1,88 @@
+package org.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadAsyncCacheTest {
+    private PerpexilityTransaction<String, Integer> cache;
+    private VirtualThreadAsyncCache<String, Integer> async;
+
+    @BeforeEach
+    void setUp() {
+        cache = new PerpexilityTransaction<>();
+        async = new VirtualThreadAsyncCache<>(cache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        async.close();
+    }
+
+    @Test
+    void testBasicOperations() {
+        async.put("key1", 1).join();
+        assertEquals(1, async.get("key1").join());
+
+        async.putAll(Map.of("key2", 2, "key3", 3)).join();
+        assertEquals(Map.of("key1", 1, "key2", 2), async.getAll(List.of("key1", "key2")).join());
+
+        async.delete("key1").join();
+        async.deleteAll(List.of("key2")).join();
+        assertNull(async.get("key1").join());
+        assertEquals(Map.of("key3", 3), async.getAll(List.of("key1", "key2", "key3")).join());
+    }
+
+    @Test
+    void testInTransactionCommitsAndReturnsResult() {
+        cache.put("balance", 100);
+        int result = async.inTransaction(tx -> {
+            tx.put("balance", tx.get("balance") - 30);
+            tx.put("audit", 30);
+            return tx.get("balance");
+        }).join();
+
+        assertEquals(70, result);
+        assertEquals(70, cache.get("balance"));
+        assertEquals(30, cache.get("audit"));
+    }
+
+    @Test
+    void testInTransactionRollsBackWhenBodyThrows() {
+        cache.put("key1", 1);
+        CompletableFuture<Object> failed = async.inTransaction(tx -> {
+            tx.put("key1", 2);
+            throw new IllegalArgumentException("Rejected");
+        });
+
+        CompletionException e = assertThrows(CompletionException.class, failed::join);
+        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+        assertEquals(1, cache.get("key1"));
+    }
+
+    @Test
+    void testManyConcurrentTransactions() {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            String key = "key" + i;
+            int value = i;
+            futures.add(async.inTransaction(tx -> {
+                tx.put(key, value);
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        for (int i = 0; i < 10_000; i += 997) {
+            assertEquals(i, cache.get("key" + i));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testReplayRebuildsCommittedState() throws IOException {
+        Path path = directory.resolve("wal");
+        try (WriteAheadLog<String, Integer> log = new WriteAheadLog<>(path)) {
+            log.append(List.of(new PutCommand<>("key1", 1, null), new PutCommand<>("key2", 2, null))).join();
+            log.append(List.of(new DeleteCommand<>("key1", null), new PutCommand<>("key2", 20, null))).join();
+        }
+
+        Map<String, Integer> store = new HashMap<>();
+        try (WriteAheadLog<String, Integer> log = new WriteAheadLog<>(path)) {
+            log.replay(store);
+        }
+        assertEquals(Map.of("key2", 20), store);
+    }
+
+    @Test
+    void testConcurrentAppendsAreAllDurable() throws IOException {
+        Path path = directory.resolve("wal");
+        try (WriteAheadLog<Integer, Integer> log = new WriteAheadLog<>(path)) {
+            List<CompletableFuture<Void>> commits = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                int key = i;
+                commits.add(CompletableFuture.runAsync(() -> log.append(List.of(new PutCommand<>(key, key, null))).join()));
+            }
+            commits.forEach(CompletableFuture::join);
+        }
+
+        Map<Integer, Integer> store = new HashMap<>();
+        try (WriteAheadLog<Integer, Integer> log = new WriteAheadLog<>(path)) {
+            log.replay(store);
+        }
+        assertEquals(1000, store.size());
+    }
+
+    @Test
+    void testTornTailIsDiscarded() throws IOException {
+        Path path = directory.resolve("wal");
+        try (WriteAheadLog<String, Integer> log = new WriteAheadLog<>(path)) {
+            log.append(List.of(new PutCommand<>("key1", 1, null))).join();
+            log.append(List.of(new PutCommand<>("key2", 2, null))).join();
+        }
+        // Simulate a crash halfway through writing the second record
+        Path segment;
+        try (Stream<Path> files = Files.list(path)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        long size = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 5);
+        }
+
+        Map<String, Integer> store = new HashMap<>();
+        try (WriteAheadLog<String, Integer> log = new WriteAheadLog<>(path)) {
+            log.replay(store);
+            log.append(List.of(new PutCommand<>("key3", 3, null))).join();
+        }
+        assertEquals(Map.of("key1", 1), store);
+
+        store.clear();
+        try (WriteAheadLog<String, Integer> log = new WriteAheadLog<>(path)) {
+            log.replay(store);
+        }
+        assertEquals(Map.of("key1", 1, "key3", 3), store, "Appends after recovery must follow the last intact record");
+    }
+
+    @Test
+    void testDeleteThroughDropsCoveredSegments() throws IOException {
+        Path path = directory.resolve("wal");
+        try (WriteAheadLog<String, Integer> log = new WriteAheadLog<>(path, Serializer.strings(), Serializer.integers())) {
+            log.append(List.of(new PutCommand<>("key1", 1, null))).join();
+            log.roll();
+            log.append(List.of(new PutCommand<>("key2", 2, null))).join();
+            log.roll();
+            log.deleteThrough(1);
+            assertEquals(2, log.lastSequence());
+        }
+
+        Map<String, Integer> store = new HashMap<>();
+        try (WriteAheadLog<String, Integer> log = new WriteAheadLog<>(path, Serializer.strings(), Serializer.integers())) {
+            assertEquals(2, log.lastSequence());
+            log.replay(store);
+        }
+        assertEquals(Map.of("key2", 2), store, "Only the segment after the deleted one should remain");
+    }
+
+    @Test
+    void testFailedWriteFailsTheLogButKeepsEarlierRecords() throws Exception {
+        Path path = directory.resolve("wal");
+        try (WriteAheadLog<String, Integer> log = new WriteAheadLog<>(path)) {
+            log.append(List.of(new PutCommand<>("key1", 1, null))).join();
+
+            // Simulate a disk error under the group committer
+            Field active = WriteAheadLog.class.getDeclaredField("active");
+            active.setAccessible(true);
+            ((FileChannel) active.get(log)).close();
+
+            CompletableFuture<Void> failed = log.append(List.of(new PutCommand<>("key2", 2, null)));
+            assertThrows(UncheckedIOException.class, () -> WriteAheadLog.await(failed));
+            assertThrows(UncheckedIOException.class, () -> log.append(List.of(new PutCommand<>("key3", 3, null))),
+                    "Nothing is written behind a failed batch");
+        }
+
+        Map<String, Integer> store = new HashMap<>();
+        try (WriteAheadLog<String, Integer> log = new WriteAheadLog<>(path)) {
+            log.replay(store);
+        }
+        assertEquals(Map.of("key1", 1), store);
+    }
+}